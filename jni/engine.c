@@ -0,0 +1,83 @@
+#include "engine.h"
+#include <pthread.h>
+/*-------------------------------------------------------.
+ | file: engine.c                                        |
+ | contains: the engines, each with its own              |
+ |           transposition table and clock so that games |
+ |           can be searched at the same time.           |
+  -------------------------------------------------------*/
+
+static pthread_once_t the_engine_once = PTHREAD_ONCE_INIT;
+static engine_ the_engine = {
+  NULL, NULL, NULL, NULL, /* the global tables, cache and clock, set by default_engine_init */
+  SEARCH_ALPHABETA, 1, 0,
+  {
+    1, 3, 3, 1, /* lmr: on, depth >= 3, after 3 moves, 1 ply */
+    1, 2, 150, /* futility: on, depth <= 2, 150 per ply */
+    1, 3, 120, /* reverse futility: on, depth <= 3, 120 per ply */
+    1, 1, /* killers and countermoves: on */
+    1, /* see: on */
+    1 /* tablebases: on, when loaded */
+  }
+};
+
+/*-------------------------------------------------------.
+ | function: default_engine_init() -> void               |
+ | effects: the default engine has the global tables,    |
+ |          eval cache and clock, once.                  |
+  -------------------------------------------------------*/
+static void default_engine_init(){
+  the_engine.clock = game_clock();
+  the_engine.tt = default_trans_table();
+  the_engine.pawns = default_pawn_table();
+  the_engine.evals = default_eval_cache();
+}
+
+/*-------------------------------------------------------.
+ | function: default_engine() -> engine                  |
+ | returns: the engine of the searches without one, with |
+ |          the global transposition and pawn tables,    |
+ |          eval cache and clock.                        |
+ | note: any thread may make the first call.             |
+  -------------------------------------------------------*/
+engine default_engine(){
+  pthread_once(&the_engine_once, default_engine_init);
+  return &the_engine;
+}
+
+/*-------------------------------------------------------.
+ | function: new_engine(int tt_size) -> engine           |
+ | returns: an engine with an empty table of tt_size     |
+ |          entries, its own pawn table, eval cache and  |
+ |          clock and the settings of the default engine.|
+ |          NULL if there is not enough memory.          |
+  -------------------------------------------------------*/
+engine new_engine(int tt_size){
+  engine eng = (engine) malloc(sizeof(engine_));
+
+  if (eng == NULL) return NULL;
+  *eng = *default_engine();
+  eng->tt = new_trans_table(tt_size);
+  eng->pawns = new_pawn_table(pawn_table_entries_kb(PAWN_TABLE_DEFAULT_KB));
+  eng->evals = new_eval_cache(eval_cache_entries_kb(EVAL_CACHE_DEFAULT_KB));
+  eng->clock = (chess_clock *) calloc(1, sizeof(chess_clock));
+  if (eng->tt == NULL || eng->pawns == NULL || eng->evals == NULL || eng->clock == NULL) {
+    free_engine(eng);
+    return NULL;
+  }
+  return eng;
+}
+
+/*-------------------------------------------------------.
+ | function: free_engine(engine eng) -> void             |
+ | effects: frees an engine from new_engine, none of its |
+ |          searches may be running.                     |
+  -------------------------------------------------------*/
+void free_engine(engine eng){
+  if (eng == NULL || eng == &the_engine) return;
+  free_trans_table(eng->tt);
+  free_pawn_table(eng->pawns);
+  free_eval_cache(eng->evals);
+  free(eng->clock);
+  free(eng);
+}
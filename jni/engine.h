@@ -0,0 +1,31 @@
+#ifndef ENGINE
+#define ENGINE
+#include "search.h"
+#include "trans.h"
+#include "pawn.h"
+#include "utils.h"
+
+/*
+  what a search needs besides its position: the transposition
+  and pawn tables, the eval cache, the clock and the settings of new searches. Searches
+  of different engines share nothing, the history and move
+  stacks are in the positions. The default engine has the
+  global tables, cache and clock, used by the CLI and the static
+  Search methods.
+ */
+typedef struct engine_ {
+  trans_table tt;
+  pawn_table pawns;
+  eval_cache evals;
+  chess_clock *clock;
+  search_algorithm algorithm;
+  int use_hash; /* boolean: search with the transposition table */
+  int timing; /* boolean: time move generation, eval and quiescence */
+  search_params_ params;
+} engine_;
+
+/* FUNCTIONS */
+engine default_engine();
+engine new_engine(int tt_size);
+void free_engine(engine eng);
+#endif
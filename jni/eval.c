@@ -1,19 +1,14 @@
 #include "eval.h"
+#include <pthread.h>
 /*-------------------------------------------------------.
  | file: eval.c                                          |
  | contains: functions for static evaluation             |
   -------------------------------------------------------*/
 
-static int pawn_pos[128] = {
-  0, 0, 0, 0, 0, 0, 0, 0,   0, 0, 0, 0, 0, 0, 0, 0,
-  0, 0, 0, 0, 0, 0, 0, 0,   60,60,60,60,60,60,60,60,
-  1, 1, 1, -1, -1, 1, 1, 1, 10,10,10,10,10,10,10,10,
-  1, 2, 2, 8, 8, 2, 2, 1,   2, 2, 4, 9, 9, 4, 2, 2,
-  2, 2, 4, 9, 9, 4, 2, 2,   1, 2, 2, 8, 8, 2, 2, 1,
-  10,10,10,10,10,10,10,10,  1, 1, 1, -1, -1, 1, 1, 1,
-  60,60,60,60,60,60,60,60,  0, 0, 0, 0, 0, 0, 0, 0,
-  0, 0, 0, 0, 0, 0, 0, 0,   0, 0, 0, 0, 0, 0, 0, 0
-};
+/* The eval cache of the default engine, allocated on the first call */
+static eval_cache_ the_eval_cache;
+static pthread_once_t the_eval_cache_once = PTHREAD_ONCE_INIT;
+
 static int good_piece_square[128]= {
   0, 0, 0, 0, 0, 0, 0, 0,   0, 0, 0, 0, 0, 0, 0, 0,
   0, 0, 0, 0, 0, 0, 0, 0,   0, 0, 9, 9, 9, 9, 0, 0,
@@ -42,25 +37,30 @@ static int good_king_pos[128] = {
  | note: value is always positive                        |
   -------------------------------------------------------*/
 int eval(position pos){
+  return eval_pawn_table(pos, NULL, NULL);
+}
+
+/*-------------------------------------------------------.
+ | function: eval_pawn_table(position pos,               |
+ |           pawn_table pawns, int *pawn_hit) -> int     |
+ | returns: eval(pos), with the pawn terms from pawns if |
+ |          they are there (see pawn_eval).              |
+ | effects: *pawn_hit is 1 if they were, else 0, unless  |
+ |          pawn_hit is NULL.                            |
+  -------------------------------------------------------*/
+int eval_pawn_table(position pos, pawn_table pawns, int *pawn_hit){
   piece p;
   int toMove, i, value=0, wvalue=0, bvalue=0,wQonBoard=0, bQonBoard=0, wKpos=0, bKpos=0;
   board brd;
-  int white_pawns[8]; 
-  int black_pawns[8];
   int white_rooks[10];
   int black_rooks[10];
-  int white_file[8], black_file[8];
-  int piece_count=0, bp=0, wp=0, br=0, wr=0;
+  int piece_count=0, br=0, wr=0, bit, hit;
   int white_two_bishop = 0;
-  int black_two_bishop = 0, dst;
+  int black_two_bishop = 0;
+  pawn_info_ pawn_terms;
 
-
-  for (i=0; i<8; i++) {
-    white_pawns[i] = -1;
-    black_pawns[i] = -1;
-    white_file[i] = 0;
-    black_file[i] = 0;
-  }
+  hit = pawn_eval(pos, pawns, &pawn_terms);
+  if (pawn_hit != NULL) *pawn_hit = hit;
   for (i=0; i<10; i++) {
     white_rooks[i] = -1;
     black_rooks[i] = -1;
@@ -97,11 +97,6 @@ int eval(position pos){
       piece_count++;
       wvalue += good_piece_square[i]; 
       break;
-    case WP:
-      white_pawns[wp] = i;
-      wp++;
-      wvalue += pawn_pos[i]; 
-      break;
     case BK: 
       bKpos=i; 
       break;
@@ -122,11 +117,6 @@ int eval(position pos){
       piece_count++;
       bvalue += good_piece_square[i+8]; 
       break;
-    case BP:
-      black_pawns[bp] = i;
-      bp++;
-      bvalue += pawn_pos[i+8]; 
-      break;
     default: break;
     }
     if (!on_board(i+1)) i=i+9;
@@ -144,50 +134,27 @@ int eval(position pos){
     if (black_is_castled(pos)) bvalue += CASTLED;
   }
   
-  /* check pawn formation */
-
-  /* doubled pawns */
-  for (i=0; white_pawns[i] != -1 && i<8; i++)  
-    white_file[file(white_pawns[i])-1]++; 
-  for (i=0; black_pawns[i] != -1 && i<8; i++) 
-    black_file[file(black_pawns[i])-1]++; 
-  for (i=0; i < 8; i++) {
-    if (white_file[i] > 1) wvalue -= DOUBLE_PAWN * (white_file[i]-1);
-    if (black_file[i] > 1) bvalue -= DOUBLE_PAWN * (black_file[i]-1);
-  }
+  /* pawn formation: pawn squares, doubled, isolated and passed pawns */
+  wvalue += pawn_terms.value;
 
-  /* check open files for the rooks */
+  /* check open files for the rooks: no pawns, or only the other side's */
 
-  for (i=0; white_rooks[i] != -1 && i<10; i++) {
+  for (i=0; i<10 && white_rooks[i] != -1; i++) {
     if (rank(white_rooks[i]) == 7) wvalue += ROOK_SEVENTH;
-    for(dst = white_rooks[i] + 16; on_board(dst); dst += 16) {
-      if (is_empty(get_piece(brd, dst))) continue;
-      else if (is_different(get_piece(brd, dst), WR)) {
-	wvalue += ROOK_SEMI_OPEN;
-	break;
-      }
-      else break; /* same color on piece */
-    }
-    if (!on_board(dst)) /* Open file */
-      wvalue += ROOK_OPEN_FILE;
+    bit = 1 << (file(white_rooks[i])-1);
+    if (!((pawn_terms.white_files | pawn_terms.black_files) & bit)) wvalue += ROOK_OPEN_FILE;
+    else if (!(pawn_terms.white_files & bit)) wvalue += ROOK_SEMI_OPEN;
   }
 
-  for (i=0; black_rooks[i] != -1 && i<10; i++) {
+  for (i=0; i<10 && black_rooks[i] != -1; i++) {
     if (get_piece(brd, black_rooks[i]) != BR) {
       printf("Eval error: %i\n", get_piece(brd, black_rooks[i]));
       exit(1);
     }
     if (rank(black_rooks[i]) == 2) bvalue += ROOK_SEVENTH;
-    for(dst = black_rooks[i] - 16; on_board(dst); dst -= 16) {
-      if (is_empty(get_piece(brd, dst))) continue;
-      else if (is_different(get_piece(brd, dst), BR)) {
-	bvalue += ROOK_SEMI_OPEN;
-	break;
-      }
-      else break;
-    }
-    if (!on_board(dst))
-      bvalue += ROOK_OPEN_FILE;
+    bit = 1 << (file(black_rooks[i])-1);
+    if (!((pawn_terms.white_files | pawn_terms.black_files) & bit)) bvalue += ROOK_OPEN_FILE;
+    else if (!(pawn_terms.black_files & bit)) bvalue += ROOK_SEMI_OPEN;
   }
   /* check for the two bishops */
   if (white_two_bishop > 1) wvalue += TWO_BISHOP;
@@ -198,3 +165,146 @@ int eval(position pos){
   else value += bvalue-wvalue;
   return value;
 }
+
+/*-------------------------------------------------------.
+ | function: eval_cached(position pos, eval_cache cache, |
+ |           pawn_table pawns, int *found) -> int        |
+ | returns: eval(pos), from cache if it is there. Else   |
+ |          eval_pawn_table(pos, pawns), stored in cache |
+ |          (if not NULL or off).                        |
+ | effects: *found is EVAL_FOUND_CACHE if the value was  |
+ |          in cache, else EVAL_FOUND_PAWNS if the pawn  |
+ |          terms were in pawns, else 0.                 |
+ | note: the key is the zobrist key with who castled,    |
+ |       the castled bonus is not in the zobrist key.    |
+ |       No locks, other threads may use cache at the    |
+ |       same time (see eval_entry_).                    |
+  -------------------------------------------------------*/
+int eval_cached(position pos, eval_cache cache, pawn_table pawns, int *found){
+  U64 key = getZobristKey(pos);
+  eval_entry_ copy;
+  eval_entry entry = NULL;
+  int value, pawn_hit;
+
+  if (white_is_castled(pos)) key ^= EVAL_WHITE_CASTLED_KEY;
+  if (black_is_castled(pos)) key ^= EVAL_BLACK_CASTLED_KEY;
+  if (cache != NULL && cache->entries != NULL) {
+    entry = cache->entries + (key & cache->mask);
+    copy = *entry; /* a copy, the entry may change meanwhile */
+    if ((copy.check ^ copy.data) == key && copy.check != 0) {
+      *found = EVAL_FOUND_CACHE;
+      return (int) (copy.data & 0xffffffff);
+    }
+  }
+  value = eval_pawn_table(pos, pawns, &pawn_hit);
+  *found = pawn_hit ? EVAL_FOUND_PAWNS : 0;
+  if (entry != NULL) {
+    copy.data = (U64) (unsigned int) value;
+    copy.check = key ^ copy.data;
+    *entry = copy;
+  }
+  return value;
+}
+
+/*-------------------------------------------------------.
+ | function: eval_cache_alloc(eval_cache cache,          |
+ |           int size) -> int                            |
+ | returns: 1 if cache is now empty with at most size    |
+ |          entries (a power of two), or off if size is  |
+ |          0. 0 if there is not enough memory, cache is |
+ |          kept.                                        |
+  -------------------------------------------------------*/
+static int eval_cache_alloc(eval_cache cache, int size){
+  int entries = 1;
+  eval_entry memory = NULL;
+
+  if (size > 0) {
+    while (entries * 2 <= size) entries *= 2;
+    memory = (eval_entry) calloc(entries, sizeof(eval_entry_));
+    if (memory == NULL) return 0;
+  }
+  else entries = 0;
+  free(cache->entries);
+  cache->entries = memory;
+  cache->mask = entries ? entries - 1 : 0;
+  cache->size = entries;
+  return 1;
+}
+
+/*-------------------------------------------------------.
+ | function: eval_cache_entries_kb(int kb) -> int        |
+ | returns: the entries that fit in kb kilobytes, at     |
+ |          most EVAL_CACHE_MAX_KB.                      |
+  -------------------------------------------------------*/
+int eval_cache_entries_kb(int kb){
+  if (kb > EVAL_CACHE_MAX_KB) kb = EVAL_CACHE_MAX_KB;
+  if (kb < 0) kb = 0;
+  return kb * (int) (1024 / sizeof(eval_entry_));
+}
+
+/*-------------------------------------------------------.
+ | function: default_eval_cache_init() -> void           |
+ | effects: allocates the eval cache of the default      |
+ |          engine, once.                                |
+  -------------------------------------------------------*/
+static void default_eval_cache_init(){
+  eval_cache_alloc(&the_eval_cache, eval_cache_entries_kb(EVAL_CACHE_DEFAULT_KB));
+}
+
+/*-------------------------------------------------------.
+ | function: default_eval_cache() -> eval_cache          |
+ | returns: the eval cache of the default engine,        |
+ |          EVAL_CACHE_DEFAULT_KB (off) or off if there  |
+ |          is not that much memory.                     |
+ | note: any thread may make the first call.             |
+  -------------------------------------------------------*/
+eval_cache default_eval_cache(){
+  pthread_once(&the_eval_cache_once, default_eval_cache_init);
+  return &the_eval_cache;
+}
+
+/*-------------------------------------------------------.
+ | function: new_eval_cache(int size) -> eval_cache      |
+ | returns: an empty cache of at most size entries, NULL |
+ |          if there is not enough memory.               |
+  -------------------------------------------------------*/
+eval_cache new_eval_cache(int size){
+  eval_cache cache = (eval_cache) calloc(1, sizeof(eval_cache_));
+
+  if (cache == NULL) return NULL;
+  if (!eval_cache_alloc(cache, size)) {
+    free(cache);
+    return NULL;
+  }
+  return cache;
+}
+
+/*-------------------------------------------------------.
+ | function: free_eval_cache(eval_cache cache) -> void   |
+ | effects: frees a cache from new_eval_cache.           |
+  -------------------------------------------------------*/
+void free_eval_cache(eval_cache cache){
+  if (cache == NULL || cache == &the_eval_cache) return;
+  free(cache->entries);
+  free(cache);
+}
+
+/*-------------------------------------------------------.
+ | function: eval_cache_resize(eval_cache cache,         |
+ |           int size) -> int                            |
+ | returns: 1 if cache now has at most size entries, off |
+ |          if size is 0. 0 if there is not enough       |
+ |          memory and cache is kept.                    |
+ | effects: the cache is empty. Not while searching.     |
+  -------------------------------------------------------*/
+int eval_cache_resize(eval_cache cache, int size){
+  return eval_cache_alloc(cache, size);
+}
+
+/*-------------------------------------------------------.
+ | function: eval_cache_reset(eval_cache cache) -> void  |
+ | effects: removes all values from cache.               |
+  -------------------------------------------------------*/
+void eval_cache_reset(eval_cache cache){
+  if (cache->entries != NULL) memset(cache->entries, 0, (size_t) cache->size * sizeof(eval_entry_));
+}
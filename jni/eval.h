@@ -3,12 +3,51 @@
 #include "piece.h"
 #include "position.h"
 #include "board.h"
-#define DOUBLE_PAWN 40
+#include "pawn.h"
 #define CASTLED 30
 #define ROOK_OPEN_FILE 50
 #define ROOK_SEMI_OPEN 30
 #define ROOK_SEVENTH 40
 #define TWO_BISHOP 50
 #define TRADE 10
+#define EVAL_CACHE_DEFAULT_KB 0 /* of each engine, off: no faster in evalbench */
+#define EVAL_CACHE_BENCH_KB 256 /* the largest cache of evalbench */
+#define EVAL_CACHE_MAX_KB 1048576 /* the entries still fit in an int */
+#define EVAL_FOUND_CACHE 1 /* from eval_cached: the value was in the cache */
+#define EVAL_FOUND_PAWNS 2 /* the pawn terms were in the pawn table */
+#define EVAL_WHITE_CASTLED_KEY 0xC2B2AE3D27D4EB4FLL /* in the cache key, not in the zobrist key */
+#define EVAL_BLACK_CASTLED_KEY 0x165667B19E3779F9LL
+
+/*
+  an entry of an eval cache, the key is stored xor the data like
+  in trans_table_entry_ so that the cache needs no locks.
+ */
+typedef struct eval_entry_ *eval_entry;
+typedef struct eval_entry_ {
+  U64 check; /* the key (see eval_cached) xor data, 0 if empty */
+  U64 data; /* the value in the low 32 bits */
+} eval_entry_;
+
+/*
+  the values of the last positions evaluated, by zobrist key.
+  Lossy, a position replaces the one in its entry. Each engine
+  has one, shared by the threads of its searches.
+ */
+typedef struct eval_cache_ *eval_cache;
+typedef struct eval_cache_ {
+  eval_entry entries; /* NULL if the cache is off */
+  U64 mask; /* size-1, a power of two */
+  int size; /* entries, 0 if the cache is off */
+} eval_cache_;
+
+/* FUNCTIONS */
 int eval(position pos);
+int eval_pawn_table(position pos, pawn_table pawns, int *pawn_hit);
+int eval_cached(position pos, eval_cache cache, pawn_table pawns, int *found);
+eval_cache default_eval_cache();
+eval_cache new_eval_cache(int size);
+void free_eval_cache(eval_cache cache);
+int eval_cache_resize(eval_cache cache, int size);
+int eval_cache_entries_kb(int kb);
+void eval_cache_reset(eval_cache cache);
 #endif
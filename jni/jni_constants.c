@@ -28,3 +28,15 @@ char* JStringToCCharPtr(JNIEnv* env,jstring jstr)
     fen[len] = '\0';
     return fen;
 }
+
+void JIntArrayToSearchLimits(JNIEnv* env,jintArray arr,search_limits limits)
+{
+    jint values[7];
+    (*env)->GetIntArrayRegion(env,arr, 0, 7, values);
+    init_search_limits(limits,values[0],values[1]);
+    limits->nodes = values[2];
+    limits->movetime = values[3];
+    limits->soft_time = values[4];
+    limits->hard_time = values[5];
+    limits->mate = values[6];
+}
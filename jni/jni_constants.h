@@ -2,6 +2,7 @@
 #define JNI_CONSTANTS_H
 
 #include <jni.h>
+#include "search.h"
 #define JNI_CONSTRUCTOR "<init>"
 
 #define HISTORY_HEURISTIC_CLASS_DESCRIPTOR "minimardi/HistoryHeuristic"
@@ -16,8 +17,14 @@
 
 #define BOARD_CONSTRUCTOR "(J)V"
 
+#define SEARCH_LISTENER_CLASS_DESCRIPTOR "minimardi/SearchListener"
+
+#define SEARCH_LISTENER_ON_ITERATION "(IIII[I)V"
+
 jlong GetHandle(JNIEnv* env,jobject minimardiOb);
 
 char* JStringToCCharPtr(JNIEnv* env,jstring jstr);
 
+void JIntArrayToSearchLimits(JNIEnv* env,jintArray arr,search_limits limits);
+
 #endif
\ No newline at end of file
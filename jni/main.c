@@ -5,6 +5,79 @@ static position pos=NULL;
 static int GameOver=0;
 static int force_mode=0;
 static int printboard=0;
+static search_limits_ limits; /* of the computers moves */
+
+/*
+  leaves of the current position to depth, and for each
+  root move if divide.
+*/
+static void cmd_perft(int depth, int threads, int divide){
+  perft_move_ moves[MAX_ROOT_MOVES];
+  int i, count;
+  U64 nodes;
+  long long before;
+
+  before = monotonic_ms();
+  nodes = perft_divide(pos, depth, threads, 1, moves, &count);
+  if (divide) {
+    for (i=0; i < count; i++) {
+      print_move(moves[i].mov);
+      printf(" %llu\n", (unsigned long long) moves[i].nodes);
+    }
+  }
+  printf("Depth:%i, Leaves:%llu, Time:%i ms\n", depth, (unsigned long long) nodes,
+	 elapsed_ms(before));
+}
+
+/*
+  time for the leaves of PERFT_BENCH_POSITION to PERFT_BENCH_DEPTH,
+  the old perft counts all nodes, not just the leaves.
+*/
+static void cmd_perftbench(){
+  perft_move_ moves[MAX_ROOT_MOVES];
+  int count;
+  U64 nodes;
+  long long before;
+
+  pos = new_chess_position_fen(PERFT_BENCH_POSITION);
+  before = monotonic_ms();
+  perft(pos, PERFT_BENCH_DEPTH);
+  printf("%-17s Nodes:%i, Time:%i ms\n", "perft", getNodes(pos), elapsed_ms(before));
+  before = monotonic_ms();
+  nodes = perft_divide(pos, PERFT_BENCH_DEPTH, 1, 0, moves, &count);
+  printf("%-17s Leaves:%llu, Time:%i ms\n", "bulk", (unsigned long long) nodes, elapsed_ms(before));
+  before = monotonic_ms();
+  nodes = perft_divide(pos, PERFT_BENCH_DEPTH, 1, 1, moves, &count);
+  printf("%-17s Leaves:%llu, Time:%i ms\n", "bulk+hash", (unsigned long long) nodes, elapsed_ms(before));
+  before = monotonic_ms();
+  nodes = perft_divide(pos, PERFT_BENCH_DEPTH, 2, 1, moves, &count);
+  printf("%-17s Leaves:%llu, Time:%i ms\n", "bulk+hash 2 thr", (unsigned long long) nodes, elapsed_ms(before));
+  free_position(pos);
+  pos = new_chess_position();
+}
+
+/*
+  a mate in moves in the current position, by proof-number search.
+*/
+static void cmd_mate(int moves){
+  int i, result, nodes;
+  pv line;
+  long long before;
+
+  before = monotonic_ms();
+  result = solve_mate(pos, 2 * moves - 1, MATE_SOLVER_BUDGET, &line, &nodes);
+  if (result == MATE_FOUND) {
+    printf("Mate in %i:", (line.moves + 1) / 2);
+    for (i=0; i < line.moves; i++) {
+      printf(" ");
+      print_move(line.pv[i]);
+    }
+    printf("\n");
+  }
+  else if (result == MATE_NONE) printf("No mate in %i\n", moves);
+  else printf("No mate found within budget\n");
+  printf("Nodes:%i, Time:%i ms\n", nodes, elapsed_ms(before));
+}
 
 static void cmd_quit(){
   if (pos) free_position(pos);
@@ -52,6 +125,76 @@ static void cmd_move(){
     else {
       set_time_control(3, 0);
     }
+    limits.movetime = 0;
+    return;
+  }
+
+  if (!strncmp(input, "perft ", 6)){ /* perft <depth> [threads] */
+    cmd_perft(atoi(input+6), strchr(input+6, ' ') ? atoi(strchr(input+6, ' ')) : 1, 0);
+    return;
+  }
+
+  if (!strncmp(input, "divide ", 7)){ /* divide <depth> [threads] */
+    cmd_perft(atoi(input+7), strchr(input+7, ' ') ? atoi(strchr(input+7, ' ')) : 1, 1);
+    return;
+  }
+
+  if (!strncmp(input, "mate ", 5)){ /* mate <moves> */
+    cmd_mate(atoi(input+5));
+    return;
+  }
+
+  if (!strncmp(input, "tbgen ", 6)){ /* tbgen <dir> */
+    input[strlen(input)-1] = '\0';
+    printf("%i tables in %s\n", tb_generate(input+6), input+6);
+    return;
+  }
+
+  if (!strncmp(input, "tb ", 3)){ /* tb <dir> */
+    input[strlen(input)-1] = '\0';
+    printf("%i tables in %s\n", tb_init(input+3), input+3);
+    return;
+  }
+
+  if (!strncmp(input, "memory ", 7)){ /* memory <mb> */
+    if (!trans_table_resize(default_trans_table(), trans_table_entries_mb(atoi(input+7))))
+      printf("Error (not enough memory): %s", input);
+    return;
+  }
+
+  if (!strncmp(input, "pawnhash ", 9)){ /* pawnhash <kb> */
+    if (!pawn_table_resize(default_pawn_table(), pawn_table_entries_kb(atoi(input+9))))
+      printf("Error (not enough memory): %s", input);
+    return;
+  }
+
+  if (!strncmp(input, "evalcache ", 10)){ /* evalcache <kb> */
+    if (!eval_cache_resize(default_eval_cache(), eval_cache_entries_kb(atoi(input+10))))
+      printf("Error (not enough memory): %s", input);
+    return;
+  }
+
+  if (!strncmp(input, "savehash ", 9)){ /* savehash <file> */
+    input[strlen(input)-1] = '\0';
+    if (!trans_table_save(default_trans_table(), input+9))
+      printf("Error (cannot write): %s\n", input+9);
+    return;
+  }
+
+  if (!strncmp(input, "loadhash ", 9)){ /* loadhash <file> */
+    input[strlen(input)-1] = '\0';
+    if (!trans_table_load(default_trans_table(), input+9))
+      printf("Error (no table): %s\n", input+9);
+    return;
+  }
+
+  if (!strncmp(input, "st ", 3)){ /* seconds per move */
+    limits.movetime = atoi(input+3) * 1000;
+    return;
+  }
+
+  if (!strncmp(input, "sd ", 3)){ /* max depth */
+    limits.max_depth = atoi(input+3);
     return;
   }
 
@@ -65,12 +208,14 @@ static void cmd_move(){
     return;
   }
 
-  if (!strncmp(input, "setboard", 8)){ /* opponent clock */
-    if (pos) {
-      free_position(pos);
-      pos = new_chess_position_fen(input+9);
+  if (!strncmp(input, "setboard", 8)){ /* setboard <fen> */
+    position p = new_chess_position_fen(input+9);
+    if (!p) {
+      printf("Error (bad FEN): %s", input+9);
+      return;
     }
-    else  pos = new_chess_position_fen(input+8);
+    if (pos) free_position(pos);
+    pos = p;
     return;
   }
 
@@ -169,7 +314,7 @@ static void cmd_black(){
 }
 
 static void cmd_protover(){
-  printf("feature usermove=1 ping=1 colors=1 setboard=1 done=1 time=1\n");
+  printf("feature usermove=1 ping=1 colors=1 setboard=1 memory=1 done=1 time=1\n");
 }
 
 static void cmd_go(){
@@ -250,10 +395,1011 @@ static void cmd_bench2(){
   free_position(pos);
 }
 
+/* positions for the search benchmarks */
+static char *bench_positions[] = {
+  "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq -",
+  "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -",
+  "r1bq1rk1/pp2nppp/2n1p3/3pP3/2pP4/P1P2N2/2P2PPP/R1BQKB1R w KQ -",
+  "2r2rk1/1bqnbpp1/1p1ppn1p/pP6/N1P1P3/P2B1N1P/1B2QPP1/R2R2K1 b - -",
+  "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - -",
+  NULL
+};
+
+/*
+  time to depth SMP_BENCH_DEPTH for 1, 2, 4 ... threads,
+  the transposition table is cleared before each position.
+*/
+static void cmd_smpbench(){
+  int i, threads, ms, total, single=0;
+  long long before;
+  
+  for (threads=1; threads <= MAX_THREADS; threads *= 2) {
+    total = 0;
+    for (i=0; bench_positions[i] != NULL; i++) {
+      pos = new_chess_position_fen(bench_positions[i]);
+      trans_table_clear();
+      before = monotonic_ms();
+      bestMove_threads(pos, SMP_BENCH_DEPTH, SMP_BENCH_DEPTH, threads);
+      ms = elapsed_ms(before);
+      total += ms;
+      free_position(pos);
+    }
+    if (threads == 1) single = total;
+    printf("Threads:%i, Time:%i ms, Speedup:%.2f\n", threads, total, 
+	   total > 0 ? (float) single / total : 0.0);
+    if (threads >= sysconf(_SC_NPROCESSORS_ONLN)) break;
+  }
+  pos = new_chess_position();
+}
+
+/* names of the search algorithms, in enum order */
+static char *algorithm_names[] = { "alphabeta", "pvs", "mtdf" };
+
+/*
+  nodes and time to depth ALGO_BENCH_DEPTH for each search
+  algorithm, the transposition table is cleared before each position.
+*/
+static void cmd_algobench(){
+  int i, ms, nodes, total_ms, total_nodes;
+  search_algorithm algorithm, old = get_search_algorithm();
+  long long before;
+
+  for (algorithm=SEARCH_ALPHABETA; algorithm <= SEARCH_MTDF; algorithm++) {
+    set_search_algorithm(algorithm);
+    total_ms = total_nodes = 0;
+    for (i=0; bench_positions[i] != NULL; i++) {
+      pos = new_chess_position_fen(bench_positions[i]);
+      trans_table_clear();
+      before = monotonic_ms();
+      bestMove_threads(pos, ALGO_BENCH_DEPTH, ALGO_BENCH_DEPTH, 1);
+      ms = elapsed_ms(before);
+      nodes = getNodes(pos);
+      printf("%s %i: Nodes:%i, Time:%i ms\n", algorithm_names[algorithm], i+1, nodes, ms);
+      total_ms += ms;
+      total_nodes += nodes;
+      free_position(pos);
+    }
+    printf("%s: Nodes:%i, Time:%i ms\n", algorithm_names[algorithm], total_nodes, total_ms);
+  }
+  set_search_algorithm(old);
+  pos = new_chess_position();
+}
+
+static void cmd_alphabeta(){
+  set_search_algorithm(SEARCH_ALPHABETA);
+}
+
+static void cmd_pvs(){
+  set_search_algorithm(SEARCH_PVS);
+}
+
+static void cmd_mtdf(){
+  set_search_algorithm(SEARCH_MTDF);
+}
+
+/* tactical positions (win at chess) and their best move */
+static char *tactics_positions[][2] = {
+  {"2rr3k/pp3pp1/1nnqbN1p/3pN3/2pP4/2P3Q1/PPB4P/R4RK1 w - -", "g3g6"},
+  {"8/7p/5k2/5p2/p1p2P2/Pr1pPK2/1P1R3P/8 b - -", "b3b2"},
+  {"5rk1/1ppb3p/p1pb4/6q1/3P1p1r/2P1R2P/PP1BQ1P1/5RKN w - -", "e3g3"},
+  {"r1bq2rk/pp3pbp/2p1p1pQ/7P/3P4/2PB1N2/PP3PPR/2KR4 w - -", "h6h7"},
+  {"5k2/6pp/p1qN4/1p1p4/3P4/2PKP2Q/PP3r2/3R4 b - -", "c6c4"},
+  {"7k/p7/1R5K/6r1/6p1/6P1/8/8 w - -", "b6b7"},
+  {"rnbqkb1r/pppp1ppp/8/4P3/6n1/7P/PPPNPPP1/R1BQKBNR b KQkq -", "g4e3"},
+  {"r4q1k/p2bR1rp/2p2Q1N/5p2/5p2/2P5/PP3PPP/R5K1 w - -", "e7f7"},
+  {"3q1rk1/p4pp1/2pb3p/3p4/6Pr/1PNQ4/P1PB1PP1/4RRK1 b - -", "d6h2"},
+  {"2br2k1/2q3rn/p2NppQ1/2p1P3/Pp5R/4P3/1P3PPP/3R2K1 w - -", "h4h7"},
+  {"r1b1kb1r/3q1ppp/pBp1pn2/8/Np3P2/5B2/PPP3PP/R2Q1RK1 w kq -", "f3c6"},
+  {"4k1r1/2p3r1/1pR1p3/3pP2p/3P2qP/P4N2/1PQ4P/5R1K b - -", "g4f3"},
+  {NULL, NULL}
+};
+
+/*
+  nodes and time to PRUNE_BENCH_DEPTH on the bench positions,
+  and tactical positions solved at TACTICS_DEPTH, with params.
+*/
+static void prune_bench(char *name, search_params params){
+  int i, nodes=0, total_ms=0, solved=0;
+  char alg[10];
+  move mov;
+  long long before;
+
+  set_search_params(params);
+  for (i=0; bench_positions[i] != NULL; i++) {
+    pos = new_chess_position_fen(bench_positions[i]);
+    trans_table_clear();
+    before = monotonic_ms();
+    bestMove_threads(pos, PRUNE_BENCH_DEPTH, PRUNE_BENCH_DEPTH, 1);
+    total_ms += elapsed_ms(before);
+    nodes += getNodes(pos);
+    free_position(pos);
+  }
+  for (i=0; tactics_positions[i][0] != NULL; i++) {
+    pos = new_chess_position_fen(tactics_positions[i][0]);
+    trans_table_clear();
+    mov = bestMove_threads(pos, TACTICS_DEPTH, TACTICS_DEPTH, 1);
+    if (mov != NULL_MOVE) {
+      move_to_alg(mov, alg);
+      if (!strncmp(alg, tactics_positions[i][1], 4)) solved++;
+    }
+    free_position(pos);
+  }
+  printf("%-17s Nodes:%i, Time:%i ms, Solved:%i/%i\n", name, nodes, total_ms, solved, i);
+}
+
+/*
+  each pruning alone and all together, compared to none.
+*/
+static void cmd_prunebench(){
+  search_params_ old, params;
+
+  get_search_params(&old);
+  params = old;
+  params.lmr = params.futility = params.reverse_futility = 0;
+  prune_bench("none", &params);
+  params.lmr = 1;
+  prune_bench("lmr", &params);
+  params.lmr = 0;
+  params.futility = 1;
+  prune_bench("futility", &params);
+  params.futility = 0;
+  params.reverse_futility = 1;
+  prune_bench("reverse futility", &params);
+  params.lmr = params.futility = 1;
+  prune_bench("all", &params);
+  set_search_params(&old);
+  pos = new_chess_position();
+}
+
+/*
+  nodes and time to ORDER_BENCH_DEPTH on the bench positions, and
+  how often the first move tried gave the beta cutoff, with params.
+*/
+static void order_bench(char *name, search_params params){
+  int i, nodes=0, total_ms=0, cutoffs=0, first_cutoffs=0;
+  search_control_ ctl;
+  search_limits_ limits;
+  long long before;
+
+  set_search_params(params);
+  init_search_limits(&limits, ORDER_BENCH_DEPTH, ORDER_BENCH_DEPTH);
+  for (i=0; bench_positions[i] != NULL; i++) {
+    pos = new_chess_position_fen(bench_positions[i]);
+    trans_table_clear();
+    memset(&ctl, 0, sizeof(search_control_));
+    before = monotonic_ms();
+    bestMove_control(pos, &limits, 1, &ctl);
+    total_ms += elapsed_ms(before);
+    nodes += getNodes(pos);
+    cutoffs += ctl.cutoffs;
+    first_cutoffs += ctl.first_cutoffs;
+    free_position(pos);
+  }
+  printf("%-17s Nodes:%i, Time:%i ms, First move cutoffs:%.1f%%\n", name, nodes, total_ms,
+	 cutoffs > 0 ? 100.0 * first_cutoffs / cutoffs : 0.0);
+}
+
+/*
+  killers and countermoves alone and together, compared to none.
+*/
+static void cmd_orderbench(){
+  search_params_ old, params;
+
+  get_search_params(&old);
+  params = old;
+  params.killers = params.countermoves = 0;
+  order_bench("history only", &params);
+  params.killers = 1;
+  order_bench("killers", &params);
+  params.killers = 0;
+  params.countermoves = 1;
+  order_bench("countermoves", &params);
+  params.killers = 1;
+  order_bench("both", &params);
+  set_search_params(&old);
+  pos = new_chess_position();
+}
+
+/*
+  nodes, of them quiescence nodes, and time to PRUNE_BENCH_DEPTH on
+  the bench positions, and tactical positions solved at TACTICS_DEPTH.
+*/
+static void see_bench(char *name, search_params params){
+  int i, nodes=0, q_nodes=0, total_ms=0, solved=0;
+  char alg[10];
+  move mov;
+  search_control_ ctl;
+  search_limits_ limits;
+  long long before;
+
+  set_search_params(params);
+  init_search_limits(&limits, PRUNE_BENCH_DEPTH, PRUNE_BENCH_DEPTH);
+  for (i=0; bench_positions[i] != NULL; i++) {
+    pos = new_chess_position_fen(bench_positions[i]);
+    trans_table_clear();
+    memset(&ctl, 0, sizeof(search_control_));
+    before = monotonic_ms();
+    bestMove_control(pos, &limits, 1, &ctl);
+    total_ms += elapsed_ms(before);
+    nodes += getNodes(pos);
+    q_nodes += ctl.q_nodes;
+    free_position(pos);
+  }
+  for (i=0; tactics_positions[i][0] != NULL; i++) {
+    pos = new_chess_position_fen(tactics_positions[i][0]);
+    trans_table_clear();
+    mov = bestMove_threads(pos, TACTICS_DEPTH, TACTICS_DEPTH, 1);
+    if (mov != NULL_MOVE) {
+      move_to_alg(mov, alg);
+      if (!strncmp(alg, tactics_positions[i][1], 4)) solved++;
+    }
+    free_position(pos);
+  }
+  printf("%-17s Nodes:%i, Q-nodes:%i, Time:%i ms, Solved:%i/%i\n", name, nodes, q_nodes,
+	 total_ms, solved, i);
+}
+
+static void cmd_seebench(){
+  search_params_ old, params;
+
+  get_search_params(&old);
+  params = old;
+  params.see = 0;
+  see_bench("mvv/lva", &params);
+  params.see = 1;
+  see_bench("see", &params);
+  set_search_params(&old);
+  pos = new_chess_position();
+}
+
+/*
+  nodes and time to MULTI_PV_BENCH_DEPTH on the bench positions for
+  1, 3 and 5 lines, against the nodes of that many single searches.
+*/
+static void cmd_multipvbench(){
+  int i, n, nodes, single=0, total_ms;
+  int lines[] = {1, 3, 5, 0};
+  analysis_line_ found[MAX_MULTI_PV];
+  search_control_ ctl;
+  search_limits_ limits;
+  long long before;
+
+  init_search_limits(&limits, MULTI_PV_BENCH_DEPTH, MULTI_PV_BENCH_DEPTH);
+  for (n=0; lines[n]; n++) {
+    nodes = total_ms = 0;
+    for (i=0; bench_positions[i] != NULL; i++) {
+      pos = new_chess_position_fen(bench_positions[i]);
+      trans_table_clear();
+      memset(&ctl, 0, sizeof(search_control_));
+      before = monotonic_ms();
+      analyze(pos, &limits, lines[n], found, &ctl);
+      total_ms += elapsed_ms(before);
+      nodes += getNodes(pos);
+      free_position(pos);
+    }
+    if (lines[n] == 1) single = nodes;
+    printf("Lines:%i Nodes:%i, Time:%i ms, %i single searches:%i nodes\n", lines[n], nodes,
+	   total_ms, lines[n], lines[n] * single);
+  }
+  pos = new_chess_position();
+}
+
+/* mate problems and the moves to mate, 0 if there is none within 2 */
+static struct { char *fen; int moves; } mate_positions[] = {
+  {"6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - -", 1},
+  {MATE_BENCH_POSITION, 2},
+  {"kbK5/pp6/1P6/8/8/8/8/R7 w - -", 2},
+  {"r1b1kb1r/pppp1ppp/5q2/4n3/3KP3/2N3PN/PPP4P/R1BQ1B1R b kq -", 3},
+  {"r5rk/5p1p/5R2/4B3/8/8/7P/7K w - -", 3},
+  {"r3k2r/ppp2Npp/1b5n/4p2b/2B1P2q/BQP2P2/P5PP/RN5K w kq -", 3},
+  {"r1b3kr/ppp1Bp1p/1b6/n2P4/2p3q1/2Q2N2/P4PPP/RN2R1K1 w - -", 3},
+  {"2q1nk1r/4Rp2/1ppp1P2/6Pp/3p1B2/3P3P/PPP1Q3/6K1 w - -", 5},
+  {"r2qkb1r/pp1n1ppp/2p2n2/4p1B1/2B1P3/2N2Q2/PPP2PPP/R3K2R w KQkq -", 0},
+  {NULL, 0}
+};
+
+/*
+  solves the mate problems with the proof-number search and
+  with alpha-beta to the mate depth (stopped by the mate limit).
+*/
+static void cmd_matebench(){
+  int i, result, nodes, plies, ms;
+  move mov;
+  char alg[10];
+  pv line;
+  search_control_ ctl;
+  search_limits_ limits;
+  long long before;
+
+  for (i=0; mate_positions[i].fen != NULL; i++) {
+    plies = 2 * (mate_positions[i].moves ? mate_positions[i].moves : 2) - 1;
+    pos = new_chess_position_fen(mate_positions[i].fen);
+    before = monotonic_ms();
+    result = solve_mate(pos, plies, MATE_SOLVER_BUDGET, &line, &nodes);
+    ms = elapsed_ms(before);
+    printf("Mate in %i: pn %s plies:%i Nodes:%i, Time:%i ms", (plies + 1) / 2,
+	   result == MATE_FOUND ? "mate" : (result == MATE_NONE ? "none" : "unknown"),
+	   line.moves, nodes, ms);
+    init_search_limits(&limits, plies, plies);
+    limits.mate = (plies + 1) / 2;
+    trans_table_clear();
+    memset(&ctl, 0, sizeof(search_control_));
+    before = monotonic_ms();
+    mov = bestMove_control(pos, &limits, 1, &ctl);
+    ms = elapsed_ms(before);
+    move_to_alg(mov, alg);
+    printf(", alpha-beta %.4s score:%i Nodes:%i, Time:%i ms\n", alg, getValue(pos),
+	   getNodes(pos), ms);
+    free_position(pos);
+  }
+  pos = new_chess_position();
+}
+
+/*
+  searches the bench positions with a node limit twice (same moves
+  and nodes), with a movetime (time used) and a mate position with
+  the depth and the mate limits (nodes to find it).
+*/
+static void cmd_limitbench(){
+  int i, run, ms;
+  move mov;
+  char alg[10];
+  search_control_ ctl;
+  search_limits_ limits;
+  long long before;
+
+  for (run=0; run < 2; run++) {
+    init_search_limits(&limits, MAX_PLY, 1);
+    limits.nodes = LIMIT_BENCH_NODES;
+    printf("Nodes %i:", LIMIT_BENCH_NODES);
+    for (i=0; bench_positions[i] != NULL; i++) {
+      pos = new_chess_position_fen(bench_positions[i]);
+      trans_table_clear();
+      memset(&ctl, 0, sizeof(search_control_));
+      mov = bestMove_control(pos, &limits, 1, &ctl);
+      move_to_alg(mov, alg);
+      printf(" %.4s/%i", alg, getNodes(pos));
+      free_position(pos);
+    }
+    printf("\n");
+  }
+  init_search_limits(&limits, MAX_PLY, 1);
+  limits.movetime = LIMIT_BENCH_MOVETIME;
+  printf("Movetime %i ms:", LIMIT_BENCH_MOVETIME);
+  for (i=0; bench_positions[i] != NULL; i++) {
+    pos = new_chess_position_fen(bench_positions[i]);
+    trans_table_clear();
+    memset(&ctl, 0, sizeof(search_control_));
+    before = monotonic_ms();
+    bestMove_control(pos, &limits, 1, &ctl);
+    printf(" %i", elapsed_ms(before));
+    free_position(pos);
+  }
+  printf(" ms\n");
+  for (run=0; run < 2; run++) {
+    if (run) {
+      init_search_limits(&limits, MAX_PLY, 1);
+      limits.mate = 2;
+    }
+    else init_search_limits(&limits, MATE_BENCH_DEPTH, MATE_BENCH_DEPTH);
+    pos = new_chess_position_fen(MATE_BENCH_POSITION);
+    trans_table_clear();
+    memset(&ctl, 0, sizeof(search_control_));
+    before = monotonic_ms();
+    mov = bestMove_control(pos, &limits, 1, &ctl);
+    ms = elapsed_ms(before);
+    move_to_alg(mov, alg);
+    printf("%-17s %.4s score:%i Nodes:%i, Time:%i ms\n", run ? "Mate in 2:" : "Depth:",
+	   alg, getValue(pos), getNodes(pos), ms);
+    free_position(pos);
+  }
+  pos = new_chess_position();
+}
+
+static void print_params(search_params params){
+  printf("lmr:%s, futility:%s, reverse futility:%s, see:%s, tablebases:%s\n",
+	 params->lmr ? "on" : "off", params->futility ? "on" : "off",
+	 params->reverse_futility ? "on" : "off", params->see ? "on" : "off",
+	 params->tablebases ? "on" : "off");
+}
+
+static void cmd_lmr(){
+  search_params_ params;
+  get_search_params(&params);
+  params.lmr = !params.lmr;
+  set_search_params(&params);
+  print_params(&params);
+}
+
+static void cmd_futility(){
+  search_params_ params;
+  get_search_params(&params);
+  params.futility = !params.futility;
+  set_search_params(&params);
+  print_params(&params);
+}
+
+static void cmd_rfutility(){
+  search_params_ params;
+  get_search_params(&params);
+  params.reverse_futility = !params.reverse_futility;
+  set_search_params(&params);
+  print_params(&params);
+}
+
+static void cmd_see(){
+  search_params_ params;
+  get_search_params(&params);
+  params.see = !params.see;
+  set_search_params(&params);
+  print_params(&params);
+}
+
+static void cmd_tablebases(){
+  search_params_ params;
+  get_search_params(&params);
+  params.tablebases = !params.tablebases;
+  set_search_params(&params);
+  print_params(&params);
+}
+
+/* endgames in the tables */
+static char *tb_positions[] = {
+  "8/8/8/3k4/8/8/8/Q3K3 w - -",
+  "8/8/8/4k3/8/8/8/R3K3 w - -",
+  "8/8/8/4k3/8/8/8/2B1KN2 w - -",
+  "3r4/8/8/3k4/8/8/8/Q3K3 w - -",
+  "8/8/4k3/8/8/8/3P4/3K4 w - -",
+  "8/8/8/3k4/8/2r5/4P3/4KR2 w - -",
+  "8/2p5/8/8/2k5/8/7R/1K6 w - -",
+  NULL
+};
+
+/*
+  the tables positions searched to TB_BENCH_DEPTH with the tables
+  (probed at the root and in the search) and without them.
+*/
+static void cmd_tbbench(){
+  search_params_ old, params;
+  search_limits_ limits;
+  search_control_ ctl;
+  int i, run, nodes, ms;
+  move mov;
+  char alg[10];
+  long long before;
+
+  if (!tb_tables()) {
+    printf("No tables, use tb <dir>\n");
+    return;
+  }
+  get_search_params(&old);
+  params = old;
+  for (run=0; run < 2; run++) {
+    params.tablebases = !run;
+    set_search_params(&params);
+    printf("%-17s", run ? "no tables:" : "tables:");
+    nodes = 0;
+    before = monotonic_ms();
+    for (i=0; tb_positions[i] != NULL; i++) {
+      pos = new_chess_position_fen(tb_positions[i]);
+      trans_table_clear();
+      memset(&ctl, 0, sizeof(search_control_));
+      init_search_limits(&limits, TB_BENCH_DEPTH, TB_BENCH_DEPTH);
+      mov = bestMove_control(pos, &limits, 1, &ctl);
+      move_to_alg(mov, alg);
+      printf(" %.4s/%i", alg, getValue(pos));
+      nodes += getNodes(pos);
+      free_position(pos);
+    }
+    ms = elapsed_ms(before);
+    printf("\n%-17s Nodes:%i, Time:%i ms\n", "", nodes, ms);
+  }
+  set_search_params(&old);
+  pos = new_chess_position();
+}
+
 static void cmd_printboard(){
   printboard=1;
 }
 
+/*
+  searches the bench positions to STATS_BENCH_DEPTH and prints
+  their search_stats_, then the time split of the same searches
+  with set_search_timing and what the timing costs.
+*/
+static void cmd_statsbench(){
+  int i, d, timing, nodes, ms;
+  long long movegen, eval_ns, qsearch;
+  search_control_ ctl;
+  search_limits_ limits;
+  search_stats stats = &ctl.stats;
+
+  init_search_limits(&limits, STATS_BENCH_DEPTH, STATS_BENCH_DEPTH);
+  for (timing=0; timing < 2; timing++) {
+    set_search_timing(timing);
+    nodes = ms = 0;
+    movegen = eval_ns = qsearch = 0;
+    for (i=0; bench_positions[i] != NULL; i++) {
+      pos = new_chess_position_fen(bench_positions[i]);
+      trans_table_clear();
+      memset(&ctl, 0, sizeof(search_control_));
+      bestMove_control(pos, &limits, 1, &ctl);
+      nodes += stats->nodes;
+      ms += stats->time;
+      movegen += stats->movegen_ns;
+      eval_ns += stats->eval_ns;
+      qsearch += stats->qsearch_ns;
+      if (!timing) {
+	printf("Depth:%i/%i Nodes:%i Q:%i TT:%i/%i (%.1f%%) TTcut:%i Full:%i Eval:%.1f%% Pawn:%.1f%% Null:%i FHF:%.1f%% EBF:",
+	       stats->depth, stats->seldepth, stats->nodes, stats->q_nodes, stats->tt_hits,
+	       stats->tt_probes, stats->tt_probes ? 100.0 * stats->tt_hits / stats->tt_probes : 0.0,
+	       stats->tt_cutoffs, stats->hashfull,
+	       stats->eval_probes ? 100.0 * stats->eval_hits / stats->eval_probes : 0.0,
+	       stats->pawn_probes ? 100.0 * stats->pawn_hits / stats->pawn_probes : 0.0, stats->null_cutoffs,
+	       stats->cutoffs ? 100.0 * stats->first_cutoffs / stats->cutoffs : 0.0);
+	for (d=stats->first_depth+1; d <= stats->depth; d++)
+	  printf(" %.1f", (double) (stats->iteration_nodes[d] - stats->iteration_nodes[d-1]) /
+		 (stats->iteration_nodes[d-1] - (d > 2 ? stats->iteration_nodes[d-2] : 0)));
+	printf("\n");
+      }
+      free_position(pos);
+    }
+    printf("%-17s Nodes:%i, Time:%i ms, Nps:%i", timing ? "timed" : "untimed", nodes, ms,
+	   ms > 0 ? (int) (nodes * 1000.0 / ms) : 0);
+    if (timing && ms > 0)
+      printf(", movegen %i%% eval %i%% qsearch %i%%", (int) (movegen / 10000 / ms),
+	     (int) (eval_ns / 10000 / ms), (int) (qsearch / 10000 / ms));
+    printf("\n");
+  }
+  set_search_timing(0);
+  pos = new_chess_position();
+}
+
+/*
+  a game of enginebench: the bench positions searched by one
+  engine, the moves and nodes of each.
+*/
+typedef struct engine_game_ {
+  pthread_t thread;
+  engine eng;
+  move moves[16];
+  int nodes[16];
+} engine_game_;
+
+static void *engine_game(void *arg){
+  engine_game_ *game = (engine_game_ *) arg;
+  search_control_ ctl;
+  search_limits_ limits;
+  position p;
+  int i;
+
+  init_search_limits(&limits, ENGINE_BENCH_DEPTH, ENGINE_BENCH_DEPTH);
+  for (i=0; bench_positions[i] != NULL; i++) {
+    p = new_chess_position_fen(bench_positions[i]);
+    memset(&ctl, 0, sizeof(search_control_));
+    ctl.eng = game->eng;
+    game->moves[i] = bestMove_control(p, &limits, 1, &ctl);
+    game->nodes[i] = getNodes(p);
+    free_position(p);
+  }
+  return NULL;
+}
+
+/*
+  plays the bench positions on ENGINE_BENCH_ENGINES engines one
+  after the other, then on all of them at the same time. The
+  engines share no table, so each game has the moves and nodes
+  of the first one.
+*/
+static void cmd_enginebench(){
+  engine_game_ games[ENGINE_BENCH_ENGINES];
+  int i, g, run, same=1;
+  long long before;
+
+  for (run=0; run < 2; run++) {
+    before = monotonic_ms();
+    for (g=0; g < ENGINE_BENCH_ENGINES; g++) {
+      games[g].eng = new_engine(ENGINE_BENCH_HASH);
+      if (run == 0) engine_game(&games[g]);
+      else pthread_create(&games[g].thread, NULL, engine_game, &games[g]);
+    }
+    for (g=0; g < ENGINE_BENCH_ENGINES; g++) {
+      if (run == 1) pthread_join(games[g].thread, NULL);
+      for (i=0; bench_positions[i] != NULL; i++)
+	if (games[g].moves[i] != games[0].moves[i] || games[g].nodes[i] != games[0].nodes[i])
+	  same = 0;
+      free_engine(games[g].eng);
+    }
+    printf("%-17s Engines:%i, Time:%i ms\n", run ? "parallel" : "sequential",
+	   ENGINE_BENCH_ENGINES, elapsed_ms(before));
+  }
+  printf("Games %s\n", same ? "identical" : "DIFFER");
+}
+
+static int compare_ms(const void *a, const void *b){
+  return *(const int *) a - *(const int *) b;
+}
+
+/*
+  searches the bench positions LATENCY_BENCH_RUNS times each
+  with a movetime of LATENCY_BENCH_LIMIT ms, on 1 and 2 threads,
+  and with a soft deadline at a third of it and the hard one
+  at LATENCY_BENCH_LIMIT. Prints the percentiles of the time
+  from the call to the move against the limit.
+*/
+static void cmd_latencybench(){
+  int i, run, config, n, over, total;
+  int times[LATENCY_BENCH_RUNS * 8];
+  long long before;
+  search_control_ ctl;
+  search_limits_ limits;
+  char *names[] = { "movetime", "movetime 2 thr", "soft+hard" };
+
+  for (config=0; config < 3; config++) {
+    init_search_limits(&limits, MAX_PLY, 1);
+    if (config < 2) limits.movetime = LATENCY_BENCH_LIMIT;
+    else {
+      limits.soft_time = LATENCY_BENCH_LIMIT / 3;
+      limits.hard_time = LATENCY_BENCH_LIMIT;
+    }
+    n = over = total = 0;
+    for (run=0; run < LATENCY_BENCH_RUNS; run++) {
+      for (i=0; bench_positions[i] != NULL && n < LATENCY_BENCH_RUNS * 8; i++) {
+	pos = new_chess_position_fen(bench_positions[i]);
+	trans_table_clear();
+	memset(&ctl, 0, sizeof(search_control_));
+	before = monotonic_ms();
+	bestMove_control(pos, &limits, config == 1 ? 2 : 1, &ctl);
+	times[n] = elapsed_ms(before);
+	total += times[n];
+	if (times[n] > LATENCY_BENCH_LIMIT) over++;
+	n++;
+	free_position(pos);
+      }
+    }
+    qsort(times, n, sizeof(int), compare_ms);
+    printf("%-17s Limit:%i ms, Moves:%i, Avg:%i p50:%i p90:%i p99:%i Max:%i ms, Over:%i\n",
+	   names[config], LATENCY_BENCH_LIMIT, n, total / n, times[n / 2],
+	   times[(n * 90 + 99) / 100 - 1], times[(n * 99 + 99) / 100 - 1], times[n - 1], over);
+  }
+  pos = new_chess_position();
+}
+
+/*
+  searches the bench positions to RESUME_BENCH_DEPTH, then again
+  stopped at half the nodes and resumed to RESUME_BENCH_DEPTH.
+  Then plays RESUME_BENCH_MOVES plies from the start position
+  to RESUME_BENCH_DEPTH clearing the table before each move, and
+  searches the same game again keeping the table.
+*/
+static void cmd_resumebench(){
+  int i, run, full, stopped, resumed, same=0, nodes;
+  move mov, game[RESUME_BENCH_MOVES];
+  search_control_ ctl;
+  search_limits_ limits;
+  long long before;
+
+  init_search_limits(&limits, RESUME_BENCH_DEPTH, RESUME_BENCH_DEPTH);
+  for (i=0; bench_positions[i] != NULL; i++) {
+    pos = new_chess_position_fen(bench_positions[i]);
+    trans_table_clear();
+    memset(&ctl, 0, sizeof(search_control_));
+    mov = bestMove_control(pos, &limits, 1, &ctl);
+    full = getNodes(pos);
+    trans_table_clear();
+    limits.nodes = full / 2;
+    memset(&ctl, 0, sizeof(search_control_));
+    bestMove_control(pos, &limits, 1, &ctl);
+    stopped = getNodes(pos);
+    limits.nodes = 0;
+    memset(&ctl, 0, sizeof(search_control_));
+    if (bestMove_control(pos, &limits, 1, &ctl) == mov) same++;
+    resumed = getNodes(pos);
+    printf("Full:%i Stopped:%i Resumed:%i (%i%%)\n", full, stopped, resumed,
+	   full > 0 ? (int) ((stopped + resumed) * 100.0 / full) : 0);
+    free_position(pos);
+  }
+  printf("Resumed to the move of the full search: %i of %i\n", same, i);
+  for (run=0; run < 2; run++) {
+    pos = new_chess_position();
+    setOutOfBook(pos);
+    trans_table_clear();
+    nodes = 0;
+    before = monotonic_ms();
+    for (i=0; i < RESUME_BENCH_MOVES; i++) {
+      if (!run) trans_table_clear();
+      memset(&ctl, 0, sizeof(search_control_));
+      mov = bestMove_control(pos, &limits, 1, &ctl);
+      nodes += getNodes(pos);
+      if (!run) game[i] = mov;
+      do_move(pos, game[i]);
+    }
+    printf("%-17s Moves:%i, Nodes:%i, Time:%i ms\n", run ? "kept table" : "cleared table",
+	   RESUME_BENCH_MOVES, nodes, elapsed_ms(before));
+    free_position(pos);
+  }
+  pos = new_chess_position();
+}
+
+/*
+  searches the bench positions to HASH_BENCH_DEPTH with tables of
+  1, 8, 64 and 1024 MB (if there is the memory), and prints the
+  nodes, time and the average hashfull. Then back to TT_DEFAULT_MB.
+*/
+static void cmd_hashbench(){
+  int i, m, nodes, full;
+  int mb[] = { 1, 8, 64, 1024 };
+  search_control_ ctl;
+  search_limits_ limits;
+  long long before;
+
+  init_search_limits(&limits, HASH_BENCH_DEPTH, HASH_BENCH_DEPTH);
+  for (m=0; m < 4; m++) {
+    if (!trans_table_resize(default_trans_table(), trans_table_entries_mb(mb[m]))) {
+      printf("%4i MB: not enough memory\n", mb[m]);
+      continue;
+    }
+    nodes = full = 0;
+    before = monotonic_ms();
+    for (i=0; bench_positions[i] != NULL; i++) {
+      pos = new_chess_position_fen(bench_positions[i]);
+      trans_table_clear();
+      memset(&ctl, 0, sizeof(search_control_));
+      bestMove_control(pos, &limits, 1, &ctl);
+      nodes += ctl.stats.nodes;
+      full += ctl.stats.hashfull;
+      free_position(pos);
+    }
+    printf("%4i MB: Nodes:%i, Time:%i ms, Hashfull:%i\n", mb[m], nodes,
+	   elapsed_ms(before), full / i);
+  }
+  trans_table_resize(default_trans_table(), trans_table_entries_mb(TT_DEFAULT_MB));
+  pos = new_chess_position();
+}
+
+/*
+  searches the bench positions to NPS_BENCH_DEPTH with a table of
+  NPS_BENCH_MB, so that most probes miss the caches, and prints the
+  best nodes per second of NPS_BENCH_RUNS runs.
+*/
+static void cmd_npsbench(){
+  int i, run, nodes=0, ms, best=0;
+  search_control_ ctl;
+  search_limits_ limits;
+  long long before;
+
+  if (!trans_table_resize(default_trans_table(), trans_table_entries_mb(NPS_BENCH_MB))) return;
+  init_search_limits(&limits, NPS_BENCH_DEPTH, NPS_BENCH_DEPTH);
+  for (run=0; run < NPS_BENCH_RUNS; run++) {
+    nodes = ms = 0;
+    for (i=0; bench_positions[i] != NULL; i++) {
+      pos = new_chess_position_fen(bench_positions[i]);
+      trans_table_clear();
+      memset(&ctl, 0, sizeof(search_control_));
+      before = monotonic_ms();
+      bestMove_control(pos, &limits, 1, &ctl);
+      ms += elapsed_ms(before);
+      nodes += ctl.stats.nodes;
+      free_position(pos);
+    }
+    if (ms > 0 && nodes * 1000.0 / ms > best) best = (int) (nodes * 1000.0 / ms);
+  }
+  printf("Table:%i MB, Entry:%i bytes, Nodes:%i, Nps:%i\n", NPS_BENCH_MB,
+	 (int) sizeof(trans_table_entry_), nodes, best);
+  trans_table_resize(default_trans_table(), trans_table_entries_mb(TT_DEFAULT_MB));
+  pos = new_chess_position();
+}
+
+/*
+  searches the bench positions to PAWN_BENCH_DEPTH with pawn tables
+  of 0 (none), 16 and PAWN_TABLE_DEFAULT_KB, and prints the best
+  nodes per second of NPS_BENCH_RUNS runs and the pawn hit rate.
+*/
+static void cmd_pawnbench(){
+  int i, k, run, nodes=0, ms, best, probes=0, hits=0;
+  int kb[] = { 0, 16, PAWN_TABLE_DEFAULT_KB };
+  search_control_ ctl;
+  search_limits_ limits;
+  long long before;
+
+  init_search_limits(&limits, PAWN_BENCH_DEPTH, PAWN_BENCH_DEPTH);
+  for (k=0; k < 3; k++) {
+    if (!pawn_table_resize(default_pawn_table(), pawn_table_entries_kb(kb[k]))) continue;
+    for (run=0, best=0; run < NPS_BENCH_RUNS; run++) {
+      nodes = ms = probes = hits = 0;
+      pawn_table_reset(default_pawn_table());
+      for (i=0; bench_positions[i] != NULL; i++) {
+	pos = new_chess_position_fen(bench_positions[i]);
+	trans_table_clear();
+	memset(&ctl, 0, sizeof(search_control_));
+	before = monotonic_ms();
+	bestMove_control(pos, &limits, 1, &ctl);
+	ms += elapsed_ms(before);
+	nodes += ctl.stats.nodes;
+	probes += ctl.stats.pawn_probes;
+	hits += ctl.stats.pawn_hits;
+	free_position(pos);
+      }
+      if (ms > 0 && nodes * 1000.0 / ms > best) best = (int) (nodes * 1000.0 / ms);
+    }
+    printf("%4i KB: Nodes:%i, Nps:%i, Pawn hits:%.1f%%\n", kb[k], nodes, best,
+	   probes ? 100.0 * hits / probes : 0.0);
+  }
+  pawn_table_resize(default_pawn_table(), pawn_table_entries_kb(PAWN_TABLE_DEFAULT_KB));
+  pos = new_chess_position();
+}
+
+/*
+  searches the bench positions to EVAL_BENCH_DEPTH with eval caches
+  of 0 (none), 16 and EVAL_CACHE_BENCH_KB, and prints the best
+  nodes per second of NPS_BENCH_RUNS runs and the eval hit rate.
+*/
+static void cmd_evalbench(){
+  int i, k, run, nodes=0, ms, best, probes=0, hits=0;
+  int kb[] = { 0, 16, EVAL_CACHE_BENCH_KB };
+  search_control_ ctl;
+  search_limits_ limits;
+  long long before;
+
+  init_search_limits(&limits, EVAL_BENCH_DEPTH, EVAL_BENCH_DEPTH);
+  for (k=0; k < 3; k++) {
+    if (!eval_cache_resize(default_eval_cache(), eval_cache_entries_kb(kb[k]))) continue;
+    for (run=0, best=0; run < NPS_BENCH_RUNS; run++) {
+      nodes = ms = probes = hits = 0;
+      for (i=0; bench_positions[i] != NULL; i++) {
+	pos = new_chess_position_fen(bench_positions[i]);
+	trans_table_clear();
+	eval_cache_reset(default_eval_cache());
+	memset(&ctl, 0, sizeof(search_control_));
+	before = monotonic_ms();
+	bestMove_control(pos, &limits, 1, &ctl);
+	ms += elapsed_ms(before);
+	nodes += ctl.stats.nodes;
+	probes += ctl.stats.eval_probes;
+	hits += ctl.stats.eval_hits;
+	free_position(pos);
+      }
+      if (ms > 0 && nodes * 1000.0 / ms > best) best = (int) (nodes * 1000.0 / ms);
+    }
+    printf("%4i KB: Nodes:%i, Nps:%i, Eval hits:%.1f%%\n", kb[k], nodes, best,
+	   probes ? 100.0 * hits / probes : 0.0);
+  }
+  eval_cache_resize(default_eval_cache(), eval_cache_entries_kb(EVAL_CACHE_DEFAULT_KB));
+  pos = new_chess_position();
+}
+
+/*
+  searches the bench positions to HASH_FILE_BENCH_DEPTH in a table
+  of HASH_FILE_BENCH_MB, saves it to HASH_FILE_BENCH_FILE and loads
+  it back, then searches them again: cold in an empty table and
+  warm in the loaded one.
+*/
+static void cmd_hashfilebench(){
+  int i, run, nodes;
+  search_control_ ctl;
+  search_limits_ limits;
+  long long before;
+  trans_table tt = default_trans_table();
+
+  if (!trans_table_resize(tt, trans_table_entries_mb(HASH_FILE_BENCH_MB))) return;
+  init_search_limits(&limits, HASH_FILE_BENCH_DEPTH, HASH_FILE_BENCH_DEPTH);
+  for (i=0; bench_positions[i] != NULL; i++) {
+    pos = new_chess_position_fen(bench_positions[i]);
+    memset(&ctl, 0, sizeof(search_control_));
+    bestMove_control(pos, &limits, 1, &ctl);
+    free_position(pos);
+  }
+  before = monotonic_ms();
+  if (!trans_table_save(tt, HASH_FILE_BENCH_FILE)) printf("Error (cannot write)\n");
+  printf("Save %i MB: %i ms\n", HASH_FILE_BENCH_MB, elapsed_ms(before));
+  for (run=0; run < 2; run++) {
+    before = monotonic_ms();
+    if (run == 0) trans_table_clear();
+    else if (!trans_table_load(tt, HASH_FILE_BENCH_FILE)) printf("Error (no table)\n");
+    if (run == 1) printf("Load %i MB: %i ms\n", HASH_FILE_BENCH_MB, elapsed_ms(before));
+    nodes = 0;
+    before = monotonic_ms();
+    for (i=0; bench_positions[i] != NULL; i++) {
+      pos = new_chess_position_fen(bench_positions[i]);
+      memset(&ctl, 0, sizeof(search_control_));
+      bestMove_control(pos, &limits, 1, &ctl);
+      nodes += ctl.stats.nodes;
+      free_position(pos);
+    }
+    printf("%-17s Nodes:%i, Time:%i ms\n", run ? "warm (loaded)" : "cold", nodes,
+	   elapsed_ms(before));
+  }
+  remove(HASH_FILE_BENCH_FILE);
+  trans_table_resize(tt, trans_table_entries_mb(TT_DEFAULT_MB));
+  pos = new_chess_position();
+}
+
+/*
+  a thread of ttstress, the data stored for a key is made from
+  the key so that a probe can check what it finds.
+*/
+typedef struct tt_stress_ {
+  pthread_t thread;
+  trans_table tt;
+  U64 seed;
+  int hits;
+  int bad; /* hits with the data of another key */
+  int torn; /* entries of the key with the data of another key, not found */
+} tt_stress_;
+
+static U64 tt_stress_key(int i){
+  U64 key = (U64) (i + 1) * 0x9E3779B97F4A7C15ULL;
+
+  return key ^ (key >> 29);
+}
+
+static void *tt_stress(void *arg){
+  tt_stress_ *stress = (tt_stress_ *) arg;
+  trans_table_entry_ copy;
+  trans_table_entry entries;
+  U64 key, expected;
+  int i, op;
+
+  for (op=0; op < TT_STRESS_OPS; op++) {
+    stress->seed ^= stress->seed << 13; /* xorshift */
+    stress->seed ^= stress->seed >> 7;
+    stress->seed ^= stress->seed << 17;
+    key = tt_stress_key((int) (stress->seed % TT_STRESS_KEYS));
+    if (op & 1) {
+      trans_table_store(stress->tt, key, (int) (key & 31), (move) (key >> 35),
+			(int) ((key >> 8) & 0xffff), TT_EXACT);
+      continue;
+    }
+    if (trans_table_probe(stress->tt, key, &copy) != NULL) {
+      stress->hits++;
+      if (trans_depth(&copy) != (int) (key & 31) || trans_best_move(&copy) != (move) (key >> 35) ||
+	  trans_value(&copy) != (int) ((key >> 8) & 0xffff) || trans_flag(&copy) != TT_EXACT)
+	stress->bad++;
+      continue;
+    }
+    /* not found: was it there, but read half written? */
+    entries = stress->tt->buckets[key & stress->tt->mask].entries;
+    for (i=0; i < TT_BUCKET; i++) {
+      copy = entries[i];
+      expected = trans_table_data(stress->tt, (int) (key & 31), (move) (key >> 35),
+				  (int) ((key >> 8) & 0xffff), TT_EXACT);
+      if ((copy.check ^ expected) == key && copy.data != expected) stress->torn++;
+    }
+  }
+  return NULL;
+}
+
+/*
+  TT_STRESS_THREADS threads store and probe TT_STRESS_KEYS keys
+  in a table of TT_STRESS_ENTRIES, with no locks. Prints the hits
+  with the data of another key (must be 0) and the entries read
+  while written, that a table without the check would have
+  returned.
+*/
+static void cmd_ttstress(){
+  tt_stress_ threads[TT_STRESS_THREADS];
+  int i, hits=0, bad=0, torn=0;
+  trans_table tt = new_trans_table(TT_STRESS_ENTRIES);
+  long long before = monotonic_ms();
+
+  for (i=0; i < TT_STRESS_THREADS; i++) {
+    threads[i].tt = tt;
+    threads[i].seed = tt_stress_key(i);
+    threads[i].hits = threads[i].bad = threads[i].torn = 0;
+    pthread_create(&threads[i].thread, NULL, tt_stress, &threads[i]);
+  }
+  for (i=0; i < TT_STRESS_THREADS; i++) {
+    pthread_join(threads[i].thread, NULL);
+    hits += threads[i].hits;
+    bad += threads[i].bad;
+    torn += threads[i].torn;
+  }
+  printf("Threads:%i, Operations:%i, Hits:%i, Bad moves:%i, Torn entries skipped:%i, Time:%i ms\n",
+	 TT_STRESS_THREADS, TT_STRESS_THREADS * TT_STRESS_OPS, hits, bad, torn,
+	 elapsed_ms(before));
+  free_trans_table(tt);
+}
+
 static void cmd_help() {
   printf(help_msg);
 }
@@ -269,8 +1415,36 @@ static cmd_table commands[] = {
   {"force\n", cmd_force}, 
   {"perft5\n", cmd_perft5},
   {"perft6\n", cmd_perft6},
+  {"perftbench\n", cmd_perftbench},
   {"bench\n", cmd_bench},
   {"bench2\n", cmd_bench2},
+  {"smpbench\n", cmd_smpbench},
+  {"algobench\n", cmd_algobench},
+  {"alphabeta\n", cmd_alphabeta},
+  {"pvs\n", cmd_pvs},
+  {"mtdf\n", cmd_mtdf},
+  {"prunebench\n", cmd_prunebench},
+  {"orderbench\n", cmd_orderbench},
+  {"seebench\n", cmd_seebench},
+  {"multipvbench\n", cmd_multipvbench},
+  {"limitbench\n", cmd_limitbench},
+  {"latencybench\n", cmd_latencybench},
+  {"statsbench\n", cmd_statsbench},
+  {"enginebench\n", cmd_enginebench},
+  {"resumebench\n", cmd_resumebench},
+  {"hashbench\n", cmd_hashbench},
+  {"hashfilebench\n", cmd_hashfilebench},
+  {"npsbench\n", cmd_npsbench},
+  {"pawnbench\n", cmd_pawnbench},
+  {"evalbench\n", cmd_evalbench},
+  {"ttstress\n", cmd_ttstress},
+  {"matebench\n", cmd_matebench},
+  {"tbbench\n", cmd_tbbench},
+  {"tablebases\n", cmd_tablebases},
+  {"lmr\n", cmd_lmr},
+  {"futility\n", cmd_futility},
+  {"rfutility\n", cmd_rfutility},
+  {"see\n", cmd_see},
   {"playother\n", cmd_playother},
   {"printboard\n", cmd_printboard},
   {"help\n", cmd_help},
@@ -317,6 +1491,7 @@ static void opponent_ended(){
 int main() {
   move me_mov;
   function_ptr *funptr;
+  search_control_ ctl;
   
   signal(SIGINT, SIG_IGN);
   signal(SIGTERM, SIG_IGN);
@@ -328,6 +1503,7 @@ int main() {
   fflush(NULL);
   printf(intro_msg);
   pos = new_chess_position();
+  init_search_limits(&limits, MAXDEPTH, 4);
 
   while (1) {
 
@@ -338,7 +1514,9 @@ int main() {
        
     if (!force_mode && !GameOver && getToMove(pos)==getCompSide(pos)) {
       allocate_time();
-      me_mov = bestMove(pos, MAXDEPTH, 4);
+      memset(&ctl, 0, sizeof(search_control_));
+      ctl.listener = print_search_info;
+      me_mov = bestMove_control(pos, &limits, 1, &ctl);
       if (me_mov==NULL_MOVE) opponent_ended(); /* Opponent move ended the Game */
       else {
 	do_move(pos, me_mov);
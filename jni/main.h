@@ -2,12 +2,51 @@
 #define MAIN
 #define MAXDEPTH 20
 #define MAX_INPUT 256
+#define SMP_BENCH_DEPTH 8
+#define ALGO_BENCH_DEPTH 7
+#define PRUNE_BENCH_DEPTH 7
+#define TACTICS_DEPTH 5
+#define ORDER_BENCH_DEPTH 8
+#define MULTI_PV_BENCH_DEPTH 7
+#define LIMIT_BENCH_NODES 100000
+#define LIMIT_BENCH_MOVETIME 300
+#define MATE_BENCH_DEPTH 8
+#define PERFT_BENCH_DEPTH 4
+#define MATE_SOLVER_BUDGET 2000000
+#define STATS_BENCH_DEPTH 8
+#define ENGINE_BENCH_DEPTH 7
+#define ENGINE_BENCH_ENGINES 4
+#define ENGINE_BENCH_HASH 262144 /* entries of each engine */
+#define LATENCY_BENCH_LIMIT 50 /* ms */
+#define LATENCY_BENCH_RUNS 40 /* searches of each bench position */
+#define TB_BENCH_DEPTH 8
+#define RESUME_BENCH_DEPTH 8
+#define HASH_BENCH_DEPTH 9
+#define NPS_BENCH_DEPTH 9
+#define NPS_BENCH_MB 256
+#define NPS_BENCH_RUNS 3 /* the best run is printed */
+#define PAWN_BENCH_DEPTH 9
+#define EVAL_BENCH_DEPTH 9
+#define HASH_FILE_BENCH_MB 64
+#define HASH_FILE_BENCH_DEPTH 9
+#define HASH_FILE_BENCH_FILE "hashfilebench.mmtt"
+#define TT_STRESS_THREADS 8
+#define TT_STRESS_OPS 4000000 /* stores and probes of each thread */
+#define TT_STRESS_ENTRIES 1024 /* a small table, for many collisions */
+#define TT_STRESS_KEYS 4096
+#define RESUME_BENCH_MOVES 8 /* plies of the game with and without the kept table */
+#define PERFT_BENCH_POSITION "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -"
+#define MATE_BENCH_POSITION "r2qkb1r/pp2nppp/3p4/2pNN1B1/2BnP3/3P4/PPP2PPP/R2bK2R w KQkq - 1 0"
 #include "position.h"
 #include "search.h"
+#include "mate.h"
+#include "tb.h"
+#include "engine.h"
 #include "book.h"
 #include <string.h>
 #include <signal.h>
 #include <stdio.h>
+#include <unistd.h>
 
 static char intro_msg[] = 
 ".--------------------------------------------.\n"
@@ -26,11 +65,51 @@ static char help_msg[] =
 "force            - enter force mode\n"
 "perft5           - run perft 5\n"
 "perft6           - run perft 6\n"
+"perft <X> [T]    - leaves to depth X, with T threads\n"
+"divide <X> [T]   - perft per move\n"
+"mate <X>         - mate in X moves by proof-number search\n"
+"tbgen <dir>      - generate the missing endgame tables in dir\n"
+"tb <dir>         - use the endgame tables in dir\n"
+"memory <X>       - transposition table of X MB\n"
+"pawnhash <X>     - pawn table of X KB, 0 for none\n"
+"evalcache <X>    - eval cache of X KB, 0 for none\n"
+"savehash <file>  - write the transposition table to file\n"
+"loadhash <file>  - map the transposition table saved in file\n"
+"perftbench       - perft time with bulk counting, hash and threads\n"
 "bench            - run bench\n"
 "bench2           - run bench2 \n"
+"smpbench         - time to depth with 1, 2, 4 ... threads\n"
+"algobench        - nodes and time to depth for each search\n"
+"alphabeta        - search with alpha-beta (default)\n"
+"pvs              - search with PVS and aspiration windows\n"
+"mtdf             - search with MTD(f)\n"
+"prunebench       - nodes to depth and tactics solved, per pruning\n"
+"orderbench       - nodes to depth and first move cutoffs, per ordering\n"
+"seebench         - nodes to depth and tactics solved, with and without see\n"
+"multipvbench     - nodes to depth for 1, 3 and 5 best lines\n"
+"limitbench       - searches with node, movetime and mate limits\n"
+"latencybench     - move time percentiles against the time limit\n"
+"statsbench       - search statistics of the bench positions, timed\n"
+"enginebench      - games on independent engines at the same time\n"
+"resumebench      - interrupted searches resumed, games with the kept table\n"
+"hashbench        - nodes to depth with tables of 1 to 1024 MB\n"
+"hashfilebench    - save and load a table, cold and warm searches\n"
+"npsbench         - nodes per second with a large table\n"
+"pawnbench        - nodes per second without and with pawn tables\n"
+"evalbench        - nodes per second without and with eval caches\n"
+"ttstress         - threads storing and probing one small table\n"
+"matebench        - mate problems by proof-number search and alpha-beta\n"
+"tbbench          - endgames searched with and without the tables\n"
+"lmr              - late move reductions on/off\n"
+"futility         - futility pruning on/off\n"
+"rfutility        - reverse futility pruning on/off\n"
+"see              - static exchange evaluation of captures on/off\n"
+"tablebases       - endgame tables in the search on/off\n"
 "playother        - sets comp to play color not on move\n"
 "printboard       - prints the position after each move\n"
 "level 0 <X> <Y>  - set the time control to X with inc Y\n"
+"st <X>           - search X seconds per move\n"
+"sd <X>           - search at most X plies\n"
 "setboard <FEN>   - set the board to the position FEN\n"
 "help/?           - this message\n";
 
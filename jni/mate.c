@@ -0,0 +1,263 @@
+#include "mate.h"
+#include <limits.h>
+/*-------------------------------------------------------.
+ | file: mate.c                                          |
+ | contains: proof-number search for forced mates. The   |
+ |           side to move (the attacker) has to mate     |
+ |           within max plies whatever the defender      |
+ |           plays. The search expands the most-proving  |
+ |           node until the root is proved or disproved, |
+ |           it never evaluates a position.              |
+  -------------------------------------------------------*/
+
+typedef struct mate_tree_ {
+  mate_node nodes; /* the tree, node 0 is the root */
+  int size; /* nodes in use */
+  int allocated; /* nodes allocated */
+  int budget; /* max nodes */
+  int max_plies; /* the mate has to be within these plies */
+} mate_tree_;
+
+/*-------------------------------------------------------.
+ | function: mate_leaf(position pos, int ply,            |
+ |           int max_plies, unsigned int *pn,            |
+ |           unsigned int *dn)                           |
+ | effects: the proof and disproof numbers of the new    |
+ |          node pos at ply. The attacker moves at even  |
+ |          plies (OR nodes), the defender at odd plies  |
+ |          (AND nodes). The numbers start at the number |
+ |          of moves the side to move has to try.        |
+  -------------------------------------------------------*/
+static void mate_leaf(position pos, int ply, int max_plies, unsigned int *pn, unsigned int *dn){
+  int legal = count_legal_moves(pos);
+
+  if (legal == 0 && (ply & 1) && in_check(pos)) { /* the defender is mated */
+    *pn = 0;
+    *dn = PN_INFINITY;
+  }
+  else if (legal == 0 || ply >= max_plies || rep_search(pos) > 0) {
+    *pn = PN_INFINITY; /* stalemate, the attacker mated, too deep or repeated */
+    *dn = 0;
+  }
+  else if ((ply & 1) == 0) {
+    *pn = 1;
+    *dn = legal;
+  }
+  else {
+    *pn = legal;
+    *dn = 1;
+  }
+}
+
+/*-------------------------------------------------------.
+ | function: mate_expand(position pos, mate_tree_ *tree, |
+ |           int n, int ply) -> int                      |
+ | returns: 1 if the children of node n (the position    |
+ |          pos at ply) were added, 0 if they don't fit  |
+ |          in the node budget.                          |
+  -------------------------------------------------------*/
+static int mate_expand(position pos, mate_tree_ *tree, int n, int ply){
+  move legal[MAX_ROOT_MOVES];
+  unsigned int pns[MAX_ROOT_MOVES], dns[MAX_ROOT_MOVES];
+  move_list moves;
+  move mov;
+  int count=0, i, c;
+
+  moves = move_generator(pos);
+  while ((mov = pop(get_move_stack(pos),moves)) != NULL_MOVE) {
+    do_move(pos, mov);
+    if (!in_check_illegal(pos)) {
+      mate_leaf(pos, ply+1, tree->max_plies, pns+count, dns+count);
+      legal[count++] = mov;
+    }
+    undo_move(pos, mov);
+  }
+  free_move_list(get_move_stack(pos),moves);
+
+  if (tree->size + count > tree->budget) return 0;
+  if (tree->size + count > tree->allocated) {
+    while (tree->size + count > tree->allocated) tree->allocated *= 2;
+    if (tree->allocated > tree->budget) tree->allocated = tree->budget;
+    tree->nodes = (mate_node)realloc(tree->nodes, tree->allocated * sizeof(mate_node_));
+  }
+  tree->nodes[n].child = tree->size;
+  tree->nodes[n].children = count;
+  for (i=0; i < count; i++) {
+    c = tree->size++;
+    tree->nodes[c].mov = legal[i];
+    tree->nodes[c].parent = n;
+    tree->nodes[c].child = -1;
+    tree->nodes[c].children = 0;
+    tree->nodes[c].pn = pns[i];
+    tree->nodes[c].dn = dns[i];
+  }
+  return 1;
+}
+
+/*-------------------------------------------------------.
+ | function: mate_update(mate_tree_ *tree, int n,        |
+ |           int ply)                                    |
+ | effects: the numbers of the expanded node n from its  |
+ |          children. An OR node is proved by one child, |
+ |          an AND node needs all of them.               |
+  -------------------------------------------------------*/
+static void mate_update(mate_tree_ *tree, int n, int ply){
+  mate_node node = tree->nodes + n;
+  mate_node child = tree->nodes + node->child;
+  unsigned int min=PN_INFINITY, sum=0;
+  int i;
+
+  for (i=0; i < node->children; i++, child++) {
+    if (ply & 1) {
+      if (child->dn < min) min = child->dn;
+      sum += child->pn;
+    }
+    else {
+      if (child->pn < min) min = child->pn;
+      sum += child->dn;
+    }
+    if (sum > PN_INFINITY) sum = PN_INFINITY;
+  }
+  if (ply & 1) {
+    node->pn = sum;
+    node->dn = min;
+  }
+  else {
+    node->pn = min;
+    node->dn = sum;
+  }
+}
+
+/*-------------------------------------------------------.
+ | function: mate_select(mate_tree_ *tree, int n,        |
+ |           int ply) -> int                             |
+ | returns: the child of n on the way to the most-       |
+ |          proving node, the easiest child to prove at  |
+ |          an OR node and to disprove at an AND node.   |
+  -------------------------------------------------------*/
+static int mate_select(mate_tree_ *tree, int n, int ply){
+  mate_node node = tree->nodes + n;
+  int i, c, best = node->child;
+
+  for (i=1; i < node->children; i++) {
+    c = node->child + i;
+    if (ply & 1) {
+      if (tree->nodes[c].dn < tree->nodes[best].dn) best = c;
+    }
+    else if (tree->nodes[c].pn < tree->nodes[best].pn) best = c;
+  }
+  return best;
+}
+
+/*-------------------------------------------------------.
+ | function: mate_length(mate_tree_ *tree, int n,        |
+ |           int ply) -> int                             |
+ | returns: the plies to mate from the proved node n,    |
+ |          the attacker takes the shortest proved child |
+ |          and the defender the longest.                |
+  -------------------------------------------------------*/
+static int mate_length(mate_tree_ *tree, int n, int ply){
+  mate_node node = tree->nodes + n;
+  int i, length, best = (ply & 1) ? 0 : INT_MAX;
+
+  if (node->child == -1) return 0;
+  for (i=0; i < node->children; i++) {
+    if (tree->nodes[node->child+i].pn != 0) continue;
+    length = 1 + mate_length(tree, node->child+i, ply+1);
+    if ((ply & 1) ? length > best : length < best) best = length;
+  }
+  return best;
+}
+
+/*-------------------------------------------------------.
+ | function: mate_line(mate_tree_ *tree, pv *line)       |
+ | effects: line is the mate of the proved root, with    |
+ |          the defender's longest resistance.           |
+  -------------------------------------------------------*/
+static void mate_line(mate_tree_ *tree, pv *line){
+  int n=0, ply=0, i, c, best, length, best_length;
+
+  while (tree->nodes[n].child != -1 && line->moves < MAX_PV) {
+    best = -1;
+    best_length = 0;
+    for (i=0; i < tree->nodes[n].children; i++) {
+      c = tree->nodes[n].child + i;
+      if (tree->nodes[c].pn != 0) continue;
+      length = mate_length(tree, c, ply+1);
+      if (best == -1 || ((ply & 1) ? length > best_length : length < best_length)) {
+	best = c;
+	best_length = length;
+      }
+    }
+    line->pv[line->moves++] = tree->nodes[best].mov;
+    n = best;
+    ply++;
+  }
+}
+
+/*-------------------------------------------------------.
+ | function: solve_mate(position pos, int max_plies,     |
+ |           int node_budget, pv *line, int *nodes)      |
+ |           -> int                                      |
+ | returns: MATE_FOUND if the side to move mates within  |
+ |          max_plies (so 2n-1 for a mate in n), the     |
+ |          mate is in line. MATE_NONE if there is no    |
+ |          such mate, MATE_UNKNOWN if the tree needs    |
+ |          more than node_budget nodes.                 |
+ | effects: nodes is the size of the tree. pos is the    |
+ |          same after the call.                         |
+  -------------------------------------------------------*/
+int solve_mate(position pos, int max_plies, int node_budget, pv *line, int *nodes){
+  mate_tree_ tree;
+  int n, ply, result;
+
+  if (max_plies > MAX_PV) max_plies = MAX_PV;
+  if (node_budget < 1) node_budget = 1;
+  tree.budget = node_budget;
+  tree.max_plies = max_plies;
+  tree.allocated = node_budget < MATE_TREE_START ? node_budget : MATE_TREE_START;
+  tree.nodes = (mate_node)malloc(tree.allocated * sizeof(mate_node_));
+  tree.size = 1;
+  tree.nodes[0].mov = NULL_MOVE;
+  tree.nodes[0].parent = -1;
+  tree.nodes[0].child = -1;
+  tree.nodes[0].children = 0;
+  mate_leaf(pos, 0, max_plies, &tree.nodes[0].pn, &tree.nodes[0].dn);
+
+  while (tree.nodes[0].pn != 0 && tree.nodes[0].dn != 0) {
+    /* down to the most-proving node */
+    n = 0;
+    ply = 0;
+    while (tree.nodes[n].child != -1) {
+      n = mate_select(&tree, n, ply);
+      do_move(pos, tree.nodes[n].mov);
+      ply++;
+    }
+    if (!mate_expand(pos, &tree, n, ply)) {
+      while (n != 0) {
+	undo_move(pos, tree.nodes[n].mov);
+	n = tree.nodes[n].parent;
+      }
+      break;
+    }
+    /* and back to the root, updating the path */
+    mate_update(&tree, n, ply);
+    while (n != 0) {
+      undo_move(pos, tree.nodes[n].mov);
+      n = tree.nodes[n].parent;
+      ply--;
+      mate_update(&tree, n, ply);
+    }
+  }
+
+  line->moves = 0;
+  if (tree.nodes[0].pn == 0) {
+    result = MATE_FOUND;
+    mate_line(&tree, line);
+  }
+  else if (tree.nodes[0].dn == 0) result = MATE_NONE;
+  else result = MATE_UNKNOWN;
+  if (nodes != NULL) *nodes = tree.size;
+  free(tree.nodes);
+  return result;
+}
@@ -0,0 +1,28 @@
+#ifndef MATE
+#define MATE
+#include "position.h"
+#include "search.h" /* the mating line is a pv */
+
+#define MATE_FOUND 1 /* the side to move mates within the plies */
+#define MATE_NONE 0 /* proved that there is no such mate */
+#define MATE_UNKNOWN -1 /* the node budget ran out first */
+#define PN_INFINITY 100000000 /* proof or disproof number of a solved node */
+#define MATE_TREE_START 4096 /* nodes allocated at first, doubled up to the budget */
+
+/*
+  a node of the proof-number tree, the children of a node
+  are stored one after the other.
+ */
+typedef struct mate_node_ *mate_node;
+typedef struct mate_node_ {
+  move mov; /* the move from the parent to this node */
+  int parent; /* index of the parent, -1 for the root */
+  int child; /* index of the first child, -1 if not expanded */
+  int children; /* number of children */
+  unsigned int pn; /* proof number, 0 if the node is a mate */
+  unsigned int dn; /* disproof number, 0 if it is not */
+} mate_node_;
+
+/* FUNCTIONS */
+int solve_mate(position pos, int max_plies, int node_budget, pv *line, int *nodes);
+#endif
@@ -0,0 +1,79 @@
+package minimardi;
+
+/**
+ * The search of one position in a batch, see Search.analyzeBatch.
+ */
+public class BatchResult {
+
+	private int m_index;
+
+	private String m_fen;
+
+	private int m_move;
+
+	private int m_score;
+
+	private int m_nodes;
+
+	private String m_error;
+
+	BatchResult(int index,String fen,int move,int score,int nodes){
+		m_index = index;
+		m_fen = fen;
+		m_move = move;
+		m_score = score;
+		m_nodes = nodes;
+		m_error = null;
+	}
+
+	/**
+	 * A position that was not searched.
+	 */
+	BatchResult(int index,String fen,String error){
+		this(index, fen, 0, 0, 0);
+		m_error = error;
+	}
+
+	/**
+	 * @return the position of the fen in the input, from 0.
+	 */
+	public int getIndex(){
+		return m_index;
+	}
+
+	public String getFen(){
+		return m_fen;
+	}
+
+	/**
+	 * @return the best move, or 0 if the game is over.
+	 */
+	public int getMove(){
+		return m_move;
+	}
+
+	/**
+	 * @return centipawns from whites view.
+	 */
+	public int getScore(){
+		return m_score;
+	}
+
+	public int getNodes(){
+		return m_nodes;
+	}
+
+	/**
+	 * @return true if the position was not searched, the fen is bad.
+	 */
+	public boolean isFailed(){
+		return m_error != null;
+	}
+
+	/**
+	 * @return why the position was not searched, or null.
+	 */
+	public String getError(){
+		return m_error;
+	}
+}
@@ -0,0 +1,53 @@
+package minimardi;
+
+/**
+ * A thread of a BatchAnalysis, it searches the positions of the batch
+ * with the default engine, and owns the position being searched.
+ */
+class BatchWorker extends SearchWorker {
+
+	private BatchAnalysis m_batch;
+
+	private int[] m_limits;
+
+	BatchWorker(BatchAnalysis batch,SearchLimits limits,int number){
+		super("minimardi-batch-" + number);
+		m_batch = batch;
+		m_limits = limits.toArray();
+	}
+
+	public void run(){
+		try{
+			BatchAnalysis.Input input;
+			while((input = m_batch.nextInput()) != null){
+				Position position;
+				try{
+					position = new Position(input.fen);
+				}catch(IllegalArgumentException e){
+					m_batch.put(new BatchResult(input.index, input.fen, e.getMessage()));
+					continue;
+				}
+				BatchResult result;
+				try{
+					synchronized(this){
+						if(!reset()){
+							break;
+						}
+					}
+					int move = search(position, m_limits, 0);
+					result = new BatchResult(input.index, input.fen, move, position.getValue(), position.getNodes());
+				}finally{
+					position.dispose();
+				}
+				if(isStopped()){
+					break;
+				}
+				m_batch.put(result);
+			}
+		}catch(InterruptedException e){
+			// stopped while the results were full
+		}finally{
+			m_batch.workerDone();
+		}
+	}
+}
@@ -0,0 +1,325 @@
+package minimardi;
+
+/**
+ * A chess engine with its own transposition table, clock and search
+ * settings. Searches of different engines share nothing, so many games
+ * can be searched at the same time in one process, each with its own
+ * Engine and Position (the history and move stacks are in the Position).
+ * The static Search methods use the default engine.
+ * Searches of one engine share its table, as the threads of one search
+ * do. An engine must not be disposed while one of its searches runs.
+ * <p>
+ * The table is kept from move to move, the entries of earlier searches
+ * are aged out as the table fills. A search of a position on the
+ * principal variation of the last search (after the expected moves, or
+ * the same position after a stop) skips the iterations that search
+ * already did, so the time spent before an interruption is not lost.
+ */
+public class Engine extends MiniMardiNativeObject {
+
+	/**
+	 * Megabytes of the table of the default engine.
+	 */
+	public static final int DEFAULT_HASH_MB = 32;
+
+	/**
+	 * Entries of the table of the default engine, 16 bytes each.
+	 */
+	public static final int DEFAULT_HASH_ENTRIES = DEFAULT_HASH_MB * 65536;
+
+	public Engine(){
+		this(DEFAULT_HASH_ENTRIES);
+	}
+
+	/**
+	 * @param hashEntries the size of the transposition table, rounded
+	 * down to a power of two.
+	 */
+	public Engine(int hashEntries){
+		super(createNative(hashEntries));
+		if(m_CPtr == 0){
+			m_disposed = true;
+			throw new OutOfMemoryError("no memory for " + hashEntries + " hash entries");
+		}
+	}
+
+	/**
+	 * Lazy smp search, threads-1 helpers search private copies of
+	 * the position and share the transposition table of this engine.
+	 */
+	public int bestMove(Position position,SearchLimits limits,int threads){
+		return bestMoveNative(pointer(), position, limits.toArray(), threads);
+	}
+
+	/**
+	 * As Search.start, with the table, clock and settings of this engine.
+	 */
+	public SearchHandle start(Position position,SearchLimits limits,int threads,SearchListener listener){
+		return new SearchHandle(this, position, limits, threads, listener, 0);
+	}
+
+	/**
+	 * As Search.ponder, on the clock of this engine after ponderHit.
+	 */
+	public SearchHandle ponder(Position position,int reply,SearchLimits limits,int threads,SearchListener listener){
+		return Search.ponder(this, position, reply, limits, threads, listener);
+	}
+
+	/**
+	 * Used by the searches of this engine started after the call.
+	 */
+	public void setAlgorithm(SearchAlgorithm algorithm){
+		setAlgorithmNative(pointer(), algorithm.ordinal());
+	}
+
+	public SearchAlgorithm getAlgorithm(){
+		return SearchAlgorithm.values()[getAlgorithmNative(pointer())];
+	}
+
+	public void setHashEnabled(boolean enabled){
+		setHashEnabledNative(pointer(), enabled);
+	}
+
+	public void setTimingEnabled(boolean enabled){
+		setTimingEnabledNative(pointer(), enabled);
+	}
+
+	/**
+	 * Empty the transposition table and forget the last search,
+	 * not while searching.
+	 */
+	public void clearHash(){
+		clearHashNative(pointer());
+	}
+
+	/**
+	 * Resize the transposition table to mb megabytes (rounded down
+	 * to a power of two, at least 1), empty.
+	 * @throws OutOfMemoryError if there is not enough memory, the
+	 * table is kept.
+	 * @throws IllegalStateException if a search of this engine is
+	 * running, the table is kept.
+	 */
+	public void setHashSizeMb(int mb){
+		resizeHash(pointer(), mb);
+	}
+
+	public int getHashSizeMb(){
+		return getHashSizeMbNative(pointer());
+	}
+
+	/**
+	 * @return permille of the table stored by the last search, as
+	 * the hashfull of UCI.
+	 */
+	public int getHashfull(){
+		return getHashfullNative(pointer());
+	}
+
+	/**
+	 * Write the transposition table, and where the last search
+	 * stopped, to the file path. May be called while searching.
+	 * @return false if the file could not be written, an older
+	 * file at path is kept.
+	 */
+	public boolean saveHash(String path){
+		return saveHashNative(pointer(), path);
+	}
+
+	/**
+	 * Make the table saved at path by saveHash the table of this
+	 * engine, with its size. The file is mapped and read as the
+	 * searches need it, so this returns at once even for a large
+	 * table.
+	 * @return false if there is no table of this version at path,
+	 * or a search of this engine is running, the table is kept.
+	 */
+	public boolean loadHash(String path){
+		return loadHashNative(pointer(), path);
+	}
+
+	/**
+	 * Resize the pawn table to kb kilobytes (rounded down to a power
+	 * of two), empty, 0 for none. It keeps the pawn structure terms of
+	 * the evaluation, see SearchStats.getPawnHitRate. Not while
+	 * searching.
+	 * @throws OutOfMemoryError if there is not enough memory, the
+	 * table is kept.
+	 */
+	public void setPawnHashSizeKb(int kb){
+		resizePawnHash(pointer(), kb);
+	}
+
+	public int getPawnHashSizeKb(){
+		return getPawnHashSizeKbNative(pointer());
+	}
+
+	/**
+	 * Resize the eval cache to kb kilobytes (rounded down to a power
+	 * of two), empty, 0 for none. It keeps the last evaluations by
+	 * position, see SearchStats.getEvalHitRate. None by default, it
+	 * was not faster in the evalbench of the engine. Not while
+	 * searching.
+	 * @throws OutOfMemoryError if there is not enough memory, the
+	 * cache is kept.
+	 */
+	public void setEvalCacheSizeKb(int kb){
+		resizeEvalCache(pointer(), kb);
+	}
+
+	public int getEvalCacheSizeKb(){
+		return getEvalCacheSizeKbNative(pointer());
+	}
+
+	/**
+	 * @param cptr the engine, 0 for the default engine.
+	 */
+	static void resizeHash(long cptr,int mb){
+		if(!setHashSizeMbNative(cptr, mb)){
+			if(isSearchingNative(cptr))
+				throw new IllegalStateException("the hash table is searched");
+			throw new OutOfMemoryError("no memory for a " + mb + " MB hash table");
+		}
+	}
+
+	/**
+	 * @param cptr the engine, 0 for the default engine.
+	 */
+	static void resizePawnHash(long cptr,int kb){
+		if(!setPawnHashSizeKbNative(cptr, kb))
+			throw new OutOfMemoryError("no memory for a " + kb + " KB pawn table");
+	}
+
+	/**
+	 * @param cptr the engine, 0 for the default engine.
+	 */
+	static void resizeEvalCache(long cptr,int kb){
+		if(!setEvalCacheSizeKbNative(cptr, kb))
+			throw new OutOfMemoryError("no memory for a " + kb + " KB eval cache");
+	}
+
+	/**
+	 * The clock of this engine, as Utils.setTimeControl for the
+	 * default engine. Searches without time, node or mate limits
+	 * use it.
+	 */
+	public void setTimeControl(int base,int increment){
+		setTimeControlNative(pointer(), base, increment);
+	}
+
+	/**
+	 * @param time centiseconds left on the engines clock.
+	 */
+	public void setCompTime(int time){
+		setCompTimeNative(pointer(), time);
+	}
+
+	/**
+	 * @param time centiseconds left on the opponents clock.
+	 */
+	public void setOppTime(int time){
+		setOppTimeNative(pointer(), time);
+	}
+
+	/**
+	 * Allocate the time of the next move from the clock,
+	 * before a search on the clock.
+	 * @return the allocated centiseconds.
+	 */
+	public int allocateTime(){
+		return allocateTimeNative(pointer());
+	}
+
+	long pointer(){
+		if(m_disposed){
+			throw new RuntimeException("already disposed");
+		}
+		return m_CPtr;
+	}
+
+	protected long nativeCreate(){
+		return createNative(DEFAULT_HASH_ENTRIES);
+	}
+
+	protected native void nativeFree(long cptr);
+
+	/**
+	 * @return the engine, 0 if there is not enough memory.
+	 */
+	protected static native long createNative(int hashEntries);
+
+	protected static native int bestMoveNative(long cptr,Position position,int[] limits,int threads);
+
+	protected static native void setAlgorithmNative(long cptr,int algorithm);
+
+	protected static native int getAlgorithmNative(long cptr);
+
+	protected static native void setHashEnabledNative(long cptr,boolean enabled);
+
+	protected static native void setTimingEnabledNative(long cptr,boolean enabled);
+
+	protected static native void clearHashNative(long cptr);
+
+	/**
+	 * @param cptr the engine, 0 for the default engine.
+	 * @return false if there is not enough memory or a search of
+	 * the engine is running.
+	 */
+	protected static native boolean setHashSizeMbNative(long cptr,int mb);
+
+	/**
+	 * @param cptr the engine, 0 for the default engine.
+	 * @return true if a search of the engine is running.
+	 */
+	protected static native boolean isSearchingNative(long cptr);
+
+	/**
+	 * @param cptr the engine, 0 for the default engine.
+	 */
+	protected static native int getHashSizeMbNative(long cptr);
+
+	/**
+	 * @param cptr the engine, 0 for the default engine.
+	 */
+	protected static native int getHashfullNative(long cptr);
+
+	/**
+	 * @param cptr the engine, 0 for the default engine.
+	 */
+	protected static native boolean saveHashNative(long cptr,String path);
+
+	/**
+	 * @param cptr the engine, 0 for the default engine.
+	 */
+	protected static native boolean loadHashNative(long cptr,String path);
+
+	/**
+	 * @param cptr the engine, 0 for the default engine.
+	 * @return false if there is not enough memory.
+	 */
+	protected static native boolean setPawnHashSizeKbNative(long cptr,int kb);
+
+	/**
+	 * @param cptr the engine, 0 for the default engine.
+	 */
+	protected static native int getPawnHashSizeKbNative(long cptr);
+
+	/**
+	 * @param cptr the engine, 0 for the default engine.
+	 * @return false if there is not enough memory.
+	 */
+	protected static native boolean setEvalCacheSizeKbNative(long cptr,int kb);
+
+	/**
+	 * @param cptr the engine, 0 for the default engine.
+	 */
+	protected static native int getEvalCacheSizeKbNative(long cptr);
+
+	protected static native void setTimeControlNative(long cptr,int base,int increment);
+
+	protected static native void setCompTimeNative(long cptr,int time);
+
+	protected static native void setOppTimeNative(long cptr,int time);
+
+	protected static native int allocateTimeNative(long cptr);
+}
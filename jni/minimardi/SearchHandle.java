@@ -0,0 +1,208 @@
+package minimardi;
+
+/**
+ * A search running on its own thread, see Search.start.
+ * The position must not be changed until the search is done.
+ */
+public class SearchHandle extends MiniMardiNativeObject {
+
+	private Thread m_thread;
+
+	private volatile boolean m_done;
+
+	private int m_bestMove;
+
+	private Position m_ponderPosition;
+
+	private int m_ponderedMove;
+
+	private Engine m_engine;
+
+	/**
+	 * @param engine null for the default engine, else kept from
+	 * the garbage collector until the search is done.
+	 * @param ponderedMove if not 0, search without the clock until
+	 * ponderHit, position is reached by this expected reply and the
+	 * handle owns the position and disposes it.
+	 */
+	SearchHandle(Engine engine,final Position position,final SearchLimits limits,final int threads,final SearchListener listener,int ponderedMove){
+		m_done = false;
+		m_ponderedMove = ponderedMove;
+		m_engine = engine;
+		final long enginePtr = engine != null ? engine.pointer() : 0;
+		if(ponderedMove != 0){
+			m_ponderPosition = position;
+			ponderNative(m_CPtr);
+		}
+		m_thread = new Thread(new Runnable(){
+			public void run(){
+				int move = searchNative(position, limits.toArray(), threads, listener, enginePtr, m_CPtr);
+				synchronized (SearchHandle.this) {
+					m_bestMove = move;
+					m_done = true;
+					m_engine = null;
+					SearchHandle.this.notifyAll();
+				}
+			}
+		}, "minimardi-search");
+		m_thread.start();
+	}
+
+	/**
+	 * Ask the search to stop, it returns the best move so far
+	 * within a few thousand nodes. Does not wait. A later search of
+	 * the same position with the same engine goes on from the last
+	 * complete iteration.
+	 */
+	public void stop(){
+		if(!m_disposed){
+			stopNative(m_CPtr);
+		}
+	}
+
+	/**
+	 * The opponent played the expected move, the pondering search
+	 * continues as a normal search with the allocated time.
+	 */
+	public void ponderHit(){
+		if(!m_disposed){
+			ponderHitNative(m_CPtr);
+		}
+	}
+
+	/**
+	 * The opponent played another move, the pondering search
+	 * is stopped and disposed.
+	 */
+	public void ponderMiss(){
+		dispose();
+	}
+
+	/**
+	 * @return the expected reply this search ponders on, or 0.
+	 */
+	public int getPonderedMove(){
+		return m_ponderedMove;
+	}
+
+	public boolean isPondering(){
+		return m_ponderPosition != null && !m_disposed && isPonderingNative(m_CPtr);
+	}
+
+	/**
+	 * @return the expected reply to the best move, from the principal
+	 * variation of the last complete iteration, or 0.
+	 */
+	public int ponderMove(){
+		if(m_disposed){
+			throw new RuntimeException("already disposed");
+		}
+		return ponderMoveNative(m_CPtr);
+	}
+
+	/**
+	 * @return the counters of the search up to the last complete
+	 * iteration, or of the whole search when it is done.
+	 */
+	public SearchStats getStats(){
+		if(m_disposed){
+			throw new RuntimeException("already disposed");
+		}
+		return new SearchStats(statsNative(m_CPtr));
+	}
+
+	public boolean isDone(){
+		return m_done;
+	}
+
+	/**
+	 * @return best move of the last complete iteration, or 0 if the
+	 * first iteration is not complete yet.
+	 */
+	public int bestMoveSoFar(){
+		if(m_done){
+			return m_bestMove;
+		}
+		if(m_disposed){
+			throw new RuntimeException("already disposed");
+		}
+		return bestMoveSoFarNative(m_CPtr);
+	}
+
+	/**
+	 * Wait until the search is done.
+	 * @return the best move.
+	 */
+	public synchronized int await() throws InterruptedException {
+		while(!m_done){
+			wait();
+		}
+		return m_bestMove;
+	}
+
+	/**
+	 * Wait at most timeout milliseconds for the search.
+	 * @return true if the search is done.
+	 */
+	public synchronized boolean await(long timeout) throws InterruptedException {
+		long end = System.currentTimeMillis() + timeout;
+		long left = timeout;
+		while(!m_done && left > 0){
+			wait(left);
+			left = end - System.currentTimeMillis();
+		}
+		return m_done;
+	}
+
+	/**
+	 * Stops the search and waits for it before the native
+	 * control is freed.
+	 */
+	protected void cleanup(){
+		if(!m_disposed){
+			stopNative(m_CPtr);
+			boolean interrupted = false;
+			while(true){
+				try{
+					m_thread.join();
+					break;
+				}catch(InterruptedException e){
+					interrupted = true;
+				}
+			}
+			if(interrupted){
+				Thread.currentThread().interrupt();
+			}
+			if(m_ponderPosition != null){
+				m_ponderPosition.dispose();
+			}
+		}
+		super.cleanup();
+	}
+
+	protected native void nativeFree(long cptr);
+
+	protected native long nativeCreate();
+
+	/**
+	 * @param engine the native engine, 0 for the default engine.
+	 */
+	protected static native int searchNative(Position position,int[] limits,int threads,SearchListener listener,long engine,long cptr);
+
+	protected static native void stopNative(long cptr);
+
+	protected static native int bestMoveSoFarNative(long cptr);
+
+	protected static native void ponderNative(long cptr);
+
+	protected static native void ponderHitNative(long cptr);
+
+	protected static native boolean isPonderingNative(long cptr);
+
+	protected static native int ponderMoveNative(long cptr);
+
+	/**
+	 * @return the stats in the order of SearchStats(long[]).
+	 */
+	protected static native long[] statsNative(long cptr);
+}
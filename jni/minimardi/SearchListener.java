@@ -0,0 +1,15 @@
+package minimardi;
+
+/**
+ * Live analysis from a running search, see Search.start.
+ */
+public interface SearchListener {
+
+	/**
+	 * Called on the search thread after each complete iteration.
+	 * It may call SearchHandle.stop, but must not block.
+	 * @param score centipawns from whites view.
+	 * @param pv principal variation, the first move is the best move.
+	 */
+	public void onIteration(int depth,int score,int nodes,int nps,int[] pv);
+}
@@ -0,0 +1,280 @@
+package minimardi;
+
+/**
+ * Counters of one search, by the main thread, see SearchHandle.getStats.
+ * The move generation, evaluation and quiescence times are only taken
+ * when Search.setTimingEnabled is on, else they are 0.
+ */
+public class SearchStats {
+
+	private int m_depth;
+
+	private int m_selDepth;
+
+	private int m_time;
+
+	private int m_nodes;
+
+	private int m_qNodes;
+
+	private int m_ttProbes;
+
+	private int m_ttHits;
+
+	private int m_ttCutoffs;
+
+	private int m_nullCutoffs;
+
+	private int m_cutoffs;
+
+	private int m_firstCutoffs;
+
+	private long m_movegenTime;
+
+	private long m_evalTime;
+
+	private long m_qsearchTime;
+
+	private int m_hashfull;
+
+	private int m_pawnProbes;
+
+	private int m_pawnHits;
+
+	private int m_evalProbes;
+
+	private int m_evalHits;
+
+	private int m_firstDepth;
+
+	private int[] m_iterationNodes;
+
+	/**
+	 * @param stats in the order of search_stats_ in search.h, then the
+	 * nodes up to the end of each iteration from depth 1.
+	 */
+	SearchStats(long[] stats){
+		m_depth = (int) stats[0];
+		m_selDepth = (int) stats[1];
+		m_time = (int) stats[2];
+		m_nodes = (int) stats[3];
+		m_qNodes = (int) stats[4];
+		m_ttProbes = (int) stats[5];
+		m_ttHits = (int) stats[6];
+		m_ttCutoffs = (int) stats[7];
+		m_nullCutoffs = (int) stats[8];
+		m_cutoffs = (int) stats[9];
+		m_firstCutoffs = (int) stats[10];
+		m_movegenTime = stats[11];
+		m_evalTime = stats[12];
+		m_qsearchTime = stats[13];
+		m_hashfull = (int) stats[14];
+		m_pawnProbes = (int) stats[15];
+		m_pawnHits = (int) stats[16];
+		m_evalProbes = (int) stats[17];
+		m_evalHits = (int) stats[18];
+		m_firstDepth = (int) stats[19];
+		m_iterationNodes = new int[stats.length - 20];
+		for(int i = 0; i < m_iterationNodes.length; i++)
+			m_iterationNodes[i] = (int) stats[20 + i];
+	}
+
+	/**
+	 * @return the last complete iteration.
+	 */
+	public int getDepth(){
+		return m_depth;
+	}
+
+	/**
+	 * @return the deepest ply reached, quiescence included.
+	 */
+	public int getSelDepth(){
+		return m_selDepth;
+	}
+
+	/**
+	 * @return milliseconds.
+	 */
+	public int getTime(){
+		return m_time;
+	}
+
+	public int getNodes(){
+		return m_nodes;
+	}
+
+	public int getQNodes(){
+		return m_qNodes;
+	}
+
+	public int getTTProbes(){
+		return m_ttProbes;
+	}
+
+	/**
+	 * @return probes that found the position.
+	 */
+	public int getTTHits(){
+		return m_ttHits;
+	}
+
+	/**
+	 * @return hits that returned a score without a search.
+	 */
+	public int getTTCutoffs(){
+		return m_ttCutoffs;
+	}
+
+	/**
+	 * @return percent of the probes that hit.
+	 */
+	public double getTTHitRate(){
+		return m_ttProbes > 0 ? 100.0 * m_ttHits / m_ttProbes : 0;
+	}
+
+	public int getNullCutoffs(){
+		return m_nullCutoffs;
+	}
+
+	/**
+	 * @return beta cutoffs after a move.
+	 */
+	public int getCutoffs(){
+		return m_cutoffs;
+	}
+
+	/**
+	 * @return beta cutoffs by the first move tried.
+	 */
+	public int getFirstCutoffs(){
+		return m_firstCutoffs;
+	}
+
+	/**
+	 * @return percent of the beta cutoffs by the first move tried,
+	 * the quality of the move ordering.
+	 */
+	public double getFailHighFirst(){
+		return m_cutoffs > 0 ? 100.0 * m_firstCutoffs / m_cutoffs : 0;
+	}
+
+	/**
+	 * @return permille of the transposition table stored by this
+	 * search, 0 without the table.
+	 */
+	public int getHashfull(){
+		return m_hashfull;
+	}
+
+	/**
+	 * @return evaluations with the pawn table that were not in the
+	 * eval cache, 0 without the pawn table.
+	 */
+	public int getPawnProbes(){
+		return m_pawnProbes;
+	}
+
+	/**
+	 * @return evaluations that found their pawn structure in the
+	 * pawn table.
+	 */
+	public int getPawnHits(){
+		return m_pawnHits;
+	}
+
+	/**
+	 * @return percent of the pawn table probes that hit.
+	 */
+	public double getPawnHitRate(){
+		return m_pawnProbes > 0 ? 100.0 * m_pawnHits / m_pawnProbes : 0;
+	}
+
+	/**
+	 * @return evaluations with the eval cache, 0 without it.
+	 */
+	public int getEvalProbes(){
+		return m_evalProbes;
+	}
+
+	/**
+	 * @return evaluations found in the eval cache.
+	 */
+	public int getEvalHits(){
+		return m_evalHits;
+	}
+
+	/**
+	 * @return percent of the eval cache probes that hit.
+	 */
+	public double getEvalHitRate(){
+		return m_evalProbes > 0 ? 100.0 * m_evalHits / m_evalProbes : 0;
+	}
+
+	/**
+	 * @return the first iteration searched, deeper than 1 when the
+	 * search went on from the table of an earlier search.
+	 */
+	public int getFirstDepth(){
+		return m_firstDepth;
+	}
+
+	/**
+	 * @return the nodes of each complete iteration, from depth 1,
+	 * 0 for the depths before getFirstDepth.
+	 */
+	public int[] getIterationNodes(){
+		int[] nodes = new int[m_depth];
+		for(int i = 0; i < m_depth && i < m_iterationNodes.length; i++)
+			nodes[i] = m_iterationNodes[i] - (i > 0 ? m_iterationNodes[i - 1] : 0);
+		return nodes;
+	}
+
+	/**
+	 * @return the effective branching factor of each complete
+	 * iteration after getFirstDepth, its nodes over the nodes of
+	 * the one before.
+	 */
+	public double[] getBranchingFactors(){
+		int[] nodes = getIterationNodes();
+		int first = m_firstDepth > 1 ? m_firstDepth : 1;
+		double[] factors = new double[nodes.length > first ? nodes.length - first : 0];
+		for(int i = first; i < nodes.length; i++)
+			factors[i - first] = nodes[i - 1] > 0 ? (double) nodes[i] / nodes[i - 1] : 0;
+		return factors;
+	}
+
+	/**
+	 * @return nanoseconds in move generation.
+	 */
+	public long getMovegenTime(){
+		return m_movegenTime;
+	}
+
+	/**
+	 * @return nanoseconds in evaluation.
+	 */
+	public long getEvalTime(){
+		return m_evalTime;
+	}
+
+	/**
+	 * @return nanoseconds in quiescence, its move generation and
+	 * evaluation included.
+	 */
+	public long getQsearchTime(){
+		return m_qsearchTime;
+	}
+
+	public String toString(){
+		double[] factors = getBranchingFactors();
+		StringBuilder ebf = new StringBuilder();
+		for(int i = 0; i < factors.length; i++)
+			ebf.append(i > 0 ? " " : "").append(String.format("%.2f", factors[i]));
+		return String.format("depth %d/%d time %d ms nodes %d qnodes %d tt %d/%d (%.1f%%) ttcuts %d hashfull %d evals %d/%d (%.1f%%) pawns %d/%d (%.1f%%) nullcuts %d fhf %.1f%% ebf [%s] movegen %d eval %d qsearch %d us",
+				m_depth, m_selDepth, m_time, m_nodes, m_qNodes, m_ttHits, m_ttProbes, getTTHitRate(),
+				m_ttCutoffs, m_hashfull, m_evalHits, m_evalProbes, getEvalHitRate(), m_pawnHits, m_pawnProbes,
+				getPawnHitRate(), m_nullCutoffs, getFailHighFirst(), ebf,
+				m_movegenTime / 1000, m_evalTime / 1000, m_qsearchTime / 1000);
+	}
+}
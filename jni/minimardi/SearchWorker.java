@@ -0,0 +1,93 @@
+package minimardi;
+
+/**
+ * A thread that searches one position after another, the base of the
+ * workers of an EnginePool and of a BatchAnalysis. It owns the native
+ * search control used for each of its searches.
+ */
+abstract class SearchWorker extends MiniMardiNativeObject implements Runnable {
+
+	private boolean m_stopped;
+
+	private Thread m_thread;
+
+	SearchWorker(String name){
+		m_stopped = false;
+		m_thread = new Thread(this, name);
+	}
+
+	void start(){
+		m_thread.start();
+	}
+
+	/**
+	 * Ready the search control for the next search, hold the lock of
+	 * this worker.
+	 * @return false if the worker is stopped.
+	 */
+	protected boolean reset(){
+		if(m_stopped){
+			return false;
+		}
+		resetNative(m_CPtr);
+		return true;
+	}
+
+	protected synchronized boolean isStopped(){
+		return m_stopped;
+	}
+
+	/**
+	 * @param engine the native engine, 0 for the default engine.
+	 * @return the best move, the search stops on stopSearch or stop.
+	 */
+	protected int search(Position position,int[] limits,long engine){
+		return searchNative(position, limits, engine, m_CPtr);
+	}
+
+	/**
+	 * Stop the running search, hold the lock of this worker.
+	 */
+	protected void stopSearch(){
+		if(!m_disposed){
+			stopNative(m_CPtr);
+		}
+	}
+
+	/**
+	 * Stop the search and the thread, does not wait.
+	 */
+	synchronized void stop(){
+		m_stopped = true;
+		stopSearch();
+		m_thread.interrupt();
+	}
+
+	void join(){
+		boolean interrupted = false;
+		while(true){
+			try{
+				m_thread.join();
+				break;
+			}catch(InterruptedException e){
+				interrupted = true;
+			}
+		}
+		if(interrupted){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	protected native void nativeFree(long cptr);
+
+	protected native long nativeCreate();
+
+	/**
+	 * @param engine the native engine, 0 for the default engine.
+	 */
+	protected static native int searchNative(Position position,int[] limits,long engine,long cptr);
+
+	protected static native void resetNative(long cptr);
+
+	protected static native void stopNative(long cptr);
+}
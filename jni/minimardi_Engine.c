@@ -0,0 +1,271 @@
+#include "minimardi_Engine.h"
+#include "jni_constants.h"
+
+#include "position.h"
+#include "engine.h"
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    nativeFree
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_Engine_nativeFree
+  (JNIEnv *env, jobject thisobject, jlong cptr)
+  {
+    free_engine((engine)cptr);
+  }
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    createNative
+ * Signature: (I)J
+ */
+JNIEXPORT jlong JNICALL Java_minimardi_Engine_createNative
+  (JNIEnv *env, jclass cls, jint hash_entries)
+  {
+    engine eng = new_engine(hash_entries);
+    return (jlong)eng;
+  }
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    bestMoveNative
+ * Signature: (JLminimardi/Position;[II)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Engine_bestMoveNative
+  (JNIEnv *env, jclass cls, jlong cptr, jobject pos, jintArray limits_array, jint threads)
+  {
+    position p = (position)GetHandle(env,pos);
+    search_control_ ctl;
+    search_limits_ limits;
+
+    memset(&ctl, 0, sizeof(search_control_));
+    ctl.eng = (engine)cptr;
+    JIntArrayToSearchLimits(env,limits_array,&limits);
+    return bestMove_control(p, &limits, threads, &ctl);
+  }
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    setAlgorithmNative
+ * Signature: (JI)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_Engine_setAlgorithmNative
+  (JNIEnv *env, jclass cls, jlong cptr, jint algorithm)
+  {
+    ((engine)cptr)->algorithm = (search_algorithm)algorithm;
+  }
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    getAlgorithmNative
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Engine_getAlgorithmNative
+  (JNIEnv *env, jclass cls, jlong cptr)
+  {
+    return ((engine)cptr)->algorithm;
+  }
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    setHashEnabledNative
+ * Signature: (JZ)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_Engine_setHashEnabledNative
+  (JNIEnv *env, jclass cls, jlong cptr, jboolean enabled)
+  {
+    ((engine)cptr)->use_hash = (enabled == JNI_TRUE);
+  }
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    setTimingEnabledNative
+ * Signature: (JZ)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_Engine_setTimingEnabledNative
+  (JNIEnv *env, jclass cls, jlong cptr, jboolean enabled)
+  {
+    ((engine)cptr)->timing = (enabled == JNI_TRUE);
+  }
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    clearHashNative
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_Engine_clearHashNative
+  (JNIEnv *env, jclass cls, jlong cptr)
+  {
+    trans_table_reset(((engine)cptr)->tt);
+  }
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    setTimeControlNative
+ * Signature: (JII)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_Engine_setTimeControlNative
+  (JNIEnv *env, jclass cls, jlong cptr, jint base, jint increment)
+  {
+    clock_set_time_control(((engine)cptr)->clock, base, increment);
+  }
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    setCompTimeNative
+ * Signature: (JI)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_Engine_setCompTimeNative
+  (JNIEnv *env, jclass cls, jlong cptr, jint time)
+  {
+    clock_set_comp_time(((engine)cptr)->clock, time);
+  }
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    setOppTimeNative
+ * Signature: (JI)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_Engine_setOppTimeNative
+  (JNIEnv *env, jclass cls, jlong cptr, jint time)
+  {
+    clock_set_opp_time(((engine)cptr)->clock, time);
+  }
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    allocateTimeNative
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Engine_allocateTimeNative
+  (JNIEnv *env, jclass cls, jlong cptr)
+  {
+    return clock_allocate(((engine)cptr)->clock, monotonic_ms());
+  }
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    setHashSizeMbNative
+ * Signature: (JI)Z
+ */
+JNIEXPORT jboolean JNICALL Java_minimardi_Engine_setHashSizeMbNative
+  (JNIEnv *env, jclass cls, jlong cptr, jint mb)
+  {
+    engine eng = cptr ? (engine)cptr : default_engine();
+    return trans_table_resize(eng->tt, trans_table_entries_mb(mb)) ? JNI_TRUE : JNI_FALSE;
+  }
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    isSearchingNative
+ * Signature: (J)Z
+ */
+JNIEXPORT jboolean JNICALL Java_minimardi_Engine_isSearchingNative
+  (JNIEnv *env, jclass cls, jlong cptr)
+  {
+    engine eng = cptr ? (engine)cptr : default_engine();
+    return eng->tt->searches > 0 ? JNI_TRUE : JNI_FALSE;
+  }
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    getHashSizeMbNative
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Engine_getHashSizeMbNative
+  (JNIEnv *env, jclass cls, jlong cptr)
+  {
+    engine eng = cptr ? (engine)cptr : default_engine();
+    return (jint) ((long long) eng->tt->size * sizeof(trans_table_entry_) / 1048576);
+  }
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    getHashfullNative
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Engine_getHashfullNative
+  (JNIEnv *env, jclass cls, jlong cptr)
+  {
+    engine eng = cptr ? (engine)cptr : default_engine();
+    return trans_table_hashfull(eng->tt);
+  }
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    saveHashNative
+ * Signature: (JLjava/lang/String;)Z
+ */
+JNIEXPORT jboolean JNICALL Java_minimardi_Engine_saveHashNative
+  (JNIEnv *env, jclass cls, jlong cptr, jstring jpath)
+  {
+    engine eng = cptr ? (engine)cptr : default_engine();
+    char *path = JStringToCCharPtr(env,jpath);
+    int saved = trans_table_save(eng->tt, path);
+    free(path);
+    return saved ? JNI_TRUE : JNI_FALSE;
+  }
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    loadHashNative
+ * Signature: (JLjava/lang/String;)Z
+ */
+JNIEXPORT jboolean JNICALL Java_minimardi_Engine_loadHashNative
+  (JNIEnv *env, jclass cls, jlong cptr, jstring jpath)
+  {
+    engine eng = cptr ? (engine)cptr : default_engine();
+    char *path = JStringToCCharPtr(env,jpath);
+    int loaded = trans_table_load(eng->tt, path);
+    free(path);
+    return loaded ? JNI_TRUE : JNI_FALSE;
+  }
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    setPawnHashSizeKbNative
+ * Signature: (JI)Z
+ */
+JNIEXPORT jboolean JNICALL Java_minimardi_Engine_setPawnHashSizeKbNative
+  (JNIEnv *env, jclass cls, jlong cptr, jint kb)
+  {
+    engine eng = cptr ? (engine)cptr : default_engine();
+    return pawn_table_resize(eng->pawns, pawn_table_entries_kb(kb)) ? JNI_TRUE : JNI_FALSE;
+  }
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    getPawnHashSizeKbNative
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Engine_getPawnHashSizeKbNative
+  (JNIEnv *env, jclass cls, jlong cptr)
+  {
+    engine eng = cptr ? (engine)cptr : default_engine();
+    return (jint) ((long long) eng->pawns->size * sizeof(pawn_entry_) / 1024);
+  }
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    setEvalCacheSizeKbNative
+ * Signature: (JI)Z
+ */
+JNIEXPORT jboolean JNICALL Java_minimardi_Engine_setEvalCacheSizeKbNative
+  (JNIEnv *env, jclass cls, jlong cptr, jint kb)
+  {
+    engine eng = cptr ? (engine)cptr : default_engine();
+    return eval_cache_resize(eng->evals, eval_cache_entries_kb(kb)) ? JNI_TRUE : JNI_FALSE;
+  }
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    getEvalCacheSizeKbNative
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Engine_getEvalCacheSizeKbNative
+  (JNIEnv *env, jclass cls, jlong cptr)
+  {
+    engine eng = cptr ? (engine)cptr : default_engine();
+    return (jint) ((long long) eng->evals->size * sizeof(eval_entry_) / 1024);
+  }
@@ -0,0 +1,193 @@
+/* DO NOT EDIT THIS FILE - it is machine generated */
+#include <jni.h>
+/* Header for class minimardi_Engine */
+
+#ifndef _Included_minimardi_Engine
+#define _Included_minimardi_Engine
+#ifdef __cplusplus
+extern "C" {
+#endif
+#undef minimardi_Engine_DEFAULT_HASH_MB
+#define minimardi_Engine_DEFAULT_HASH_MB 32L
+#undef minimardi_Engine_DEFAULT_HASH_ENTRIES
+#define minimardi_Engine_DEFAULT_HASH_ENTRIES 2097152L
+/*
+ * Class:     minimardi_Engine
+ * Method:    nativeFree
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_Engine_nativeFree
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    createNative
+ * Signature: (I)J
+ */
+JNIEXPORT jlong JNICALL Java_minimardi_Engine_createNative
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    bestMoveNative
+ * Signature: (JLminimardi/Position;[II)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Engine_bestMoveNative
+  (JNIEnv *, jclass, jlong, jobject, jintArray, jint);
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    setAlgorithmNative
+ * Signature: (JI)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_Engine_setAlgorithmNative
+  (JNIEnv *, jclass, jlong, jint);
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    getAlgorithmNative
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Engine_getAlgorithmNative
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    setHashEnabledNative
+ * Signature: (JZ)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_Engine_setHashEnabledNative
+  (JNIEnv *, jclass, jlong, jboolean);
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    setTimingEnabledNative
+ * Signature: (JZ)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_Engine_setTimingEnabledNative
+  (JNIEnv *, jclass, jlong, jboolean);
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    clearHashNative
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_Engine_clearHashNative
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    setHashSizeMbNative
+ * Signature: (JI)Z
+ */
+JNIEXPORT jboolean JNICALL Java_minimardi_Engine_setHashSizeMbNative
+  (JNIEnv *, jclass, jlong, jint);
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    isSearchingNative
+ * Signature: (J)Z
+ */
+JNIEXPORT jboolean JNICALL Java_minimardi_Engine_isSearchingNative
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    getHashSizeMbNative
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Engine_getHashSizeMbNative
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    getHashfullNative
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Engine_getHashfullNative
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    saveHashNative
+ * Signature: (JLjava/lang/String;)Z
+ */
+JNIEXPORT jboolean JNICALL Java_minimardi_Engine_saveHashNative
+  (JNIEnv *, jclass, jlong, jstring);
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    loadHashNative
+ * Signature: (JLjava/lang/String;)Z
+ */
+JNIEXPORT jboolean JNICALL Java_minimardi_Engine_loadHashNative
+  (JNIEnv *, jclass, jlong, jstring);
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    setPawnHashSizeKbNative
+ * Signature: (JI)Z
+ */
+JNIEXPORT jboolean JNICALL Java_minimardi_Engine_setPawnHashSizeKbNative
+  (JNIEnv *, jclass, jlong, jint);
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    getPawnHashSizeKbNative
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Engine_getPawnHashSizeKbNative
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    setEvalCacheSizeKbNative
+ * Signature: (JI)Z
+ */
+JNIEXPORT jboolean JNICALL Java_minimardi_Engine_setEvalCacheSizeKbNative
+  (JNIEnv *, jclass, jlong, jint);
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    getEvalCacheSizeKbNative
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Engine_getEvalCacheSizeKbNative
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    setTimeControlNative
+ * Signature: (JII)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_Engine_setTimeControlNative
+  (JNIEnv *, jclass, jlong, jint, jint);
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    setCompTimeNative
+ * Signature: (JI)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_Engine_setCompTimeNative
+  (JNIEnv *, jclass, jlong, jint);
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    setOppTimeNative
+ * Signature: (JI)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_Engine_setOppTimeNative
+  (JNIEnv *, jclass, jlong, jint);
+
+/*
+ * Class:     minimardi_Engine
+ * Method:    allocateTimeNative
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Engine_allocateTimeNative
+  (JNIEnv *, jclass, jlong);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
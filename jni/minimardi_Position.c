@@ -42,6 +42,18 @@ JNIEXPORT jlong JNICALL Java_minimardi_Position_nativeNewChessPositionFen
       return (jlong)pos;
   }
   
+/*
+ * Class:     minimardi_Position
+ * Method:    copyNative
+ * Signature: (J)J
+ */
+JNIEXPORT jlong JNICALL Java_minimardi_Position_copyNative
+  (JNIEnv *env, jclass cls, jlong cptr)
+  {
+      position p = (position)cptr;
+      return (jlong)copy_position(p);
+  }
+
 /*
  * Class:     minimardi_Position
  * Method:    moveGeneratorNative
@@ -190,6 +202,18 @@ JNIEXPORT jint JNICALL Java_minimardi_Position_legalOpponentMoveNative
     return result;
   }
   
+/*
+ * Class:     minimardi_Position
+ * Method:    seeNative
+ * Signature: (IJ)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Position_seeNative
+  (JNIEnv *env, jclass cls, jint mov, jlong cptr)
+  {
+    position p = (position)cptr;
+    return see(p,mov);
+  }
+
   /*
  * Class:     minimardi_Position
  * Method:    drawOrCheckmateNative
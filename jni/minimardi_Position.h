@@ -31,6 +31,14 @@ JNIEXPORT jlong JNICALL Java_minimardi_Position_nativeCreate
 JNIEXPORT jlong JNICALL Java_minimardi_Position_nativeNewChessPositionFen
   (JNIEnv *, jobject, jstring);
 
+/*
+ * Class:     minimardi_Position
+ * Method:    copyNative
+ * Signature: (J)J
+ */
+JNIEXPORT jlong JNICALL Java_minimardi_Position_copyNative
+  (JNIEnv *, jclass, jlong);
+
 /*
  * Class:     minimardi_Position
  * Method:    moveGeneratorNative
@@ -103,7 +111,6 @@ JNIEXPORT void JNICALL Java_minimardi_Position_doMoveNative
 JNIEXPORT void JNICALL Java_minimardi_Position_undoMoveNative
   (JNIEnv *, jclass, jint, jlong);
 
-
 /*
  * Class:     minimardi_Position
  * Method:    debugPrintCapListNative
@@ -128,13 +135,21 @@ JNIEXPORT void JNICALL Java_minimardi_Position_printPositionNative
 JNIEXPORT jint JNICALL Java_minimardi_Position_legalOpponentMoveNative
   (JNIEnv *, jclass, jint, jlong);
 
+/*
+ * Class:     minimardi_Position
+ * Method:    seeNative
+ * Signature: (IJ)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Position_seeNative
+  (JNIEnv *, jclass, jint, jlong);
+
 /*
  * Class:     minimardi_Position
  * Method:    drawOrCheckmateNative
  * Signature: (J)I
  */
 JNIEXPORT jint JNICALL Java_minimardi_Position_drawOrCheckmateNative
-  (JNIEnv *, jclass,jlong);
+  (JNIEnv *, jclass, jlong);
 
 /*
  * Class:     minimardi_Position
@@ -296,6 +311,14 @@ JNIEXPORT jobject JNICALL Java_minimardi_Position_getHistHeuristicNative
 JNIEXPORT jobject JNICALL Java_minimardi_Position_getMoveStackNative
   (JNIEnv *, jclass, jlong);
 
+/*
+ * Class:     minimardi_Position
+ * Method:    getBoardNative
+ * Signature: (J)Lminimardi/Board;
+ */
+JNIEXPORT jobject JNICALL Java_minimardi_Position_getBoardNative
+  (JNIEnv *, jclass, jlong);
+
 #ifdef __cplusplus
 }
 #endif
@@ -3,6 +3,7 @@
 
 #include "position.h"
 #include "search.h"
+#include "mate.h"
 
 
 /*
@@ -24,6 +25,23 @@ JNIEXPORT jint JNICALL Java_minimardi_Search_bestMove
   }
   
   
+/*
+ * Class:     minimardi_Search
+ * Method:    bestMoveThreads
+ * Signature: (Lminimardi/Position;III)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Search_bestMoveThreads
+(JNIEnv *env, jclass cls, jobject pos, jint depth, jint time_ply, jint threads)
+  {
+    position p = 0;
+    jlong cptr  = 0;
+    move result = 0;
+    cptr = GetHandle(env,pos);
+    p = (position)cptr;
+    result = bestMove_threads(p,depth,time_ply,threads);
+    return result;
+  }
+
 /*
  * Class:     minimardi_Search
  * Method:    perft
@@ -40,4 +58,168 @@ JNIEXPORT jint JNICALL Java_minimardi_Search_perft
     result = perft(p,depth);
     return result;
         
-  }  
\ No newline at end of file
+  }  
+/*
+ * Class:     minimardi_Search
+ * Method:    setHashEnabled
+ * Signature: (Z)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_Search_setHashEnabled
+  (JNIEnv *env, jclass cls, jboolean enabled)
+  {
+    set_search_hash(enabled == JNI_TRUE);
+  }
+
+/*
+ * Class:     minimardi_Search
+ * Method:    setTimingEnabled
+ * Signature: (Z)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_Search_setTimingEnabled
+  (JNIEnv *env, jclass cls, jboolean enabled)
+  {
+    set_search_timing(enabled == JNI_TRUE);
+  }
+
+/*
+ * Class:     minimardi_Search
+ * Method:    setAlgorithmNative
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_Search_setAlgorithmNative
+  (JNIEnv *env, jclass cls, jint algorithm)
+  {
+    set_search_algorithm((search_algorithm)algorithm);
+  }
+
+/*
+ * Class:     minimardi_Search
+ * Method:    getAlgorithmNative
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Search_getAlgorithmNative
+  (JNIEnv *env, jclass cls)
+  {
+    return get_search_algorithm();
+  }
+
+/*
+ * Class:     minimardi_Search
+ * Method:    analyzeNative
+ * Signature: (Lminimardi/Position;[II)[I
+ */
+JNIEXPORT jintArray JNICALL Java_minimardi_Search_analyzeNative
+  (JNIEnv *env, jclass cls, jobject pos, jintArray limits_array, jint multi_pv)
+  {
+    position p = (position)GetHandle(env,pos);
+    analysis_line_ lines[MAX_MULTI_PV];
+    search_control_ ctl;
+    search_limits_ limits;
+    jint flat[MAX_MULTI_PV * (MAX_PV + 2)];
+    jintArray result;
+    int count, i, size=0;
+
+    memset(&ctl, 0, sizeof(search_control_));
+    JIntArrayToSearchLimits(env,limits_array,&limits);
+    count = analyze(p, &limits, multi_pv, lines, &ctl);
+    for (i=0; i < count; i++) {
+      flat[size++] = lines[i].score;
+      flat[size++] = lines[i].pv.moves;
+      memcpy(flat + size, lines[i].pv.pv, lines[i].pv.moves * sizeof(jint));
+      size += lines[i].pv.moves;
+    }
+    result = (*env)->NewIntArray(env, size);
+    if (result != NULL)
+      (*env)->SetIntArrayRegion(env, result, 0, size, flat);
+    return result;
+  }
+
+/*
+ * Class:     minimardi_Search
+ * Method:    setTablebasePath
+ * Signature: (Ljava/lang/String;)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Search_setTablebasePath
+  (JNIEnv *env, jclass cls, jstring jdir)
+  {
+    char *dir = JStringToCCharPtr(env,jdir);
+    int tables = tb_init(dir);
+    free(dir);
+    return tables;
+  }
+
+/*
+ * Class:     minimardi_Search
+ * Method:    solveMateNative
+ * Signature: (Lminimardi/Position;II)[I
+ */
+JNIEXPORT jintArray JNICALL Java_minimardi_Search_solveMateNative
+  (JNIEnv *env, jclass cls, jobject pos, jint max_plies, jint node_budget)
+  {
+    position p = (position)GetHandle(env,pos);
+    pv line;
+    jintArray result;
+
+    if (solve_mate(p, max_plies, node_budget, &line, NULL) != MATE_FOUND) return NULL;
+    result = (*env)->NewIntArray(env, line.moves);
+    if (result != NULL)
+      (*env)->SetIntArrayRegion(env, result, 0, line.moves, (jint *)line.pv);
+    return result;
+  }
+
+/*
+ * Class:     minimardi_Search
+ * Method:    bestMoveLimitsNative
+ * Signature: (Lminimardi/Position;[II)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Search_bestMoveLimitsNative
+  (JNIEnv *env, jclass cls, jobject pos, jintArray limits_array, jint threads)
+  {
+    position p = (position)GetHandle(env,pos);
+    search_control_ ctl;
+    search_limits_ limits;
+
+    memset(&ctl, 0, sizeof(search_control_));
+    JIntArrayToSearchLimits(env,limits_array,&limits);
+    return bestMove_control(p, &limits, threads, &ctl);
+  }
+
+/*
+ * Class:     minimardi_Search
+ * Method:    perftNative
+ * Signature: (Lminimardi/Position;II)J
+ */
+JNIEXPORT jlong JNICALL Java_minimardi_Search_perftNative
+  (JNIEnv *env, jclass cls, jobject pos, jint depth, jint threads)
+  {
+    position p = (position)GetHandle(env,pos);
+    perft_move_ moves[MAX_ROOT_MOVES];
+    int count;
+
+    return (jlong)perft_divide(p, depth, threads, 1, moves, &count);
+  }
+
+/*
+ * Class:     minimardi_Search
+ * Method:    perftDivideNative
+ * Signature: (Lminimardi/Position;II)[J
+ */
+JNIEXPORT jlongArray JNICALL Java_minimardi_Search_perftDivideNative
+  (JNIEnv *env, jclass cls, jobject pos, jint depth, jint threads)
+  {
+    position p = (position)GetHandle(env,pos);
+    perft_move_ moves[MAX_ROOT_MOVES];
+    jlong flat[2 * MAX_ROOT_MOVES];
+    jlongArray result;
+    int count, i;
+
+    perft_divide(p, depth, threads, 1, moves, &count);
+    for (i=0; i < count; i++) {
+      flat[2*i] = moves[i].mov;
+      flat[2*i+1] = (jlong)moves[i].nodes;
+    }
+    result = (*env)->NewLongArray(env, 2*count);
+    if (result != NULL)
+      (*env)->SetLongArrayRegion(env, result, 0, 2*count, flat);
+    return result;
+  }
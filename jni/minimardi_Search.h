@@ -7,6 +7,30 @@
 #ifdef __cplusplus
 extern "C" {
 #endif
+/*
+ * Class:     minimardi_Search
+ * Method:    setTablebasePath
+ * Signature: (Ljava/lang/String;)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Search_setTablebasePath
+  (JNIEnv *, jclass, jstring);
+
+/*
+ * Class:     minimardi_Search
+ * Method:    setHashEnabled
+ * Signature: (Z)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_Search_setHashEnabled
+  (JNIEnv *, jclass, jboolean);
+
+/*
+ * Class:     minimardi_Search
+ * Method:    setTimingEnabled
+ * Signature: (Z)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_Search_setTimingEnabled
+  (JNIEnv *, jclass, jboolean);
+
 /*
  * Class:     minimardi_Search
  * Method:    bestMove
@@ -15,6 +39,14 @@ extern "C" {
 JNIEXPORT jint JNICALL Java_minimardi_Search_bestMove
   (JNIEnv *, jclass, jobject, jint, jint);
 
+/*
+ * Class:     minimardi_Search
+ * Method:    bestMoveThreads
+ * Signature: (Lminimardi/Position;III)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Search_bestMoveThreads
+  (JNIEnv *, jclass, jobject, jint, jint, jint);
+
 /*
  * Class:     minimardi_Search
  * Method:    perft
@@ -23,6 +55,62 @@ JNIEXPORT jint JNICALL Java_minimardi_Search_bestMove
 JNIEXPORT jint JNICALL Java_minimardi_Search_perft
   (JNIEnv *, jclass, jobject, jint);
 
+/*
+ * Class:     minimardi_Search
+ * Method:    perftNative
+ * Signature: (Lminimardi/Position;II)J
+ */
+JNIEXPORT jlong JNICALL Java_minimardi_Search_perftNative
+  (JNIEnv *, jclass, jobject, jint, jint);
+
+/*
+ * Class:     minimardi_Search
+ * Method:    perftDivideNative
+ * Signature: (Lminimardi/Position;II)[J
+ */
+JNIEXPORT jlongArray JNICALL Java_minimardi_Search_perftDivideNative
+  (JNIEnv *, jclass, jobject, jint, jint);
+
+/*
+ * Class:     minimardi_Search
+ * Method:    analyzeNative
+ * Signature: (Lminimardi/Position;[II)[I
+ */
+JNIEXPORT jintArray JNICALL Java_minimardi_Search_analyzeNative
+  (JNIEnv *, jclass, jobject, jintArray, jint);
+
+/*
+ * Class:     minimardi_Search
+ * Method:    solveMateNative
+ * Signature: (Lminimardi/Position;II)[I
+ */
+JNIEXPORT jintArray JNICALL Java_minimardi_Search_solveMateNative
+  (JNIEnv *, jclass, jobject, jint, jint);
+
+/*
+ * Class:     minimardi_Search
+ * Method:    bestMoveLimitsNative
+ * Signature: (Lminimardi/Position;[II)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Search_bestMoveLimitsNative
+  (JNIEnv *, jclass, jobject, jintArray, jint);
+
+/*
+ * Class:     minimardi_Search
+ * Method:    setAlgorithmNative
+ * Signature: (I)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_Search_setAlgorithmNative
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     minimardi_Search
+ * Method:    getAlgorithmNative
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_Search_getAlgorithmNative
+  (JNIEnv *, jclass);
+
 #ifdef __cplusplus
 }
 #endif
@@ -0,0 +1,203 @@
+#include "minimardi_SearchHandle.h"
+#include "jni_constants.h"
+
+#include "position.h"
+#include "search.h"
+
+/*
+  the java listener of a search, only used on the
+  thread that called searchNative.
+ */
+typedef struct java_listener_ {
+  JNIEnv *env;
+  jobject listener;
+  jmethodID on_iteration;
+} java_listener_;
+
+/*
+  search_listener that forwards each iteration to java.
+ */
+static void java_search_listener(search_info info, void *arg)
+  {
+    java_listener_ *jl = (java_listener_ *)arg;
+    JNIEnv *env = jl->env;
+    jintArray pv = (*env)->NewIntArray(env, info->pv.moves);
+    if (pv == NULL) return;
+    (*env)->SetIntArrayRegion(env, pv, 0, info->pv.moves, (jint *)info->pv.pv);
+    (*env)->CallVoidMethod(env, jl->listener, jl->on_iteration,
+                           info->depth, info->score, info->nodes, info->nps, pv);
+    (*env)->DeleteLocalRef(env, pv);
+    if ((*env)->ExceptionCheck(env)) {
+      (*env)->ExceptionDescribe(env);
+      (*env)->ExceptionClear(env);
+    }
+  }
+
+/*
+ * Class:     minimardi_SearchHandle
+ * Method:    nativeFree
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_SearchHandle_nativeFree
+  (JNIEnv *env, jobject thisobject, jlong cptr)
+  {
+    search_control ctl = (search_control)cptr;
+    free_search_control(ctl);
+  }
+
+/*
+ * Class:     minimardi_SearchHandle
+ * Method:    nativeCreate
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_minimardi_SearchHandle_nativeCreate
+  (JNIEnv *env, jobject thisobject)
+  {
+    search_control ctl = new_search_control();
+    return (jlong)ctl;
+  }
+
+/*
+ * Class:     minimardi_SearchHandle
+ * Method:    searchNative
+ * Signature: (Lminimardi/Position;[IILminimardi/SearchListener;JJ)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_SearchHandle_searchNative
+  (JNIEnv *env, jclass cls, jobject pos, jintArray limits_array, jint threads, jobject listener, jlong eng, jlong cptr)
+  {
+    position p = 0;
+    search_control ctl = (search_control)cptr;
+    move result = 0;
+    java_listener_ jl;
+    search_limits_ limits;
+    p = (position)GetHandle(env,pos);
+    JIntArrayToSearchLimits(env,limits_array,&limits);
+    ctl->eng = (engine)eng;
+    if (listener != NULL) {
+      jclass listener_cls = (*env)->FindClass(env, SEARCH_LISTENER_CLASS_DESCRIPTOR);
+      jl.env = env;
+      jl.listener = listener;
+      jl.on_iteration = (*env)->GetMethodID(env, listener_cls, "onIteration", SEARCH_LISTENER_ON_ITERATION);
+      ctl->listener = java_search_listener;
+      ctl->listener_arg = &jl;
+    }
+    result = bestMove_control(p,&limits,threads,ctl);
+    ctl->listener = NULL;
+    ctl->listener_arg = NULL;
+    return result;
+  }
+
+/*
+ * Class:     minimardi_SearchHandle
+ * Method:    stopNative
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_SearchHandle_stopNative
+  (JNIEnv *env, jclass cls, jlong cptr)
+  {
+    search_control ctl = (search_control)cptr;
+    stop_search(ctl);
+  }
+
+/*
+ * Class:     minimardi_SearchHandle
+ * Method:    bestMoveSoFarNative
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_SearchHandle_bestMoveSoFarNative
+  (JNIEnv *env, jclass cls, jlong cptr)
+  {
+    search_control ctl = (search_control)cptr;
+    return ctl->best_move;
+  }
+
+/*
+ * Class:     minimardi_SearchHandle
+ * Method:    ponderNative
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_SearchHandle_ponderNative
+  (JNIEnv *env, jclass cls, jlong cptr)
+  {
+    search_control ctl = (search_control)cptr;
+    ctl->pondering = 1;
+  }
+
+/*
+ * Class:     minimardi_SearchHandle
+ * Method:    ponderHitNative
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_SearchHandle_ponderHitNative
+  (JNIEnv *env, jclass cls, jlong cptr)
+  {
+    search_control ctl = (search_control)cptr;
+    ponder_hit(ctl);
+  }
+
+/*
+ * Class:     minimardi_SearchHandle
+ * Method:    isPonderingNative
+ * Signature: (J)Z
+ */
+JNIEXPORT jboolean JNICALL Java_minimardi_SearchHandle_isPonderingNative
+  (JNIEnv *env, jclass cls, jlong cptr)
+  {
+    search_control ctl = (search_control)cptr;
+    return ctl->pondering ? JNI_TRUE : JNI_FALSE;
+  }
+
+/*
+ * Class:     minimardi_SearchHandle
+ * Method:    ponderMoveNative
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_SearchHandle_ponderMoveNative
+  (JNIEnv *env, jclass cls, jlong cptr)
+  {
+    search_control ctl = (search_control)cptr;
+    return ctl->ponder_move;
+  }
+
+/*
+ * Class:     minimardi_SearchHandle
+ * Method:    statsNative
+ * Signature: (J)[J
+ */
+JNIEXPORT jlongArray JNICALL Java_minimardi_SearchHandle_statsNative
+  (JNIEnv *env, jclass cls, jlong cptr)
+  {
+    search_control ctl = (search_control)cptr;
+    search_stats_ stats = ctl->stats;
+    jlong flat[20 + MAX_PLY];
+    jlongArray result;
+    int i;
+
+    flat[0] = stats.depth;
+    flat[1] = stats.seldepth;
+    flat[2] = stats.time;
+    flat[3] = stats.nodes;
+    flat[4] = stats.q_nodes;
+    flat[5] = stats.tt_probes;
+    flat[6] = stats.tt_hits;
+    flat[7] = stats.tt_cutoffs;
+    flat[8] = stats.null_cutoffs;
+    flat[9] = stats.cutoffs;
+    flat[10] = stats.first_cutoffs;
+    flat[11] = stats.movegen_ns;
+    flat[12] = stats.eval_ns;
+    flat[13] = stats.qsearch_ns;
+    flat[14] = stats.hashfull;
+    flat[15] = stats.pawn_probes;
+    flat[16] = stats.pawn_hits;
+    flat[17] = stats.eval_probes;
+    flat[18] = stats.eval_hits;
+    flat[19] = stats.first_depth;
+    if (stats.depth > MAX_PLY) stats.depth = MAX_PLY;
+    for (i=0; i < stats.depth; i++)
+      flat[20 + i] = stats.iteration_nodes[i + 1];
+    result = (*env)->NewLongArray(env, 20 + stats.depth);
+    if (result != NULL)
+      (*env)->SetLongArrayRegion(env, result, 0, 20 + stats.depth, flat);
+    return result;
+  }
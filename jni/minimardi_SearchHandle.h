@@ -0,0 +1,93 @@
+/* DO NOT EDIT THIS FILE - it is machine generated */
+#include <jni.h>
+/* Header for class minimardi_SearchHandle */
+
+#ifndef _Included_minimardi_SearchHandle
+#define _Included_minimardi_SearchHandle
+#ifdef __cplusplus
+extern "C" {
+#endif
+/*
+ * Class:     minimardi_SearchHandle
+ * Method:    nativeFree
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_SearchHandle_nativeFree
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     minimardi_SearchHandle
+ * Method:    nativeCreate
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_minimardi_SearchHandle_nativeCreate
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     minimardi_SearchHandle
+ * Method:    searchNative
+ * Signature: (Lminimardi/Position;[IILminimardi/SearchListener;JJ)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_SearchHandle_searchNative
+  (JNIEnv *, jclass, jobject, jintArray, jint, jobject, jlong, jlong);
+
+/*
+ * Class:     minimardi_SearchHandle
+ * Method:    stopNative
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_SearchHandle_stopNative
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     minimardi_SearchHandle
+ * Method:    bestMoveSoFarNative
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_SearchHandle_bestMoveSoFarNative
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     minimardi_SearchHandle
+ * Method:    ponderNative
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_SearchHandle_ponderNative
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     minimardi_SearchHandle
+ * Method:    ponderHitNative
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_SearchHandle_ponderHitNative
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     minimardi_SearchHandle
+ * Method:    isPonderingNative
+ * Signature: (J)Z
+ */
+JNIEXPORT jboolean JNICALL Java_minimardi_SearchHandle_isPonderingNative
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     minimardi_SearchHandle
+ * Method:    ponderMoveNative
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_SearchHandle_ponderMoveNative
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     minimardi_SearchHandle
+ * Method:    statsNative
+ * Signature: (J)[J
+ */
+JNIEXPORT jlongArray JNICALL Java_minimardi_SearchHandle_statsNative
+  (JNIEnv *, jclass, jlong);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -0,0 +1,70 @@
+#include "minimardi_SearchWorker.h"
+#include "jni_constants.h"
+
+#include "position.h"
+#include "search.h"
+
+/*
+ * Class:     minimardi_SearchWorker
+ * Method:    nativeFree
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_SearchWorker_nativeFree
+  (JNIEnv *env, jobject thisobject, jlong cptr)
+  {
+    search_control ctl = (search_control)cptr;
+    free_search_control(ctl);
+  }
+
+/*
+ * Class:     minimardi_SearchWorker
+ * Method:    nativeCreate
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_minimardi_SearchWorker_nativeCreate
+  (JNIEnv *env, jobject thisobject)
+  {
+    search_control ctl = new_search_control();
+    return (jlong)ctl;
+  }
+
+/*
+ * Class:     minimardi_SearchWorker
+ * Method:    searchNative
+ * Signature: (Lminimardi/Position;[IJJ)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_SearchWorker_searchNative
+  (JNIEnv *env, jclass cls, jobject pos, jintArray limits_array, jlong eng, jlong cptr)
+  {
+    position p = (position)GetHandle(env,pos);
+    search_control ctl = (search_control)cptr;
+    search_limits_ limits;
+
+    JIntArrayToSearchLimits(env,limits_array,&limits);
+    ctl->eng = (engine)eng; /* NULL for the default engine */
+    return bestMove_control(p,&limits,1,ctl);
+  }
+
+/*
+ * Class:     minimardi_SearchWorker
+ * Method:    resetNative
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_SearchWorker_resetNative
+  (JNIEnv *env, jclass cls, jlong cptr)
+  {
+    search_control ctl = (search_control)cptr;
+    ctl->stop = 0;
+  }
+
+/*
+ * Class:     minimardi_SearchWorker
+ * Method:    stopNative
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_SearchWorker_stopNative
+  (JNIEnv *env, jclass cls, jlong cptr)
+  {
+    search_control ctl = (search_control)cptr;
+    stop_search(ctl);
+  }
@@ -0,0 +1,53 @@
+/* DO NOT EDIT THIS FILE - it is machine generated */
+#include <jni.h>
+/* Header for class minimardi_SearchWorker */
+
+#ifndef _Included_minimardi_SearchWorker
+#define _Included_minimardi_SearchWorker
+#ifdef __cplusplus
+extern "C" {
+#endif
+/*
+ * Class:     minimardi_SearchWorker
+ * Method:    nativeFree
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_SearchWorker_nativeFree
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     minimardi_SearchWorker
+ * Method:    nativeCreate
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_minimardi_SearchWorker_nativeCreate
+  (JNIEnv *, jobject);
+
+/*
+ * Class:     minimardi_SearchWorker
+ * Method:    searchNative
+ * Signature: (Lminimardi/Position;[IJJ)I
+ */
+JNIEXPORT jint JNICALL Java_minimardi_SearchWorker_searchNative
+  (JNIEnv *, jclass, jobject, jintArray, jlong, jlong);
+
+/*
+ * Class:     minimardi_SearchWorker
+ * Method:    resetNative
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_SearchWorker_resetNative
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     minimardi_SearchWorker
+ * Method:    stopNative
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_minimardi_SearchWorker_stopNative
+  (JNIEnv *, jclass, jlong);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
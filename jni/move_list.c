@@ -155,3 +155,44 @@ void sort_move_scores(move_list_stack mv_lst, move_list moves){
      mv_lst->move_stack[i+1]=mov;
     }
 }
+
+/*-------------------------------------------------------.
+ | function: promote_move(move_list moves, move mov)     |
+ |                                             -> int    |
+ | returns: 1 if mov is in the list moves, else 0.       |
+ | effects: moves mov to the top of the list, so it is   |
+ |          the next move to be popped.                  |
+ | note: use it after sort_move_scores.                  |
+  -------------------------------------------------------*/
+int promote_move(move_list_stack mv_lst, move_list moves, move mov){
+  int i;
+  move_score found;
+
+  for (i=mv_lst->move_sp-1; i >= moves; i--)
+    if (mv_lst->move_stack[i].move == (unsigned int) mov) break;
+  if (i < moves) return 0;
+  found = mv_lst->move_stack[i];
+  for (; i < mv_lst->move_sp-1; i++)
+    mv_lst->move_stack[i] = mv_lst->move_stack[i+1];
+  mv_lst->move_stack[i] = found;
+  return 1;
+}
+
+/*-------------------------------------------------------.
+ | function: raise_move_score(move_list moves, move mov, |
+ |                            int score) -> int          |
+ | returns: 1 if mov is in the list moves, else 0.       |
+ | effects: the score of mov is at least score.          |
+ | note: use it before sort_move_scores.                 |
+  -------------------------------------------------------*/
+int raise_move_score(move_list_stack mv_lst, move_list moves, move mov, int score){
+  int i;
+
+  for (i=mv_lst->move_sp-1; i >= moves; i--)
+    if (mv_lst->move_stack[i].move == (unsigned int) mov) {
+      if (mv_lst->move_stack[i].score < score)
+	mv_lst->move_stack[i].score = score;
+      return 1;
+    }
+  return 0;
+}
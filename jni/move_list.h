@@ -47,4 +47,6 @@ move look_hist(move_list_stack mv_lst,move_list old_sp);
 void free_move_list(move_list_stack mv_lst,move_list old_sp);
 void sort_move_scores(move_list_stack mv_lst,move_list moves);
 move look_stack(move_list_stack mv_lst,move_list old_sp, int look_at);
+int promote_move(move_list_stack mv_lst, move_list moves, move mov);
+int raise_move_score(move_list_stack mv_lst, move_list moves, move mov, int score);
 #endif
@@ -0,0 +1,229 @@
+#include "pawn.h"
+#include <pthread.h>
+/*-------------------------------------------------------.
+ | file: pawn.c                                          |
+ | contains: the pawn structure terms of the evaluation  |
+ |           and the pawn tables that keep them by pawn  |
+ |           key, most positions of a search share their |
+ |           pawns with many others.                     |
+  -------------------------------------------------------*/
+
+/* The pawn table of the default engine, allocated on the first call */
+static pawn_table_ the_pawn_table;
+static pthread_once_t the_pawn_table_once = PTHREAD_ONCE_INIT;
+
+static int pawn_pos[128] = {
+  0, 0, 0, 0, 0, 0, 0, 0,   0, 0, 0, 0, 0, 0, 0, 0,
+  0, 0, 0, 0, 0, 0, 0, 0,   60,60,60,60,60,60,60,60,
+  1, 1, 1, -1, -1, 1, 1, 1, 10,10,10,10,10,10,10,10,
+  1, 2, 2, 8, 8, 2, 2, 1,   2, 2, 4, 9, 9, 4, 2, 2,
+  2, 2, 4, 9, 9, 4, 2, 2,   1, 2, 2, 8, 8, 2, 2, 1,
+  10,10,10,10,10,10,10,10,  1, 1, 1, -1, -1, 1, 1, 1,
+  60,60,60,60,60,60,60,60,  0, 0, 0, 0, 0, 0, 0, 0,
+  0, 0, 0, 0, 0, 0, 0, 0,   0, 0, 0, 0, 0, 0, 0, 0
+};
+
+/* the files next to file F, as bits of pawn_info_ */
+#define ADJACENT_FILES(F) ((2 << (F)) | ((1 << (F)) >> 1))
+
+/* a passed pawn, by the ranks it has advanced */
+static int passed_pawn[8] = {0, 5, 10, 15, 25, 40, 60, 0};
+
+/*-------------------------------------------------------.
+ | function: pawn_structure(board brd, pawn_info info)   |
+ | effects: info is the pawn terms of brd.               |
+  -------------------------------------------------------*/
+static void pawn_structure(board brd, pawn_info info){
+  int white_pawns[8], black_pawns[8], white_count[8], black_count[8];
+  int white_lowest[8], black_highest[8]; /* rank of the last pawn of each file */
+  int i, f, g, r, wp=0, bp=0, passed, value=0;
+  piece p;
+
+  for (f=0; f < 8; f++) {
+    white_count[f] = black_count[f] = 0;
+    white_lowest[f] = 8;
+    black_highest[f] = -1;
+  }
+  for (i=0; i < 120; i++) {
+    if (!on_board(i)) continue;
+    p = get_piece(brd, i);
+    f = file(i)-1;
+    r = rank(i)-1;
+    if (p == WP) {
+      white_pawns[wp++] = i;
+      value += pawn_pos[i];
+      white_count[f]++;
+      if (r < white_lowest[f]) white_lowest[f] = r;
+    }
+    else if (p == BP) {
+      black_pawns[bp++] = i;
+      value -= pawn_pos[i+8];
+      black_count[f]++;
+      if (r > black_highest[f]) black_highest[f] = r;
+    }
+  }
+
+  info->white_files = info->black_files = 0;
+  for (f=0; f < 8; f++) {
+    if (white_count[f]) info->white_files |= 1 << f;
+    if (black_count[f]) info->black_files |= 1 << f;
+    /* doubled pawns */
+    if (white_count[f] > 1) value -= DOUBLE_PAWN * (white_count[f]-1);
+    if (black_count[f] > 1) value += DOUBLE_PAWN * (black_count[f]-1);
+  }
+
+  for (i=0; i < wp; i++) {
+    f = file(white_pawns[i])-1;
+    r = rank(white_pawns[i])-1;
+    if (!(info->white_files & ADJACENT_FILES(f))) value -= ISOLATED_PAWN;
+    for (passed=1, g=f-1; g <= f+1; g++)
+      if (g >= 0 && g < 8 && black_highest[g] > r) passed=0;
+    if (passed) value += passed_pawn[r];
+  }
+  for (i=0; i < bp; i++) {
+    f = file(black_pawns[i])-1;
+    r = rank(black_pawns[i])-1;
+    if (!(info->black_files & ADJACENT_FILES(f))) value += ISOLATED_PAWN;
+    for (passed=1, g=f-1; g <= f+1; g++)
+      if (g >= 0 && g < 8 && white_lowest[g] < r) passed=0;
+    if (passed) value -= passed_pawn[7-r];
+  }
+  info->value = value;
+}
+
+/*-------------------------------------------------------.
+ | function: pawn_table_alloc(pawn_table pawns,          |
+ |           int size) -> int                            |
+ | returns: 1 if pawns is now an empty table of at most  |
+ |          size entries (a power of two), or off if     |
+ |          size is 0. 0 if there is not enough memory,  |
+ |          pawns is kept.                               |
+  -------------------------------------------------------*/
+static int pawn_table_alloc(pawn_table pawns, int size){
+  int entries = 1;
+  pawn_entry memory = NULL;
+
+  if (size > 0) {
+    while (entries * 2 <= size) entries *= 2;
+    memory = (pawn_entry) calloc(entries, sizeof(pawn_entry_));
+    if (memory == NULL) return 0;
+  }
+  else entries = 0;
+  free(pawns->entries);
+  pawns->entries = memory;
+  pawns->mask = entries ? entries - 1 : 0;
+  pawns->size = entries;
+  return 1;
+}
+
+/*-------------------------------------------------------.
+ | function: pawn_table_entries_kb(int kb) -> int        |
+ | returns: the entries that fit in kb kilobytes, at     |
+ |          most PAWN_TABLE_MAX_KB.                      |
+  -------------------------------------------------------*/
+int pawn_table_entries_kb(int kb){
+  if (kb > PAWN_TABLE_MAX_KB) kb = PAWN_TABLE_MAX_KB;
+  if (kb < 0) kb = 0;
+  return kb * (int) (1024 / sizeof(pawn_entry_));
+}
+
+/*-------------------------------------------------------.
+ | function: default_pawn_table_init() -> void           |
+ | effects: allocates the pawn table of the default      |
+ |          engine, once.                                |
+  -------------------------------------------------------*/
+static void default_pawn_table_init(){
+  pawn_table_alloc(&the_pawn_table, pawn_table_entries_kb(PAWN_TABLE_DEFAULT_KB));
+}
+
+/*-------------------------------------------------------.
+ | function: default_pawn_table() -> pawn_table          |
+ | returns: the pawn table of the default engine,        |
+ |          PAWN_TABLE_DEFAULT_KB or off if there is not |
+ |          that much memory.                            |
+ | note: any thread may make the first call.             |
+  -------------------------------------------------------*/
+pawn_table default_pawn_table(){
+  pthread_once(&the_pawn_table_once, default_pawn_table_init);
+  return &the_pawn_table;
+}
+
+/*-------------------------------------------------------.
+ | function: new_pawn_table(int size) -> pawn_table      |
+ | returns: an empty table of at most size entries, NULL |
+ |          if there is not enough memory.               |
+  -------------------------------------------------------*/
+pawn_table new_pawn_table(int size){
+  pawn_table pawns = (pawn_table) calloc(1, sizeof(pawn_table_));
+
+  if (pawns == NULL) return NULL;
+  if (!pawn_table_alloc(pawns, size)) {
+    free(pawns);
+    return NULL;
+  }
+  return pawns;
+}
+
+/*-------------------------------------------------------.
+ | function: free_pawn_table(pawn_table pawns) -> void   |
+ | effects: frees a table from new_pawn_table.           |
+  -------------------------------------------------------*/
+void free_pawn_table(pawn_table pawns){
+  if (pawns == NULL || pawns == &the_pawn_table) return;
+  free(pawns->entries);
+  free(pawns);
+}
+
+/*-------------------------------------------------------.
+ | function: pawn_table_resize(pawn_table pawns,         |
+ |           int size) -> int                            |
+ | returns: 1 if pawns now has at most size entries, off |
+ |          if size is 0. 0 if there is not enough       |
+ |          memory and pawns is kept.                    |
+ | effects: the table is empty. Not while searching.     |
+  -------------------------------------------------------*/
+int pawn_table_resize(pawn_table pawns, int size){
+  return pawn_table_alloc(pawns, size);
+}
+
+/*-------------------------------------------------------.
+ | function: pawn_table_reset(pawn_table pawns) -> void  |
+ | effects: removes all pawn structures from pawns.      |
+  -------------------------------------------------------*/
+void pawn_table_reset(pawn_table pawns){
+  if (pawns->entries != NULL) memset(pawns->entries, 0, (size_t) pawns->size * sizeof(pawn_entry_));
+}
+
+/*-------------------------------------------------------.
+ | function: pawn_eval(position pos, pawn_table pawns,   |
+ |           pawn_info info) -> int                      |
+ | returns: 1 if info, the pawn terms of pos, was found  |
+ |          in pawns. Else 0, info is computed and       |
+ |          stored in pawns (if not NULL or off).        |
+ | note: no locks, other threads may use pawns at the    |
+ |       same time (see pawn_entry_).                    |
+  -------------------------------------------------------*/
+int pawn_eval(position pos, pawn_table pawns, pawn_info info){
+  U64 key = getPawnKey(pos);
+  pawn_entry_ copy;
+  pawn_entry entry = NULL;
+
+  if (pawns != NULL && pawns->entries != NULL) {
+    entry = pawns->entries + (key & pawns->mask);
+    copy = *entry; /* a copy, the entry may change meanwhile */
+    if ((copy.check ^ copy.data) == key) {
+      info->value = (int) (copy.data & 0xffffffff);
+      info->white_files = (int) ((copy.data >> 32) & 0xff);
+      info->black_files = (int) ((copy.data >> 40) & 0xff);
+      return 1;
+    }
+  }
+  pawn_structure(getBoard(pos), info);
+  if (entry != NULL) {
+    copy.data = (U64) (unsigned int) info->value | (U64) info->white_files << 32 |
+      (U64) info->black_files << 40;
+    copy.check = key ^ copy.data;
+    *entry = copy;
+  }
+  return 0;
+}
@@ -0,0 +1,51 @@
+#ifndef PAWN
+#define PAWN
+#include "position.h"
+
+#define DOUBLE_PAWN 40
+#define ISOLATED_PAWN 15
+#define PAWN_TABLE_DEFAULT_KB 512 /* of each engine */
+#define PAWN_TABLE_MAX_KB 1048576 /* the entries still fit in an int */
+
+/*
+  the pawn terms of a position, that only depend on where the
+  pawns are: the pawn squares, doubled, isolated and passed pawns
+  and the files with pawns for the rooks.
+ */
+typedef struct pawn_info_ *pawn_info;
+typedef struct pawn_info_ {
+  int value; /* for white, the terms of white minus those of black */
+  int white_files; /* bit f is set if white has a pawn on file f (0 is a) */
+  int black_files;
+} pawn_info_;
+
+/*
+  an entry of a pawn table, the key is stored xor the data like
+  in trans_table_entry_ so that the table needs no locks.
+ */
+typedef struct pawn_entry_ *pawn_entry;
+typedef struct pawn_entry_ {
+  U64 check; /* the pawn key xor data, 0 if empty */
+  U64 data; /* value in the low 32 bits, then white_files and black_files */
+} pawn_entry_;
+
+/*
+  the pawn_info of the last pawn structures seen, by pawn key.
+  Each engine has one, shared by the threads of its searches.
+ */
+typedef struct pawn_table_ *pawn_table;
+typedef struct pawn_table_ {
+  pawn_entry entries; /* NULL if the table is off */
+  U64 mask; /* size-1, a power of two */
+  int size; /* entries, 0 if the table is off */
+} pawn_table_;
+
+/* FUNCTIONS */
+pawn_table default_pawn_table();
+pawn_table new_pawn_table(int size);
+void free_pawn_table(pawn_table pawns);
+int pawn_table_resize(pawn_table pawns, int size);
+int pawn_table_entries_kb(int kb);
+void pawn_table_reset(pawn_table pawns);
+int pawn_eval(position pos, pawn_table pawns, pawn_info info);
+#endif
@@ -54,17 +54,22 @@ int rep_search(position pos) {
 /*-------------------------------------------------------.
  | functions: Zobrist keys                               |
   -------------------------------------------------------*/
-U64 rand64()
+/* xorshift, every position gets the same keys so searches with a */
+/* node limit are repeatable (the book seeds rand with the time). */
+U64 rand64(U64 *seed)
 {
-  return rand()^((U64)rand()<<15)^((U64)rand()<<30)^
-    ((U64)rand()<<45)^((U64)rand()<<60);
+  *seed ^= *seed << 13;
+  *seed ^= *seed >> 7;
+  *seed ^= *seed << 17;
+  return *seed;
 }
 
 void init_zobrist_key(position pos){
   int i=0, j=0;
+  U64 seed = ZOBRIST_SEED;
   for (i=0; i <= 11; i++){
     for (j=0; j <= 127; j++)
-      pos->zobrist_key[i][j]=rand64();
+      pos->zobrist_key[i][j]=rand64(&seed);
   }
 }
 
@@ -132,6 +137,61 @@ U64 get_zobrist_key(position pos){
      return key;
 }
 
+/*-------------------------------------------------------.
+ | function: get_pawn_key(position pos) -> U64           |
+ | returns: the zobrist key of the pawns of pos, as kept |
+ |          by do_move and undo_move in pos->pawn_key.   |
+  -------------------------------------------------------*/
+U64 get_pawn_key(position pos){
+  int i;
+  piece p;
+  U64 key=0;
+
+  for (i=0; i < 120; i++) {
+    if (!on_board(i)) continue;
+    p = get_piece(getBoard(pos), i);
+    if (p == WP || p == BP) key ^= pos->zobrist_key[get_zobrist_piece(p)][i];
+  }
+  return key;
+}
+
+/*-------------------------------------------------------.
+ | function: captured_square(move mov) -> int            |
+ | returns: the square of the piece captured by mov, not |
+ |          the destination for an en passant capture.   |
+  -------------------------------------------------------*/
+static int captured_square(move mov){
+  int dst = get_dst(mov);
+
+  if (!is_passant_move(mov)) return dst;
+  return get_cap_piece(mov) == BP ? dst-16 : dst+16;
+}
+
+/*-------------------------------------------------------.
+ | function: pawn_key_move(position pos, move mov,       |
+ |           piece p) -> U64                             |
+ | returns: the change of the pawn key by mov, p is the  |
+ |          moved piece (the new one of a promotion).    |
+ |          The same for do_move and undo_move.          |
+  -------------------------------------------------------*/
+static U64 pawn_key_move(position pos, move mov, piece p){
+  piece cap;
+  int dst = get_dst(mov);
+  U64 change=0;
+
+  if (is_prom_move(mov))
+    change ^= pos->zobrist_key[get_zobrist_piece(make_same_color(p, WP))][get_src(mov)];
+  else if (p == WP || p == BP)
+    change ^= pos->zobrist_key[get_zobrist_piece(p)][get_src(mov)] ^
+      pos->zobrist_key[get_zobrist_piece(p)][dst];
+  if (is_capture_move(mov)) {
+    cap = get_cap_piece(mov);
+    if (cap == WP || cap == BP)
+      change ^= pos->zobrist_key[get_zobrist_piece(cap)][captured_square(mov)];
+  }
+  return change;
+}
+
 /*-------------------------------------------------------.
  | function: new_chess_position() -> position            |
  | returns: the initial chess position.                  |
@@ -161,6 +221,7 @@ position new_chess_position(){
   pos->outOfBook=0;
   init_zobrist_key(pos);
   pos->key=get_zobrist_key(pos);
+  pos->pawn_key=get_pawn_key(pos);
   pos->hist_heuristic=new_history_heuristic();
   clearHistory(pos->hist_heuristic);
   pos->rep_sp=0;
@@ -169,16 +230,41 @@ position new_chess_position(){
   pos->white_is_castled = 0;
   pos->black_is_castled = 0;
   pos->openingbook = fopen("/data/data/net.sourceforge.minimardi/lib/libbook.so", "r");
+  pos->prefetch = NULL;
   return pos;
 }
 
+/*-------------------------------------------------------.
+ | function: fen_piece(char c) -> piece                  |
+ | returns: the piece of the fen letter c, EMPTY if c is |
+ |          not a piece.                                 |
+  -------------------------------------------------------*/
+static piece fen_piece(char c){
+  switch (c){
+  case 'K': return WK;
+  case 'Q': return WQ;
+  case 'R': return WR;
+  case 'B': return WB;
+  case 'N': return WN;
+  case 'P': return WP;
+  case 'k': return BK;
+  case 'q': return BQ;
+  case 'r': return BR;
+  case 'b': return BB;
+  case 'n': return BN;
+  case 'p': return BP;
+  }
+  return EMPTY;
+}
+
 /*-------------------------------------------------------.
  | function: new_chess_position_fen(char *fen) -> position|
- | returns: the fen chess position.                       |
+ | returns: the fen chess position, NULL if fen is not   |
+ |          a position with one king of each color.      |
   -------------------------------------------------------*/
 position new_chess_position_fen(char *fen){
  position pos;
- int i, r;
+ int i, r, kings=0;
  piece p;
 
   pos = (position) malloc(sizeof(position_));
@@ -192,39 +278,39 @@ position new_chess_position_fen(char *fen){
   i = 112;
   r = 0;
   while (*fen) {
-    switch (*fen){
-    case 'K': set_piece(pos->b, WK, i); i++; break;
-    case 'Q': set_piece(pos->b, WQ, i); i++; break;
-    case 'R': set_piece(pos->b, WR, i); i++; break;
-    case 'B': set_piece(pos->b, WB, i); i++; break;
-    case 'N': set_piece(pos->b, WN, i); i++; break;
-    case 'P': set_piece(pos->b, WP, i); i++; break;
-    case 'k': set_piece(pos->b, BK, i); i++; break;
-    case 'q': set_piece(pos->b, BQ, i); i++; break;
-    case 'r': set_piece(pos->b, BR, i); i++; break;
-    case 'b': set_piece(pos->b, BB, i); i++; break;
-    case 'n': set_piece(pos->b, BN, i); i++; break;
-    case 'p': set_piece(pos->b, BP, i); i++; break;
-    case '1': i += 1; break;
-    case '2': i += 2; break;
-    case '3': i += 3; break;
-    case '4': i += 4; break;
-    case '5': i += 5; break;
-    case '6': i += 6; break;
-    case '7': i += 7; break;
-    case '8': i += 8; break;
-    case '/': r++; i = 112 - r*16; break;
-    default:  printf("Bad FEN position: piece %i\n", i); exit(1);
+    if (*fen >= '1' && *fen <= '8') {
+      if ((i & 15) + (*fen - '0') > 8) break; /* past the end of the rank */
+      i += *fen - '0';
+    }
+    else if (*fen == '/') {
+      if (++r > 7) break;
+      i = 112 - r*16;
+    }
+    else {
+      p = fen_piece(*fen);
+      if (p == EMPTY || !on_board(i)) break;
+      if (p == WK) kings += 1;
+      else if (p == BK) kings += 8;
+      set_piece(pos->b, p, i);
+      i++;
     }
     fen++;
     if ((*fen) == ' ') break;
-  }    
+  }
   /* active color */
+  if (*fen != ' ' || kings != 9) {
+    free_board(pos->b);
+    free(pos);
+    return NULL;
+  }
   fen++;
   switch (*fen){
   case 'w': pos->toMove=WHITE; fen++; break;
   case 'b': pos->toMove=BLACK; fen++; break;
-  default:  printf("Bad FEN position: active color %c\n", *fen); exit(1);
+  default:
+    free_board(pos->b);
+    free(pos);
+    return NULL;
   }
 
   fen++;
@@ -253,16 +339,18 @@ position new_chess_position_fen(char *fen){
     char file, rank;
     file = (*fen);
     fen++;
-    if (!*fen) printf("Bad FEN position\n"); exit(1);
     rank = (*fen);
+    if (file < 'a' || file > 'h' || (rank != '3' && rank != '6')) {
+      free_board(pos->b);
+      free(pos);
+      return NULL;
+    }
     sq=(file-97)+((rank-48-1)*16);
-    if (sq < 0 || sq > 119) printf("Bad FEN position: en passant square\n"); exit(1);
-    if (rank == 3) do_passant(pos, new_move(sq-16, sq+16), sq+16);
-    else if (rank == 6)
-      do_passant(pos, new_move(sq+16, sq-16), sq-16);
+    if (rank == '3') do_passant(pos, new_move(sq-16, sq+16), sq+16);
+    else do_passant(pos, new_move(sq+16, sq-16), sq-16);
   }
-  
-  fen++;
+  if (*fen) fen++;
+  if (*fen) fen++;
 
   /* halfmove clock */
   if ((*fen)) {
@@ -275,7 +363,11 @@ position new_chess_position_fen(char *fen){
   init_move_list(pos->move_stack);
   pos->moves=new_hist_moves(pos->move_stack); 
   pos->outOfBook=1;
+  pos->openingbook=NULL;
+  pos->prefetch = NULL;
+  init_zobrist_key(pos);
   pos->key=get_zobrist_key(pos);
+  pos->pawn_key=get_pawn_key(pos);
   pos->hist_heuristic=new_history_heuristic();
   clearHistory(pos->hist_heuristic);
   pos->rep_sp=0;
@@ -291,6 +383,73 @@ position new_chess_position_fen(char *fen){
   return pos;
 }
 
+/*-------------------------------------------------------.
+ | function: set_pieces(position pos, int n, piece *pc,  |
+ |           int *sq, char to_move) -> void              |
+ | effects: pos has only the n pieces pc on the squares  |
+ |          sq, one king of each color, with to_move to  |
+ |          move and no castling or en passant.          |
+ | note: for the endgame tables, which use the move      |
+ |       generator on positions of their own.            |
+  -------------------------------------------------------*/
+void set_pieces(position pos, int n, piece *pc, int *sq, char to_move){
+  int i;
+  U64 key, pawn_key=0;
+
+  empty_board(pos->b);
+  pos->pieces=0;
+  pos->materialcount=0;
+  /* the keys of get_zobrist_key and get_pawn_key, without a look at every square */
+  key = pos->zobrist_key[0][Z_WCL] ^ pos->zobrist_key[0][Z_WCS] ^
+    pos->zobrist_key[0][Z_BCL] ^ pos->zobrist_key[0][Z_BCS];
+  if (to_move == BLACK) key ^= pos->zobrist_key[0][Z_TOMOVE];
+  for (i=0; i < n; i++) {
+    set_piece(pos->b, pc[i], sq[i]);
+    key ^= pos->zobrist_key[get_zobrist_piece(pc[i])][sq[i]];
+    if (pc[i] == WK) pos->white_king = sq[i];
+    else if (pc[i] == BK) pos->black_king = sq[i];
+    if ((pc[i] != BP) && (pc[i] != WP)) pos->pieces++;
+    else pawn_key ^= pos->zobrist_key[get_zobrist_piece(pc[i])][sq[i]];
+    pos->materialcount +=-do_material_getval(pc[i]);
+  }
+  pos->toMove=to_move;
+  pos->blackPassant=0;
+  pos->whitePassant=0;
+  pos->passant_piece=0;
+  pos->plycount=2; /* after the plies the castling was lost, as a fen */
+  pos->plyWhiteLostShortCastle=1;
+  pos->plyWhiteLostLongCastle=1;
+  pos->plyBlackLostShortCastle=1;
+  pos->plyBlackLostLongCastle=1;
+  pos->white_is_castled=0;
+  pos->black_is_castled=0;
+  pos->key=key;
+  pos->pawn_key=pawn_key;
+  pos->rep_sp=0;
+}
+
+/*-------------------------------------------------------.
+ | function: copy_position(position pos) -> position     |
+ | returns: a private copy of pos, with its own board,   |
+ |          move stack and history heuristic.            |
+ | note: the copy has the same zobrist keys as pos so    |
+ |       both can share the transposition table. The     |
+ |       opening book is not copied.                     |
+  -------------------------------------------------------*/
+position copy_position(position pos){
+  position copy;
+  copy = (position) malloc(sizeof(position_));
+  memcpy(copy, pos, sizeof(position_));
+  copy->b=newboard();
+  memcpy(copy->b, pos->b, sizeof(board_));
+  copy->move_stack=new_move_list_stack();
+  memcpy(copy->move_stack, pos->move_stack, sizeof(move_list_stack_));
+  copy->hist_heuristic=new_history_heuristic();
+  memcpy(copy->hist_heuristic, pos->hist_heuristic, sizeof(history_heuristic_));
+  copy->openingbook=NULL;
+  return copy;
+}
+
 /*-------------------------------------------------------.
  | functions: to set stuff in the position               |
   -------------------------------------------------------*/
@@ -339,6 +498,9 @@ FILE *getBook(position pos){
 U64 getZobristKey(position pos){
   return pos->key;
 }
+U64 getPawnKey(position pos){
+  return pos->pawn_key;
+}
 int isCompBlack(position pos){
   if (pos->side==BLACK) return 1;
   return 0;
@@ -415,6 +577,18 @@ move_list_stack get_move_stack(position pos){
   return pos->move_stack;
 }
 
+/*-------------------------------------------------------.
+ | function: set_prefetch(position pos, void *lines,     |
+ |           U64 mask) -> void                           |
+ | effects: do_move prefetches the cache line of the new |
+ |          key in lines (mask+1 lines, the buckets of a |
+ |          transposition table), none if lines is NULL. |
+  -------------------------------------------------------*/
+void set_prefetch(position pos, void *lines, U64 mask){
+  pos->prefetch = (char *) lines;
+  pos->prefetch_mask = mask;
+}
+
 /*-------------------------------------------------------.
  | function: free_position(position pos) -> void         |
  | effects: free the position pos                        |
@@ -424,6 +598,7 @@ void free_position(position pos){
     free_board(pos->b);
     if (pos->openingbook) fclose(pos->openingbook);
     free_history_heuristic(pos->hist_heuristic);
+    free(pos->move_stack);
     free(pos);
   }
 }
@@ -587,6 +762,7 @@ void do_move(position pos, move mov){
     if (z_wpass) new_key ^= pos->zobrist_key[1][(z_pass)+8];
     else if (z_bpass) new_key ^= pos->zobrist_key[1][(z_pass)+8];
     setZobristKey(pos, new_key);
+    if (pos->prefetch) PREFETCH(pos->prefetch + (new_key & pos->prefetch_mask) * CACHE_LINE);
     push_hist(pos->move_stack, NULL_MOVE_PRUNING);
     incPly(pos);
     return;
@@ -599,11 +775,12 @@ void do_move(position pos, move mov){
   p = get_piece(brd, src);
   assert(on_board(src) && on_board(dst) && (p!=EMPTY));
   incPly(pos);
+  pos->pawn_key ^= pawn_key_move(pos, mov, p);
 
   if (is_capture_move(mov)) {
     do_material(pos, mov);
     /* A capture move => we have to remove the cap piece from the key */
-    new_key ^= pos->zobrist_key[get_zobrist_piece(get_cap_piece(mov))][dst];
+    new_key ^= pos->zobrist_key[get_zobrist_piece(get_cap_piece(mov))][captured_square(mov)];
   } 
   else if (is_prom_move(mov)) do_material(pos, mov);
 
@@ -730,6 +907,7 @@ void do_move(position pos, move mov){
   if (getWhitePassant(pos)) new_key ^= pos->zobrist_key[1][(pos->passant_piece)+8];
   if (getBlackPassant(pos)) new_key ^= pos->zobrist_key[1][(pos->passant_piece)+8];
   setZobristKey(pos, new_key);
+  if (pos->prefetch) PREFETCH(pos->prefetch + (new_key & pos->prefetch_mask) * CACHE_LINE);
   /* push this new key to the repetition stack */
   rep_push(pos, new_key);
 }
@@ -785,6 +963,7 @@ void undo_move(position pos, move mov){
   brd = getBoard(pos);
   p = get_piece(brd, dst);
   assert(on_board(src) && on_board(dst) && (p!=EMPTY));
+  pos->pawn_key ^= pawn_key_move(pos, mov, p);
 
   if (p==WK) pos->white_king = src;
   else if (p==BK) pos->black_king = src;
@@ -858,7 +1037,7 @@ void undo_move(position pos, move mov){
     if (is_capture_move(mov)) {
       new_key ^= pos->zobrist_key[get_zobrist_piece(p)][dst];
       new_key ^= pos->zobrist_key[get_zobrist_piece(p)][src];
-      new_key ^= pos->zobrist_key[get_zobrist_piece(get_cap_piece(mov))][dst];
+      new_key ^= pos->zobrist_key[get_zobrist_piece(get_cap_piece(mov))][captured_square(mov)];
       if (is_passant_move(mov)) {
 	if (is_white_piece(p)){
 	  set_piece(brd, WP, src);
@@ -980,6 +1159,15 @@ int last_move_null(position pos){
   return 0;
 }
 
+/*-------------------------------------------------------.
+ | function: last_move(position pos) -> move             |
+ | returns: the move that gave position pos, NULL_MOVE   |
+ |          if there is none.                            |
+  -------------------------------------------------------*/
+move last_move(position pos){
+  return look_hist(pos->move_stack, getPosMoves(pos));
+}
+
 /*-------------------------------------------------------.
  | function: pieces(position pos) -> int                 |
  | returns: # pieces in the position.                    |
@@ -1638,6 +1826,41 @@ int in_check_illegal(position pos){
   return 1;
 }
 
+/*-------------------------------------------------------.
+ | function: count_legal_moves(position pos) -> int      |
+ | returns: the number of legal moves in pos.            |
+ | note: only the moves that can uncover the king (king  |
+ |       moves, en passant, pieces on a line with the    |
+ |       king and all moves in check) are played to test |
+ |       them, the others are legal.                     |
+  -------------------------------------------------------*/
+int count_legal_moves(position pos){
+  move_list moves;
+  move mov;
+  int i, end, src, king, check, count=0;
+  move_list_stack mv_lst = pos->move_stack;
+
+  king = getToMove(pos)==WHITE ? pos->white_king : pos->black_king;
+  check = in_check(pos);
+  moves = move_generator(pos);
+  end = mv_lst->move_sp;
+  for (i=moves; i < end; i++) {
+    mov = mv_lst->move_stack[i].move;
+    src = get_src(mov);
+    if (!check && src != king && !is_passant_move(mov) &&
+	(src>>4) != (king>>4) && (src&7) != (king&7) &&
+	abs((src>>4) - (king>>4)) != abs((src&7) - (king&7))) {
+      count++;
+      continue;
+    }
+    do_move(pos, mov);
+    if (!in_check_illegal(pos)) count++;
+    undo_move(pos, mov);
+  }
+  free_move_list(mv_lst, moves);
+  return count;
+}
+
 /*-------------------------------------------------------.
  | function: isGameOver(position pos) -> int             |
  | returns: 0 - if not Draw or Checkmate                 |
@@ -1664,3 +1887,127 @@ int isGameOver(position pos){
   return 1;  
 }
 
+/*-------------------------------------------------------.
+ | function: see_value(piece p) -> int                   |
+ | returns: the value of p in the exchange, the king is  |
+ |          worth more than everything else together.    |
+  -------------------------------------------------------*/
+static int see_value(piece p){
+  if (p == WK || p == BK) return SEE_KING;
+  return abs(do_material_getval(p));
+}
+
+/*-------------------------------------------------------.
+ | function: least_attacker(piece *brd, int sq,          |
+ |                          int color) -> int            |
+ | returns: the square of the least valuable piece of    |
+ |          color (WHITE/BLACK) that attacks sq on brd,  |
+ |          -1 if there is none.                         |
+ | note: sliders are found through the squares emptied   |
+ |       by earlier captures (x-rays).                   |
+  -------------------------------------------------------*/
+static int least_attacker(piece *brd, int sq, int color){
+  int i, dst, from=-1, best=SEE_KING+1;
+  piece p;
+
+  /* pawns */
+  if (color == WHITE) {
+    if (on_board(sq-15) && brd[sq-15] == WP) return sq-15;
+    if (on_board(sq-17) && brd[sq-17] == WP) return sq-17;
+  } else {
+    if (on_board(sq+15) && brd[sq+15] == BP) return sq+15;
+    if (on_board(sq+17) && brd[sq+17] == BP) return sq+17;
+  }
+  /* knights */
+  for (i=0; knight_dsts[i]!=0; i++) {
+    dst = sq + knight_dsts[i];
+    if (on_board(dst) && brd[dst] == (BN | color)) return dst;
+  }
+  /* sliders and the king, keep the least valuable */
+  for (i=0; queen_dsts[i]!=0; i++) {
+    for (dst=sq+queen_dsts[i]; on_board(dst); dst+=queen_dsts[i]) {
+      p = brd[dst];
+      if (is_empty(p)) continue;
+      if ((p & WHITE) == color) {
+	switch (p & ~WHITE) {
+	case BQ: break;
+	case BR: if (abs(queen_dsts[i]) == 16 || abs(queen_dsts[i]) == 1) break; p = EMPTY; break;
+	case BB: if (abs(queen_dsts[i]) == 15 || abs(queen_dsts[i]) == 17) break; p = EMPTY; break;
+	case BK: if (dst == sq+queen_dsts[i]) break; p = EMPTY; break;
+	default: p = EMPTY; break;
+	}
+	if (!is_empty(p) && see_value(p) < best) {
+	  best = see_value(p);
+	  from = dst;
+	}
+      }
+      break; /* the first piece blocks the line */
+    }
+  }
+  return from;
+}
+
+/*-------------------------------------------------------.
+ | function: see(position pos, move mov) -> int          |
+ | returns: the material won (centipawns) by the side on |
+ |          the move when mov is played and then all the |
+ |          captures on its dst square, least valuable   |
+ |          attacker first, while they don't lose.       |
+ | note: mov must come from the move generator. Captures |
+ |       by a less valuable piece just get the value of  |
+ |       the captured piece, a lower bound.              |
+  -------------------------------------------------------*/
+int see(position pos, move mov){
+  piece brd[BOARD_SIZE], on_dst;
+  int gain[32], d=0, src, dst, from, color;
+
+  src = get_src(mov);
+  dst = get_dst(mov);
+  memcpy(brd, getBoard(pos)->board, sizeof(brd));
+  on_dst = brd[src];
+  if (is_passant_move(mov)) gain[0] = VALUE_PAWN;
+  else gain[0] = is_capture_move(mov) ? see_value(brd[dst]) : 0;
+  if (is_prom_move(mov)) {
+    on_dst = get_prom_piece(mov);
+    gain[0] += see_value(on_dst) - VALUE_PAWN;
+  }
+  /* a capture by a less valuable piece can't lose */
+  if (!is_prom_move(mov) && is_capture_move(mov) && see_value(on_dst) <= gain[0])
+    return gain[0];
+  brd[src] = EMPTY;
+  brd[dst] = on_dst;
+  color = (on_dst & WHITE) ^ WHITE;
+  while (d < 31 && (from = least_attacker(brd, dst, color)) >= 0) {
+    d++;
+    gain[d] = see_value(on_dst) - gain[d-1];
+    on_dst = brd[from];
+    brd[from] = EMPTY;
+    brd[dst] = on_dst;
+    color ^= WHITE;
+  }
+  while (d > 0) {
+    if (gain[d] > -gain[d-1]) gain[d-1] = -gain[d];
+    d--;
+  }
+  return gain[0];
+}
+
+/*-------------------------------------------------------.
+ | function: see_order_captures(position pos,            |
+ |                          move_list moves) -> void     |
+ | effects: captures in moves that lose material get the |
+ |          see value as score, so they are tried last.  |
+ | note: use it before sort_move_scores.                 |
+  -------------------------------------------------------*/
+void see_order_captures(position pos, move_list moves){
+  int i, value;
+  move mov;
+  move_list_stack mv_lst = pos->move_stack;
+
+  for (i=moves; i < mv_lst->move_sp; i++) {
+    mov = mv_lst->move_stack[i].move;
+    if (!is_capture_move(mov) || is_prom_move(mov)) continue;
+    if ((value = see(pos, mov)) < 0)
+      mv_lst->move_stack[i].score = value;
+  }
+}
@@ -44,6 +44,7 @@
 #define VALUE_ROOK 600
 #define VALUE_QUEEN 1200
 #define VALUE_KING 400
+#define SEE_KING 10000 /* king in the exchange evaluation */
 
 /* 64 bit int for zobrist keys */
 #ifndef WIN32
@@ -53,6 +54,15 @@ typedef unsigned long long U64;
 typedef unsigned __int64 U64;
 #endif
 typedef char boolean;
+#define ZOBRIST_SEED 88172645463325252LL
+#define CACHE_LINE 64 /* bytes */
+
+/* a hint to load the cache line of ADDR, no op without the builtin */
+#if defined(__GNUC__)
+#define PREFETCH(ADDR) __builtin_prefetch(ADDR)
+#else
+#define PREFETCH(ADDR)
+#endif
 
 /* the POSITION */
 typedef struct position_ *position;
@@ -76,6 +86,7 @@ typedef struct position_ {
   int plyBlackLostLongCastle;
   int outOfBook; /* is the postion still book */
   U64 key; /* unique (almost) zobrist key for this position */
+  U64 pawn_key; /* zobrist key of the pawns alone */
   U64 zobrist_key[12][BOARD_SIZE];
 
   U64 rep_stack[1024]; /* for repetition detection */
@@ -90,13 +101,19 @@ typedef struct position_ {
   move_list_stack move_stack; /* stack for moves while searching and past moves */
 
   FILE *openingbook;
+  char *prefetch; /* cache lines of the table of the search, or NULL */
+  U64 prefetch_mask; /* lines-1, a power of two */
 } position_;
 
 /* FUNCTIONS */
 position new_chess_position();
 position new_chess_position_fen(char *fen);
+position copy_position(position pos);
+void set_pieces(position pos, int n, piece *pc, int *sq, char to_move);
 move_list move_generator(position pos);
 U64 getZobristKey(position pos);
+U64 getPawnKey(position pos);
+U64 get_pawn_key(position pos);
 char getToMove(position pos);
 int getMaterial(position pos);
 move_list getPosMoves(position pos);
@@ -126,7 +143,12 @@ int getPly(position pos);
 int white_is_castled(position pos);
 int black_is_castled(position pos);
 int last_move_null(position pos);
+move last_move(position pos);
+int see(position pos, move mov);
+int count_legal_moves(position pos);
+void see_order_captures(position pos, move_list moves);
 int pieces(position pos);
 history_heuristic get_hist_heuristic(position pos);
 move_list_stack get_move_stack(position pos);
+void set_prefetch(position pos, void *lines, U64 mask);
 #endif
@@ -18,6 +18,9 @@
 #define PROM_R CAPTURES_FIRST-2
 #define PROM_B CAPTURES_FIRST-3
 #define PROM_N CAPTURES_FIRST-4
+#define KILLER_1 CAPTURES_FIRST-10 /* quiet moves that caused a cutoff at the same ply */
+#define KILLER_2 CAPTURES_FIRST-11
+#define COUNTER_MOVE CAPTURES_FIRST-12 /* quiet reply that refuted the previous move */
 int score_cap(piece p, piece cap);
 int score_prom_cap(piece prom, piece cap);
 int score_prom(piece prom);
@@ -1,13 +1,203 @@
-#include "search.h"
+#include "engine.h"
 /*-------------------------------------------------------.
  | file: search.c                                        |
  | contains: functions for finding good moves.           |
   -------------------------------------------------------*/
 int alphabeta(position pos, int depth, int alpha, int beta, pv *root_pv,  search_data data);
 int mtdf(position pos, int f, int depth, search_data data);
+int quiescent(position pos, int depth,  int alpha, int beta, search_data data);
 int quiescent_failsoft(position pos, int depth,  int alpha, int beta, search_data data);
 int alphabeta_failsoft(position pos, int depth, int alpha, int beta, pv *root_pv,  search_data data);
 
+/* ponder_hit and the start of a pondering search, either may come first */
+static pthread_mutex_t ponder_lock = PTHREAD_MUTEX_INITIALIZER;
+/* the seeds of the tables, searches of one engine may run at the same time */
+static pthread_mutex_t seed_lock = PTHREAD_MUTEX_INITIALIZER;
+
+/*-------------------------------------------------------.
+ | function: order_moves(position pos, move_list moves,  |
+ |           search_data data) -> void                   |
+ | effects: the killer moves at this ply and the         |
+ |          countermove to the last move are scored      |
+ |          after the captures, before sort_move_scores. |
+  -------------------------------------------------------*/
+static void order_moves(position pos, move_list moves, search_data data){
+  int ply = getPly(pos) - data->root_ply;
+  move last;
+
+  if (data->params.killers && ply < MAX_KILLER_PLY) {
+    if (data->killers[ply][0] != NULL_MOVE)
+      raise_move_score(get_move_stack(pos), moves, data->killers[ply][0], KILLER_1);
+    if (data->killers[ply][1] != NULL_MOVE)
+      raise_move_score(get_move_stack(pos), moves, data->killers[ply][1], KILLER_2);
+  }
+  if (data->params.countermoves) {
+    last = last_move(pos);
+    if (last != NULL_MOVE && last != NULL_MOVE_PRUNING &&
+	data->countermoves[SQUARE64(get_src(last))][SQUARE64(get_dst(last))] != NULL_MOVE)
+      raise_move_score(get_move_stack(pos), moves,
+		       data->countermoves[SQUARE64(get_src(last))][SQUARE64(get_dst(last))],
+		       COUNTER_MOVE);
+  }
+}
+
+/*-------------------------------------------------------.
+ | function: update_killers(position pos, move mov,      |
+ |           search_data data) -> void                   |
+ | effects: the quiet move mov caused a beta cutoff, it  |
+ |          becomes the first killer at this ply and the |
+ |          countermove to the last move.                |
+  -------------------------------------------------------*/
+static void update_killers(position pos, move mov, search_data data){
+  int ply = getPly(pos) - data->root_ply;
+  move last;
+
+  if (is_capture_move(mov) || is_prom_move(mov)) return;
+  if (ply < MAX_KILLER_PLY && data->killers[ply][0] != mov) {
+    data->killers[ply][1] = data->killers[ply][0];
+    data->killers[ply][0] = mov;
+  }
+  last = last_move(pos);
+  if (last != NULL_MOVE && last != NULL_MOVE_PRUNING)
+    data->countermoves[SQUARE64(get_src(last))][SQUARE64(get_dst(last))] = mov;
+}
+
+/*-------------------------------------------------------.
+ | function: search_aborted(search_data data) -> int     |
+ | returns: 1 if the search must unwind, out of time or  |
+ |          stopped by another thread, else 0.           |
+ | note: only checks every OUT_OF_TIME nodes, once it    |
+ |       returns 1 it will always return 1.              |
+  -------------------------------------------------------*/
+static int search_aborted(search_data data){
+  search_limits limits = &data->limits;
+
+  if (data->stopped) return 1;
+  if (limits->nodes && data->nodes >= limits->nodes)
+    data->stopped=1;
+  else if (data->time >= OUT_OF_TIME) {
+    data->time=0;
+    if (data->ctl->stop ||
+	(!data->ctl->pondering && (data->use_time || !data->use_clock) &&
+	 time_hard_over(&data->ctl->time)))
+      data->stopped=1;
+  }
+  return data->stopped;
+}
+
+/*-------------------------------------------------------.
+ | function: score_to_tt(int value, int ply) -> int      |
+ | returns: value with mates counted from the node at    |
+ |          ply instead of the root, for the TT.         |
+  -------------------------------------------------------*/
+static int score_to_tt(int value, int ply){
+  if (value >= MATE_BOUND) return value + ply;
+  if (value <= -MATE_BOUND) return value - ply;
+  return value;
+}
+
+/*-------------------------------------------------------.
+ | function: score_from_tt(int value, int ply) -> int    |
+ | returns: a TT value with mates counted from the root. |
+  -------------------------------------------------------*/
+static int score_from_tt(int value, int ply){
+  if (value >= MATE_BOUND) return value - ply;
+  if (value <= -MATE_BOUND) return value + ply;
+  return value;
+}
+
+/*-------------------------------------------------------.
+ | function: search_moves(position pos,                  |
+ |           search_data data) -> move_list              |
+ | returns: move_generator(pos), timed if data->timing.  |
+  -------------------------------------------------------*/
+static move_list search_moves(position pos, search_data data){
+  move_list moves;
+  long long start;
+
+  if (!data->timing) return move_generator(pos);
+  start = monotonic_ns();
+  moves = move_generator(pos);
+  data->movegen_ns += monotonic_ns() - start;
+  return moves;
+}
+
+/*-------------------------------------------------------.
+ | function: search_eval(position pos,                   |
+ |           search_data data) -> int                    |
+ | returns: eval(pos) with the eval cache and pawn table |
+ |          of data, timed if data->timing.              |
+  -------------------------------------------------------*/
+static int search_eval(position pos, search_data data){
+  int value, found;
+  long long start=0;
+
+  if (data->timing) start = monotonic_ns();
+  value = eval_cached(pos, data->evals, data->pawns, &found);
+  if (data->timing) data->eval_ns += monotonic_ns() - start;
+  if (data->evals != NULL) {
+    data->eval_probes++;
+    if (found == EVAL_FOUND_CACHE) data->eval_hits++;
+  }
+  if (data->pawns != NULL && found != EVAL_FOUND_CACHE) {
+    data->pawn_probes++;
+    if (found == EVAL_FOUND_PAWNS) data->pawn_hits++;
+  }
+  return value;
+}
+
+/*-------------------------------------------------------.
+ | function: search_quiescent(position pos, int alpha,   |
+ |           int beta, int failsoft,                     |
+ |           search_data data) -> int                    |
+ | returns: the quiescence search of a leaf of the full  |
+ |          width search, timed if data->timing. Nested  |
+ |          calls (from a check in the quiescence) are   |
+ |          not timed again.                             |
+  -------------------------------------------------------*/
+static int search_quiescent(position pos, int alpha, int beta, int failsoft,
+			    search_data data){
+  int value;
+  long long start;
+
+  if (!data->timing || data->in_qsearch) {
+    if (failsoft) return quiescent_failsoft(pos, MAX_QDEPTH, alpha, beta, data);
+    return quiescent(pos, MAX_QDEPTH, alpha, beta, data);
+  }
+  data->in_qsearch = 1;
+  start = monotonic_ns();
+  if (failsoft) value = quiescent_failsoft(pos, MAX_QDEPTH, alpha, beta, data);
+  else value = quiescent(pos, MAX_QDEPTH, alpha, beta, data);
+  data->qsearch_ns += monotonic_ns() - start;
+  data->in_qsearch = 0;
+  return value;
+}
+
+/*-------------------------------------------------------.
+ | function: search_tt_probe(position pos,               |
+ |           search_data data, trans_table_entry copy)   |
+ |           -> trans_table_entry                        |
+ | returns: trans_table_search(pos, copy), counted.      |
+  -------------------------------------------------------*/
+static trans_table_entry search_tt_probe(position pos, search_data data, trans_table_entry copy){
+  trans_table_entry entry;
+
+  data->tt_probes++;
+  if ((entry = trans_table_search(data->tt, pos, copy)) != NULL) data->tt_hits++;
+  return entry;
+}
+
+/*-------------------------------------------------------.
+ | function: tb_score(int value, int ply) -> int         |
+ | returns: the search score of the tb_probe value of    |
+ |          the side to move at ply.                     |
+  -------------------------------------------------------*/
+static int tb_score(int value, int ply){
+  if (value == TB_DRAW) return 0;
+  if (TB_IS_WIN(value)) return MATE_IN(ply + TB_PLIES(value));
+  return -MATE_IN(ply + TB_PLIES(value));
+}
+
 /*-------------------------------------------------------.
  | function: quiescent(position pos, int alpha, int beta,|
  |                     search_data data) -> int          |
@@ -21,20 +211,23 @@ int quiescent(position pos, int depth,  int alpha, int beta, search_data data){
   move_list moves;
   move mov;
   int value;
+  int ply = getPly(pos) - data->root_ply;
   pv not_used;
 
   data->nodes++;
   data->q_nodes++;
+  data->time++;
+  if (ply > data->seldepth) data->seldepth = ply;
   if (depth <= 0) 
-    return eval(pos);
+    return search_eval(pos, data);
   if (in_check(pos)) 
     return alphabeta(pos, 1, alpha, beta, &not_used, data);
-  value = eval(pos);
+  value = search_eval(pos, data);
   if (value >= beta) 
     return beta;
   if (value > alpha)
     alpha = value;
-  moves = move_generator(pos);
+  moves = search_moves(pos, data);
   sort_move_scores(get_move_stack(pos),moves);
   mov = pop(get_move_stack(pos),moves);
   if (mov==NULL_MOVE || !is_capture_move(mov)) { /* NO Captures */
@@ -42,11 +235,19 @@ int quiescent(position pos, int depth,  int alpha, int beta, search_data data){
     return alpha;
   }
   while (mov!=NULL_MOVE && is_capture_move(mov)){
+    if (data->params.see && !is_prom_move(mov) && see(pos, mov) < 0) {
+      mov = pop(get_move_stack(pos),moves); /* losing capture */
+      continue;
+    }
     do_move(pos, mov); 
     if (!in_check_illegal(pos))
       value = -quiescent(pos,depth-1, -beta, -alpha, data);
     else value=-INFINITY;
     undo_move(pos, mov);
+    if (search_aborted(data)) {
+      free_move_list(get_move_stack(pos),moves);
+      return INFINITY_PLUS_ONE;
+    }
     if (value >= beta) { 
       free_move_list(get_move_stack(pos),moves);
       return beta;
@@ -105,9 +306,160 @@ int perft(position pos, int depth){
   perft_doit(pos, depth, data);
   if (getToMove(pos)==WHITE) setValue(pos, 0, data->nodes);
   else setValue(pos, 0, data->nodes);
+  free(data);
   return 1;
 }
 
+/*
+  entry of the perft hash, lock is the key xor nodes so
+  an entry half written by another thread doesn't match.
+ */
+typedef struct perft_entry_ {
+  volatile U64 lock;
+  volatile U64 nodes;
+} perft_entry_;
+
+/*-------------------------------------------------------.
+ | function: perft_leaves(position pos, int depth,       |
+ |           perft_entry_ *hash) -> U64                  |
+ | returns: the number of legal move sequences of depth  |
+ |          plies from pos.                              |
+ | note: the moves of the last ply are counted, not      |
+ |       played, and subtrees are kept in hash (if not   |
+ |       NULL).                                          |
+  -------------------------------------------------------*/
+static U64 perft_leaves(position pos, int depth, perft_entry_ *hash){
+  move_list moves;
+  move mov;
+  U64 nodes=0, key=0;
+  perft_entry_ *entry=NULL, copy;
+
+  if (depth <= 0) return 1;
+  if (depth == 1) return count_legal_moves(pos); /* bulk counting */
+  if (hash) {
+    key = getZobristKey(pos) ^ (U64) depth * PERFT_DEPTH_KEY;
+    entry = &hash[key & (PERFT_HASH_SIZE-1)];
+    copy = *entry; /* a copy, other threads may change the entry meanwhile */
+    if ((copy.lock ^ copy.nodes) == key) return copy.nodes;
+  }
+  moves = move_generator(pos);
+  mov = pop(get_move_stack(pos),moves);
+  while (mov!=NULL_MOVE){
+    do_move(pos, mov);
+    if (!in_check_illegal(pos))
+      nodes += perft_leaves(pos, depth-1, hash);
+    undo_move(pos, mov);
+    mov = pop(get_move_stack(pos),moves);
+  }
+  free_move_list(get_move_stack(pos),moves);
+  if (entry) {
+    entry->nodes = nodes;
+    entry->lock = key ^ nodes;
+  }
+  return nodes;
+}
+
+/*
+  the root moves of a perft, shared by its threads.
+ */
+typedef struct perft_shared_ {
+  position pos; /* private copy of the root, per thread */
+  int depth;
+  perft_move_ *moves;
+  int count;
+  volatile int *next; /* next root move to take */
+  pthread_mutex_t *lock;
+  perft_entry_ *hash;
+} perft_shared_;
+
+/*-------------------------------------------------------.
+ | function: perft_worker(void *shared) -> void *        |
+ | note: counts the root moves not taken by another      |
+ |       thread, until there are none left.              |
+  -------------------------------------------------------*/
+static void *perft_worker(void *arg){
+  perft_shared_ *shared = (perft_shared_ *) arg;
+  int i;
+
+  while (1) {
+    pthread_mutex_lock(shared->lock);
+    i = (*shared->next)++;
+    pthread_mutex_unlock(shared->lock);
+    if (i >= shared->count) break;
+    do_move(shared->pos, shared->moves[i].mov);
+    shared->moves[i].nodes = perft_leaves(shared->pos, shared->depth-1, shared->hash);
+    undo_move(shared->pos, shared->moves[i].mov);
+  }
+  return NULL;
+}
+
+/*-------------------------------------------------------.
+ | function: perft_divide(position pos, int depth,       |
+ |           int threads, int use_hash,                  |
+ |           perft_move_ *moves, int *count) -> U64      |
+ | returns: the leaves of the legal move tree of pos to  |
+ |          depth, and in moves the leaves under each of |
+ |          the count legal root moves.                  |
+ | note: threads take the root moves one by one and      |
+ |       share the hash (if use_hash).                   |
+  -------------------------------------------------------*/
+U64 perft_divide(position pos, int depth, int threads, int use_hash,
+		 perft_move_ *moves, int *count){
+  move_list root_moves;
+  move mov;
+  int i, next=0, helper_count=0;
+  U64 nodes=0;
+  perft_shared_ shared[MAX_THREADS];
+  pthread_t helpers[MAX_THREADS];
+  pthread_mutex_t lock;
+
+  *count = 0;
+  if (depth <= 0) return 1;
+  root_moves = move_generator(pos);
+  while ((mov = pop(get_move_stack(pos),root_moves)) != NULL_MOVE) {
+    do_move(pos, mov);
+    if (!in_check_illegal(pos) && *count < MAX_ROOT_MOVES) {
+      moves[*count].mov = mov;
+      moves[(*count)++].nodes = 1;
+    }
+    undo_move(pos, mov);
+  }
+  free_move_list(get_move_stack(pos),root_moves);
+
+  if (threads > MAX_THREADS) threads = MAX_THREADS;
+  if (threads < 1) threads = 1;
+  pthread_mutex_init(&lock, NULL);
+  for (i=0; i < threads; i++) {
+    shared[i].pos = i ? copy_position(pos) : pos;
+    shared[i].depth = depth;
+    shared[i].moves = moves;
+    shared[i].count = *count;
+    shared[i].next = &next;
+    shared[i].lock = &lock;
+    shared[i].hash = NULL;
+  }
+  if (use_hash) {
+    shared[0].hash = (perft_entry_ *) calloc(PERFT_HASH_SIZE, sizeof(perft_entry_));
+    for (i=1; i < threads; i++)
+      shared[i].hash = shared[0].hash;
+  }
+  for (i=1; i < threads; i++) {
+    if (pthread_create(&helpers[i], NULL, perft_worker, &shared[i])) break;
+    helper_count++;
+  }
+  perft_worker(&shared[0]);
+  for (i=1; i <= helper_count; i++)
+    pthread_join(helpers[i], NULL);
+  for (i=1; i < threads; i++)
+    free_position(shared[i].pos);
+  free(shared[0].hash);
+  pthread_mutex_destroy(&lock);
+
+  for (i=0; i < *count; i++)
+    nodes += moves[i].nodes;
+  return nodes;
+}
+
 /*-------------------------------------------------------.
  | function: alphabeta(position pos, int depth, int alpha,| 
  |           int beta, pv *root_pv,  search_data data)    |
@@ -119,106 +471,138 @@ int alphabeta(position pos, int depth, int alpha, int beta, pv *root_pv,  search
   move mov, best_move=NULL_MOVE;
   int value=-INFINITY, flag=TT_ALPHA;
   U64 debug_key;
-#ifdef SEARCH_PVS
   int pv_node=0;
-#endif
-#ifndef SEARCH_NO_HASH
   trans_table_entry tt_entry=NULL;
+  trans_table_entry_ tt_copy; /* tt_entry, the table may change meanwhile */
   int tt_val=0,tt_flag=0;
-#endif
+  int check, static_value=0, futile=0, legal=0, quiet, reduction, tb_value;
+  int ply = getPly(pos) - data->root_ply;
+  search_params params = &data->params;
   pv node_pv; /* following "nodes" pv */
   
   data->nodes++;
   data->time++;
+  if (ply > data->seldepth) data->seldepth = ply;
   node_pv.moves = 0;
   /* check for draw by 3-fold repetition */
   if (rep_search(pos) >= 1) return 0;
 
-#ifndef SEARCH_NO_HASH
+  /* the endgame tables know the whole subtree, pieces() is cheaper than the call */
+  if (params->tablebases && pieces(pos) <= TB_MAX_PIECES && (tb_value = tb_probe(pos)) != TB_NONE)
+    return tb_score(tb_value, ply);
+
   /* Check the Transposition Table first. */
-  if ((tt_entry=trans_table_search(pos)) != NULL) { /* We have searched this position before. */
+  if (data->use_hash && (tt_entry=search_tt_probe(pos, data, &tt_copy)) != NULL) { /* We have searched this position before. */
    
     if ((trans_depth(tt_entry) >= depth) && ((tt_flag=trans_flag(tt_entry)) != TT_UNKNOWN)) {
-      tt_val = trans_value(tt_entry);
-      if (tt_flag == TT_EXACT)
+      tt_val = score_from_tt(trans_value(tt_entry), ply);
+      if (tt_flag == TT_EXACT) {
+	data->tt_cutoffs++;
 	return tt_val;
-      if ((tt_flag == TT_ALPHA) && (tt_val <= alpha)) 
+      }
+      if ((tt_flag == TT_ALPHA) && (tt_val <= alpha)) {
+	data->tt_cutoffs++;
 	return alpha;
-      if ((tt_flag == TT_BETA) && (tt_val >= beta)) 
+      }
+      if ((tt_flag == TT_BETA) && (tt_val >= beta)) {
+	data->tt_cutoffs++;
 	return beta;
+      }
     }
   }
-#endif
  
   if (depth <= 0) {
     root_pv->moves=0;
-    value = quiescent(pos, MAX_QDEPTH, alpha, beta, data);
+    value = search_quiescent(pos, alpha, beta, 0, data);
     return value;
   }
 
+  check = in_check(pos);
+  /* near the leaves, prune on the static value */
+  if (!check && beta < MATE_BOUND && alpha > -MATE_BOUND &&
+      ((params->reverse_futility && depth <= params->reverse_futility_depth) ||
+       (params->futility && depth <= params->futility_depth))) {
+    static_value = search_eval(pos, data);
+    if (params->reverse_futility && depth <= params->reverse_futility_depth &&
+	static_value - params->reverse_futility_margin*depth >= beta)
+      return beta;
+    if (params->futility && depth <= params->futility_depth &&
+	static_value + params->futility_margin*depth <= alpha)
+      futile = 1; /* quiet moves can't raise alpha */
+  }
+
   /* try to cut with a NullMove */
   debug_key = getZobristKey(pos);
 #ifdef SEARCH_NULL_MOVE
   if (((depth>=SEARCH_NULL_MOVE_R+1) && (pieces(pos) >= SEARCH_ENDGAME )&& 
-      !last_move_null(pos)) && (!in_check(pos))) {
+      !last_move_null(pos)) && (!check)) {
     do_move(pos, NULL_MOVE_PRUNING);
     value = -alphabeta(pos, depth-1-SEARCH_NULL_MOVE_R, -beta, -beta+1, &node_pv, data);
     undo_move(pos, NULL_MOVE_PRUNING);
+    if (data->stopped) return INFINITY_PLUS_ONE;
   }
 #endif
   assert(debug_key==getZobristKey(pos));
   if (value >= beta) {
-#ifndef SEARCH_NO_HASH
-    trans_table_insert(pos, depth, NULL_MOVE, beta, TT_BETA); /* save position and move in the TT. */
-#endif
+    data->null_cutoffs++;
+    if (data->use_hash) trans_table_insert(data->tt, pos, depth, NULL_MOVE, score_to_tt(beta, ply), TT_BETA); /* save position and move in the TT. */
     return beta;
   }
 
-  moves = move_generator(pos);
+  moves = search_moves(pos, data);
+  order_moves(pos, moves, data);
+  if (data->params.see) see_order_captures(pos, moves);
   sort_move_scores(get_move_stack(pos),moves);
-#ifndef SEARCH_NO_HASH
   if (tt_entry != NULL && trans_flag(tt_entry) != TT_UNKNOWN && 
       (trans_best_move(tt_entry)!=NULL_MOVE))
-    mov=trans_best_move(tt_entry); /* try the move from the TT first. */
-  else
-#endif
-    mov = pop(get_move_stack(pos),moves);
+    promote_move(get_move_stack(pos), moves, trans_best_move(tt_entry)); /* try the move from the TT first. */
+  mov = pop(get_move_stack(pos),moves);
 
   while (mov!=NULL_MOVE){
     debug_key = getZobristKey(pos);
     do_move(pos, mov); 
     if (!in_check_illegal(pos)){
-#ifdef SEARCH_PVS
-      if (pv_node) {
-	value = -alphabeta(pos, depth-1, -alpha-1, -alpha, &node_pv, data);
-	if ((value>alpha) && (value <beta))
+      legal++;
+      quiet = !check && !is_capture_move(mov) && !is_prom_move(mov) && !in_check(pos);
+      if (futile && quiet && legal > 1) { /* futility pruning */
+	undo_move(pos, mov);
+	mov = pop(get_move_stack(pos),moves);
+	continue;
+      }
+      reduction = 0;
+      if (params->lmr && quiet && depth >= params->lmr_depth && legal > params->lmr_moves) {
+	/* late move reduction, searched again if it raises alpha */
+	reduction = params->lmr_reduction;
+	value = -alphabeta(pos, depth-1-reduction, -alpha-1, -alpha, &node_pv, data);
+	if (value > alpha && !data->stopped) reduction = 0;
+      }
+      if (!reduction) {
+	if (pv_node && data->algorithm == SEARCH_PVS) {
+	  value = -alphabeta(pos, depth-1, -alpha-1, -alpha, &node_pv, data);
+	  if ((value>alpha) && (value <beta))
+	    value = -alphabeta(pos, depth-1, -beta, -alpha, &node_pv, data);
+	}
+	else
 	  value = -alphabeta(pos, depth-1, -beta, -alpha, &node_pv, data);
       }
-      else
-#endif
-      value = -alphabeta(pos, depth-1, -beta, -alpha, &node_pv, data);
     } else value=-INFINITY;
     undo_move(pos, mov);
-    if (data->use_time && data->time >= OUT_OF_TIME) { /* test for out of time */
-      if (out_of_time()) {
-	free_move_list(get_move_stack(pos),moves);
-	return INFINITY_PLUS_ONE;
-      }
-      data->time=0;
+    if (search_aborted(data)) { /* test for out of time */
+      free_move_list(get_move_stack(pos),moves);
+      return INFINITY_PLUS_ONE;
     }
     assert(debug_key==getZobristKey(pos));
     if (value >= beta) {
-#ifndef SEARCH_NO_HASH
-      trans_table_insert(pos, depth, mov, beta, TT_BETA); /* save position and move in the TT. */
-#endif
+      data->cutoffs++;
+      if (legal == 1) data->first_cutoffs++;
+      update_killers(pos, mov, data);
+      if (data->use_hash) trans_table_insert(data->tt, pos, depth, mov, score_to_tt(beta, ply), TT_BETA); /* save position and move in the TT. */
       hist_inc(get_hist_heuristic(pos),mov, depth*depth); /* increase the history for this move */
       free_move_list(get_move_stack(pos),moves);
       return beta;
     }
     if (value > alpha) {
-#ifdef SEARCH_PVS
       pv_node = 1;
-#endif
       flag = TT_EXACT;
       alpha = value;
       best_move = mov;
@@ -229,17 +613,16 @@ int alphabeta(position pos, int depth, int alpha, int beta, pv *root_pv,  search
     mov = pop(get_move_stack(pos),moves);
   }
 
-  if (alpha==-INFINITY && /* NO legal moves */
-      !draw_or_checkmate(pos)) /* Draw or Checkmate? */
-    alpha=0; /* DRAW */
+  if (legal == 0) { /* NO legal moves, Checkmate or Draw? */
+    alpha = draw_or_checkmate(pos) ? -MATE_IN(ply) : 0;
+    flag = TT_EXACT;
+  }
 
   if (best_move != NULL_MOVE) /* if we have a best move ... */
     hist_inc(get_hist_heuristic(pos), best_move, depth*depth); /* increase the history for this move */
 
   /* Now save this position and best_move in the Transposition Table */
-#ifndef SEARCH_NO_HASH
-  trans_table_insert(pos, depth, best_move, alpha, flag); 
-#endif  
+  if (data->use_hash) trans_table_insert(data->tt, pos, depth, best_move, score_to_tt(alpha, ply), flag); 
   free_move_list(get_move_stack(pos),moves);
   return alpha;
 }
@@ -254,43 +637,41 @@ int quiescent_failsoft(position pos, int depth,  int alpha, int beta, search_dat
   move_list moves;
   move mov;
   int value, g=-INFINITY;
+  int ply = getPly(pos) - data->root_ply;
   pv not_used;
-#ifndef SEARCH_NO_HASH
   trans_table_entry tt_entry=NULL;
+  trans_table_entry_ tt_copy; /* tt_entry, the table may change meanwhile */
   int tt_val=0,tt_flag=0;
-#endif
 
   data->nodes++;
   data->q_nodes++;
-#ifndef SEARCH_NO_HASH
+  data->time++;
+  if (ply > data->seldepth) data->seldepth = ply;
   /* Check the Transposition Table first. */
-  if ((tt_entry=trans_table_search(pos)) != NULL) { /* We have searched this position before. */
+  if (data->use_hash && (tt_entry=search_tt_probe(pos, data, &tt_copy)) != NULL) { /* We have searched this position before. */
    
     if ((trans_depth(tt_entry) >= 0) && ((tt_flag=trans_flag(tt_entry)) != TT_UNKNOWN)) {
-      tt_val = trans_value(tt_entry);
-      if (tt_flag == TT_EXACT)
-	return tt_val;
-      if ((tt_flag == TT_ALPHA) && (tt_val <= alpha)) {
-	return tt_val;
-      }
-      if ((tt_flag == TT_BETA) && (tt_val >= beta)) {
+      tt_val = score_from_tt(trans_value(tt_entry), ply);
+      if (tt_flag == TT_EXACT ||
+	  ((tt_flag == TT_ALPHA) && (tt_val <= alpha)) ||
+	  ((tt_flag == TT_BETA) && (tt_val >= beta))) {
+	data->tt_cutoffs++;
 	return tt_val;
       }
     }
   }
-#endif
 
   if (depth <= 0) 
-    return eval(pos);
+    return search_eval(pos, data);
   if (in_check(pos)) 
     return alphabeta_failsoft(pos, 1, alpha, beta, &not_used, data);
-  value = eval(pos);
+  value = search_eval(pos, data);
 
   if (value >= beta) 
     return value; /* fail-soft */
   if (value > alpha)
     alpha = value;
-  moves = move_generator(pos);
+  moves = search_moves(pos, data);
   sort_move_scores(get_move_stack(pos),moves);
   mov = pop(get_move_stack(pos),moves);
   if (value > g) g=value;
@@ -300,15 +681,21 @@ int quiescent_failsoft(position pos, int depth,  int alpha, int beta, search_dat
   }
   if (value>g) g=value;
   while (mov!=NULL_MOVE && is_capture_move(mov)){
+    if (data->params.see && !is_prom_move(mov) && see(pos, mov) < 0) {
+      mov = pop(get_move_stack(pos),moves); /* losing capture */
+      continue;
+    }
     do_move(pos, mov); 
     if (!in_check_illegal(pos))
       value = -quiescent_failsoft(pos,depth-1, -beta, -alpha, data);
     else value=-INFINITY;
     undo_move(pos, mov);
+    if (search_aborted(data)) {
+      free_move_list(get_move_stack(pos),moves);
+      return INFINITY_PLUS_ONE;
+    }
     if (value >= beta) { 
-#ifndef SEARCH_NO_HASH
-      trans_table_insert(pos, 0, mov, value, TT_BETA);
-#endif 
+      if (data->use_hash) trans_table_insert(data->tt, pos, 0, mov, score_to_tt(value, ply), TT_BETA);
       free_move_list(get_move_stack(pos),moves);
       return value; /* fail-soft */
     }
@@ -316,10 +703,10 @@ int quiescent_failsoft(position pos, int depth,  int alpha, int beta, search_dat
     if (value > alpha) alpha = value;
     mov = pop(get_move_stack(pos),moves);
   }
-#ifndef SEARCH_NO_HASH
-  if (g<=alpha) trans_table_insert(pos, 0, NULL_MOVE, g, TT_ALPHA); 
-  if (g>alpha && g<beta) trans_table_insert(pos, 0, NULL_MOVE, g, TT_EXACT); 
-#endif  
+  if (data->use_hash) {
+    if (g<=alpha) trans_table_insert(data->tt, pos, 0, NULL_MOVE, score_to_tt(g, ply), TT_ALPHA); 
+    if (g>alpha && g<beta) trans_table_insert(data->tt, pos, 0, NULL_MOVE, score_to_tt(g, ply), TT_EXACT); 
+  }
   free_move_list(get_move_stack(pos),moves);
   return g; /* fail-soft */
 }
@@ -334,53 +721,50 @@ int quiescent_failsoft(position pos, int depth,  int alpha, int beta, search_dat
 int alphabeta_failsoft(position pos, int depth, int alpha, int beta, pv *root_pv,  search_data data){
   move_list moves;
   move mov, best_move=NULL_MOVE;
-  int value=0, flag=TT_ALPHA, g=-INFINITY;
-#ifndef SEARCH_NO_HASH
+  int value=0, flag=TT_ALPHA, g=-INFINITY, tb_value;
+  int ply = getPly(pos) - data->root_ply;
   trans_table_entry tt_entry=NULL;
+  trans_table_entry_ tt_copy; /* tt_entry, the table may change meanwhile */
   int tt_val=0,tt_flag=0;
-#endif
   pv node_pv; /* following "nodes" pv */
   
   data->nodes++;
   data->time++;
+  if (ply > data->seldepth) data->seldepth = ply;
   node_pv.moves = 0;
 
   /* check for draw by 3-fold repetition */
   if (rep_search(pos) >= 2) return 0;
 
-#ifndef SEARCH_NO_HASH
+  if (data->params.tablebases && pieces(pos) <= TB_MAX_PIECES && (tb_value = tb_probe(pos)) != TB_NONE)
+    return tb_score(tb_value, ply);
+
   /* Check the Transposition Table first. */
-  if ((tt_entry=trans_table_search(pos)) != NULL) { /* We have searched this position before. */
+  if (data->use_hash && (tt_entry=search_tt_probe(pos, data, &tt_copy)) != NULL) { /* We have searched this position before. */
    
     if ((trans_depth(tt_entry) >= depth) && ((tt_flag=trans_flag(tt_entry)) != TT_UNKNOWN)) {
-      tt_val = trans_value(tt_entry);
-      if (tt_flag == TT_EXACT)
-	return tt_val;
-      if ((tt_flag == TT_ALPHA) && (tt_val <= alpha)) {
-	return tt_val;
-      }
-      if ((tt_flag == TT_BETA) && (tt_val >= beta)) {
+      tt_val = score_from_tt(trans_value(tt_entry), ply);
+      if (tt_flag == TT_EXACT ||
+	  ((tt_flag == TT_ALPHA) && (tt_val <= alpha)) ||
+	  ((tt_flag == TT_BETA) && (tt_val >= beta))) {
+	data->tt_cutoffs++;
 	return tt_val;
       }
     }
   }
-#endif
 
   if (depth <= 0) {
     root_pv->moves=0;
-    value = quiescent_failsoft(pos, MAX_QDEPTH, alpha, beta, data);
+    value = search_quiescent(pos, alpha, beta, 1, data);
     return value;
   }
   
-  moves = move_generator(pos);
+  moves = search_moves(pos, data);
   sort_move_scores(get_move_stack(pos),moves);
-#ifndef SEARCH_NO_HASH
   if (tt_entry != NULL && trans_flag(tt_entry) != TT_UNKNOWN && 
       (trans_best_move(tt_entry)!=NULL_MOVE))
-    mov=trans_best_move(tt_entry); /* try the move from the TT first. */
-  else
-#endif
-    mov = pop(get_move_stack(pos),moves);
+    promote_move(get_move_stack(pos), moves, trans_best_move(tt_entry)); /* try the move from the TT first. */
+  mov = pop(get_move_stack(pos),moves);
 
   while (mov!=NULL_MOVE){
     do_move(pos, mov); 
@@ -388,18 +772,13 @@ int alphabeta_failsoft(position pos, int depth, int alpha, int beta, pv *root_pv
       value = -alphabeta_failsoft(pos, depth-1, -beta, -alpha, &node_pv, data);
     } else value=-INFINITY;
     undo_move(pos, mov);
-    if (data->use_time && data->time >= OUT_OF_TIME) { /* test for out of time */
-      if (out_of_time()) {
-	free_move_list(get_move_stack(pos),moves);
-	return INFINITY_PLUS_ONE;
-      }
-      data->time=0;
+    if (search_aborted(data)) { /* test for out of time */
+      free_move_list(get_move_stack(pos),moves);
+      return INFINITY_PLUS_ONE;
     }
     if (value > g) g=value;
     if (value >= beta) {
-#ifndef SEARCH_NO_HASH
-      trans_table_insert(pos, depth, mov, value, TT_BETA);
-#endif
+      if (data->use_hash) trans_table_insert(data->tt, pos, depth, mov, score_to_tt(value, ply), TT_BETA);
       hist_inc(get_hist_heuristic(pos), mov, depth*depth); /* increase the history for this move */
       free_move_list(get_move_stack(pos),moves);
       return value; 
@@ -412,18 +791,17 @@ int alphabeta_failsoft(position pos, int depth, int alpha, int beta, pv *root_pv
     mov = pop(get_move_stack(pos),moves);
   }
   
-  if (g==-INFINITY && /* NO legal moves */
-      !draw_or_checkmate(pos)) /* Draw or Checkmate? */
-    g=0; /* DRAW */
+  if (g==-INFINITY) /* NO legal moves, Checkmate or Draw? */
+    g = draw_or_checkmate(pos) ? -MATE_IN(ply) : 0;
 
   if (best_move != NULL_MOVE) /* if we have a best move ... */
     hist_inc(get_hist_heuristic(pos), best_move, depth*depth); /* increase the history for this move */
 
   /* Now save this position and best_move in the Transposition Table */
-#ifndef SEARCH_NO_HASH
-  if (g<=alpha) trans_table_insert(pos, depth, best_move, g, TT_ALPHA); 
-  if (g>alpha && g<beta) trans_table_insert(pos, depth, best_move, g, TT_EXACT); 
-#endif  
+  if (data->use_hash) {
+    if (g<=alpha) trans_table_insert(data->tt, pos, depth, best_move, score_to_tt(g, ply), TT_ALPHA); 
+    if (g>alpha && g<beta) trans_table_insert(data->tt, pos, depth, best_move, score_to_tt(g, ply), TT_EXACT); 
+  }
   free_move_list(get_move_stack(pos),moves);
   return g;
 }
@@ -435,87 +813,72 @@ int alphabeta_failsoft(position pos, int depth, int alpha, int beta, pv *root_pv
   -------------------------------------------------------*/
 int mtdf(position pos, int f, int depth, search_data data) {
   int lowerbound=-INFINITY, upperbound=INFINITY, beta, g;
-  int l=0;
   pv not_used;
 
   g = f;
-  printf("guess=%i\n", f);
   do {
     if (g==lowerbound) beta=g+1;
     else beta=g;
     g=alphabeta_failsoft(pos, depth, beta-1, beta, &not_used, data);
-    printf("%i,", g);
-    if (data->use_time && data->time >= OUT_OF_TIME) {  /* test for out of time */
-      if (out_of_time()) {
-	printf("\n");
-	return INFINITY_PLUS_ONE;
-      }
-      data->time=0;
-    }
+    if (search_aborted(data))  /* test for out of time */
+      return INFINITY_PLUS_ONE;
     if (g < beta) upperbound=g;
     else lowerbound=g;
-    l++;
   } while (lowerbound < upperbound);
-  printf("Mtdf runs: %i\n", l);
   return g;
 }
 
 
 /*-------------------------------------------------------.
- | function: bestMove_(position pos, int depth) -> move  |
- | returns: the "best" move in position pos.             |
+ | function: bestMove_(position pos, int depth,          |
+ |           int alpha, int beta, pv *root_pv,           |
+ |           search_data data) -> move                   |
+ | returns: the "best" move in position pos, the value   |
+ |          is set in pos. If the value is outside       |
+ |          alpha..beta the window must be opened.       |
  | note: if there is a forced mate in position pos,      |
  |       the last legal move is returned, if the position|
  |       already is ended (stalmate, checkmate) 0 is     |
  |       returned.                                       |
   -------------------------------------------------------*/
-move bestMove_(position pos, int depth, pv *root_pv, search_data data){
+move bestMove_(position pos, int depth, int alpha, int beta, pv *root_pv, search_data data){
   move_list moves;
   move mov, badmove=NULL_MOVE, bestmove=NULL_MOVE;
-  int value=0, alpha=-INFINITY, beta=INFINITY;
+  int value=0;
   U64 debug_key;
-#ifndef SEARCH_NO_HASH
-  // trans_table_entry tt_entry;
-#endif
   int flag=TT_UNKNOWN;
   pv node_pv;
   
   node_pv.moves = 0;
-  data->nodes=0;
-  data->q_nodes=0;
-
-#ifndef SEARCH_NO_HASH
-  /* check transposition table */
-  // if ((tt_entry=trans_table_search(pos)) != NULL) { /* We have searched this position before. */
-  //  if ((trans_depth(tt_entry) >= depth) && (trans_flag(tt_entry) == TT_EXACT) && 
-  //	(trans_best_move(tt_entry))!=NULL_MOVE) {
-  //    return trans_best_move(tt_entry);
-  //  }
-  // }
-#endif
-  moves = move_generator(pos);
+  moves = search_moves(pos, data);
   sort_move_scores(get_move_stack(pos),moves);
   mov = pop(get_move_stack(pos),moves);
   while (mov!=NULL_MOVE){
     debug_key = getZobristKey(pos);
     do_move(pos, mov); 
     if (!in_check_illegal(pos)){
-      value = -alphabeta(pos, depth-1, -INFINITY, -alpha, &node_pv, data);
+      if (bestmove != NULL_MOVE && data->algorithm == SEARCH_PVS) {
+	value = -alphabeta(pos, depth-1, -alpha-1, -alpha, &node_pv, data);
+	if ((value>alpha) && (value <beta))
+	  value = -alphabeta(pos, depth-1, -beta, -alpha, &node_pv, data);
+      }
+      else
+	value = -alphabeta(pos, depth-1, -beta, -alpha, &node_pv, data);
       if (value!=INFINITY_PLUS_ONE) badmove=mov;
     } else value=-INFINITY;
     undo_move(pos, mov);
-    if (data->use_time && data->time >= OUT_OF_TIME) { /* test for out of time */
-      if (out_of_time()) {
-	free_move_list(get_move_stack(pos),moves);
-	return NULL_MOVE;
-      }
-      data->time=0;
+    if (search_aborted(data)) { /* test for out of time */
+      free_move_list(get_move_stack(pos),moves);
+      return bestmove; /* NULL_MOVE, or the best move of this iteration so far */
     }
     assert(debug_key==getZobristKey(pos));
-    if (value >= beta) { /* meaning value >= INFINITY : forced mate */
-      //trans_table_insert(pos, depth, mov, beta, TT_BETA);
+    if (value >= beta) { /* above the aspiration window */
       hist_inc(get_hist_heuristic(pos), mov, depth*depth); /* increase the history for this move*/
       free_move_list(get_move_stack(pos),moves);
+      if (getToMove(pos)==WHITE) setValue(pos, beta, data->nodes);
+      else setValue(pos, -beta, data->nodes);
+      root_pv->pv[0]=mov;
+      root_pv->moves=1;
       return mov;
     }
     if (value > alpha) {
@@ -531,7 +894,7 @@ move bestMove_(position pos, int depth, pv *root_pv, search_data data){
 
   if (bestmove!=NULL_MOVE) /* if we have a best move ... */
     hist_inc(get_hist_heuristic(pos), bestmove, depth*depth); /* increase the history for this move */
-  if (bestmove!=NULL_MOVE) trans_table_insert(pos, depth, bestmove, alpha, flag);
+  if (bestmove!=NULL_MOVE && data->use_hash) trans_table_insert(data->tt, pos, depth, bestmove, alpha, flag);
 
   free_move_list(get_move_stack(pos),moves);
 
@@ -572,27 +935,23 @@ move bestMove_mtdf(position pos, int depth, pv *root_pv, search_data data){
   move mov, badmove=NULL_MOVE, bestmove=NULL_MOVE;
   int value=0, f=-INFINITY, guess=0;
   pv node_pv;
-#ifndef SEARCH_NO_HASH
   trans_table_entry tt_entry=NULL;
+  trans_table_entry_ tt_copy; /* tt_entry, the table may change meanwhile */
   int tt_val=0,tt_flag=0;
-#endif
   
   node_pv.moves = 0;
-  data->nodes=0;
-  data->q_nodes=0;
 
   if (getToMove(pos)==WHITE) guess=getValue(pos);
   else guess=-getValue(pos);
 
-  moves = move_generator(pos);
+  moves = search_moves(pos, data);
   sort_move_scores(get_move_stack(pos),moves);
   mov = pop(get_move_stack(pos),moves);
   while (mov!=NULL_MOVE){
     do_move(pos, mov); 
     if (!in_check_illegal(pos)){
-#ifndef SEARCH_NO_HASH
   /* Get a good guess */
-  if ((tt_entry=trans_table_search(pos)) != NULL) { /* We have searched this position before. */
+  if (data->use_hash && (tt_entry=search_tt_probe(pos, data, &tt_copy)) != NULL) { /* We have searched this position before. */
    
     if (((tt_flag=trans_flag(tt_entry)) != TT_UNKNOWN)) {
       tt_val = trans_value(tt_entry);
@@ -600,17 +959,13 @@ move bestMove_mtdf(position pos, int depth, pv *root_pv, search_data data){
 	guess = tt_val;
     }
   }    
-#endif
       value = -mtdf(pos, guess, depth-1, data);
       if (value!=INFINITY_PLUS_ONE) badmove=mov;
     } else value=-INFINITY;
     undo_move(pos, mov);
-    if (data->use_time && data->time >= OUT_OF_TIME) { /* test for out of time */
-      if (out_of_time()) {
-	free_move_list(get_move_stack(pos),moves);
-	return NULL_MOVE;
-      }
-      data->time=0;
+    if (search_aborted(data)) { /* test for out of time */
+      free_move_list(get_move_stack(pos),moves);
+      return NULL_MOVE;
     }
     if (value >= INFINITY) { /* meaning value >= INFINITY : forced mate */
       hist_inc(get_hist_heuristic(pos), mov, depth*depth); /* increase the history for this move*/
@@ -634,6 +989,69 @@ move bestMove_mtdf(position pos, int depth, pv *root_pv, search_data data){
   if (bestmove==NULL_MOVE) return badmove; /* forced checkmate */
   return bestmove;
 }
+/*-------------------------------------------------------.
+ | function: search_root(position pos, int depth,        |
+ |           pv *root_pv, search_data data) -> move      |
+ | returns: the best move in pos searching to depth,     |
+ |          using data->algorithm.                       |
+ | note: PVS searches a window around the value of the   |
+ |       last iteration first, and opens it if the value |
+ |       falls outside.                                  |
+  -------------------------------------------------------*/
+static move search_root(position pos, int depth, pv *root_pv, search_data data){
+  int last, value;
+  move mov;
+
+  switch (data->algorithm) {
+  case SEARCH_MTDF:
+    return bestMove_mtdf(pos, depth, root_pv, data);
+  case SEARCH_PVS:
+    if (depth > 1) {
+      last = getToMove(pos)==WHITE ? getValue(pos) : -getValue(pos);
+      mov = bestMove_(pos, depth, last-ASPIRATION_WINDOW, last+ASPIRATION_WINDOW, root_pv, data);
+      if (data->stopped) return mov;
+      value = getToMove(pos)==WHITE ? getValue(pos) : -getValue(pos);
+      if (value > last-ASPIRATION_WINDOW && value < last+ASPIRATION_WINDOW)
+	return mov;
+      root_pv->moves=0;
+    }
+    return bestMove_(pos, depth, -INFINITY, INFINITY, root_pv, data);
+  default:
+    return bestMove_(pos, depth, -INFINITY, INFINITY, root_pv, data);
+  }
+}
+
+/*
+  struct for a helper thread in the parallel search,
+  each helper searches its own copy of the position and
+  shares the transposition table with the other threads.
+ */
+typedef struct smp_helper_ {
+  pthread_t thread;
+  position pos; /* private copy of the root position */
+  search_data_ data;
+  int first_depth; /* helpers don't all start at the same depth */
+  int max_depth;
+} smp_helper_;
+
+/*-------------------------------------------------------.
+ | function: smp_helper_search(void *helper) -> void *   |
+ | note: iterative deepening for a helper thread, runs   |
+ |       until max_depth or until the main thread stops. |
+  -------------------------------------------------------*/
+static void *smp_helper_search(void *arg){
+  smp_helper_ *helper = (smp_helper_ *) arg;
+  int depth;
+  pv root_pv;
+
+  for (depth=helper->first_depth; depth<=helper->max_depth; depth++) {
+    root_pv.moves=0;
+    search_root(helper->pos, depth, &root_pv, &helper->data);
+    if (helper->data.stopped) break;
+  }
+  return NULL;
+}
+
 /*-------------------------------------------------------.
  | function:  bestMove(position pos, int max_depth,      |
  |                     int time_ply) -> move             |
@@ -642,66 +1060,619 @@ move bestMove_mtdf(position pos, int depth, pv *root_pv, search_data data){
  |          at least to time_ply.                        |
   -------------------------------------------------------*/
 move bestMove(position pos, int max_depth, int time_ply){
-  int depth, ms, seconds, timecenti, i;
-  move best_move=NULL_MOVE, book, mov=NULL_MOVE;
-  float time=0, nps=0, value=0;
-  search_data data;
-  pv root_pv;
-  struct timeb before, after;
+  return bestMove_threads(pos, max_depth, time_ply, 1);
+}
 
-  memset(root_pv.pv, 0, sizeof(move) * MAX_PV);
-  data = (search_data) malloc(sizeof(search_data_));
+/*-------------------------------------------------------.
+ | function:  bestMove_threads(position pos,             |
+ |            int max_depth, int time_ply, int threads)  |
+ |                                        -> move        |
+ | returns: same as bestMove, but threads-1 helpers      |
+ |          search copies of pos at the same time and    |
+ |          fill the shared transposition table (lazy    |
+ |          smp). Only this thread decides the move.     |
+  -------------------------------------------------------*/
+move bestMove_threads(position pos, int max_depth, int time_ply, int threads){
+  search_control_ ctl;
+  search_limits_ limits;
+
+  memset(&ctl, 0, sizeof(search_control_));
+  init_search_limits(&limits, max_depth, time_ply);
+  return bestMove_control(pos, &limits, threads, &ctl);
+}
+
+/*-------------------------------------------------------.
+ | function: init_search_limits(search_limits limits,    |
+ |           int max_depth, int min_depth) -> void       |
+ | effects: limits searches from min_depth to max_depth  |
+ |          on the game clock, as bestMove.              |
+  -------------------------------------------------------*/
+void init_search_limits(search_limits limits, int max_depth, int min_depth){
+  memset(limits, 0, sizeof(search_limits_));
+  limits->max_depth = max_depth;
+  limits->min_depth = min_depth;
+}
+
+/*-------------------------------------------------------.
+ | function: init_search(position pos,                   |
+ |           search_limits limits, search_data data,     |
+ |           search_control ctl) -> void                 |
+ | effects: data and ctl ready for a search of pos with  |
+ |          limits that starts now, with the table,      |
+ |          clock and settings of the engine of ctl. The |
+ |          table is entered (see trans_table_enter) and |
+ |          must be left when the search returns.        |
+  -------------------------------------------------------*/
+static void init_search(position pos, search_limits limits, search_data data,
+			search_control ctl){
+  engine eng = ctl->eng ? ctl->eng : default_engine();
+
+  data->limits=*limits;
+  if (data->limits.max_depth > MAX_PLY || data->limits.max_depth <= 0)
+    data->limits.max_depth = MAX_PLY; /* 0 is no limit */
+  if (limits->movetime && (!limits->hard_time || limits->movetime < limits->hard_time))
+    data->limits.hard_time = limits->movetime;
+  data->use_clock = !limits->nodes && !limits->movetime && !limits->soft_time &&
+    !limits->hard_time && !limits->mate;
   data->nodes=0;
   data->q_nodes=0;
   data->use_time=0;
   data->time=0;
+  data->stopped=0;
+  data->algorithm=eng->algorithm;
+  data->use_hash=eng->use_hash;
+  data->tt=eng->tt;
+  trans_table_enter(data->tt); /* left when the search returns */
+  data->pawns=eng->pawns->entries ? eng->pawns : NULL;
+  data->evals=eng->evals->entries ? eng->evals : NULL;
+  data->params=eng->params;
+  data->root_ply=getPly(pos);
+  data->cutoffs=0;
+  data->first_cutoffs=0;
+  data->tt_probes=0;
+  data->tt_hits=0;
+  data->tt_cutoffs=0;
+  data->null_cutoffs=0;
+  data->pawn_probes=0;
+  data->pawn_hits=0;
+  data->eval_probes=0;
+  data->eval_hits=0;
+  data->seldepth=0;
+  data->timing=eng->timing;
+  data->in_qsearch=0;
+  data->movegen_ns=0;
+  data->eval_ns=0;
+  data->qsearch_ns=0;
+  memset(data->killers, 0, sizeof(data->killers));
+  memset(data->countermoves, 0, sizeof(data->countermoves));
+  data->ctl=ctl;
+  pthread_mutex_lock(&ponder_lock);
+  time_start(&ctl->time, data->limits.soft_time, data->limits.hard_time);
+  if (data->use_clock) {
+    if (ctl->pondering) ctl->time.clock = 1; /* the deadlines are set by ponder_hit */
+    else {
+      if (ctl->early_hit) clock_allocate(eng->clock, ctl->time.start);
+      clock_deadlines(eng->clock, &ctl->time);
+    }
+  }
+  ctl->early_hit = 0;
+  pthread_mutex_unlock(&ponder_lock);
+  ctl->best_move=NULL_MOVE;
+  ctl->ponder_move=NULL_MOVE;
+  ctl->cutoffs=0;
+  ctl->first_cutoffs=0;
+  ctl->q_nodes=0;
+  memset(&ctl->stats, 0, sizeof(search_stats_));
+  ctl->done=0;
+}
+
+/*-------------------------------------------------------.
+ | function: update_stats(search_data data, int depth)   |
+ | effects: the stats of the control of data are the     |
+ |          counters of data, after iteration depth or   |
+ |          at the end of the search if depth is 0.      |
+  -------------------------------------------------------*/
+static void update_stats(search_data data, int depth){
+  search_stats stats = &data->ctl->stats;
+
+  if (depth > 0) {
+    stats->depth = depth;
+    stats->iteration_nodes[depth] = data->nodes;
+  }
+  stats->seldepth = data->seldepth;
+  stats->time = time_elapsed(&data->ctl->time);
+  stats->nodes = data->nodes;
+  stats->q_nodes = data->q_nodes;
+  stats->tt_probes = data->tt_probes;
+  stats->tt_hits = data->tt_hits;
+  stats->tt_cutoffs = data->tt_cutoffs;
+  stats->null_cutoffs = data->null_cutoffs;
+  stats->cutoffs = data->cutoffs;
+  stats->first_cutoffs = data->first_cutoffs;
+  if (data->use_hash) stats->hashfull = trans_table_hashfull(data->tt);
+  stats->pawn_probes = data->pawn_probes;
+  stats->pawn_hits = data->pawn_hits;
+  stats->eval_probes = data->eval_probes;
+  stats->eval_hits = data->eval_hits;
+  stats->movegen_ns = data->movegen_ns;
+  stats->eval_ns = data->eval_ns;
+  stats->qsearch_ns = data->qsearch_ns;
+}
+
+/*-------------------------------------------------------.
+ | function: last_iteration(position pos, int depth,     |
+ |           search_data data) -> int                    |
+ | returns: 1 if no iteration should follow depth, the   |
+ |          value of pos is the score of that iteration. |
+  -------------------------------------------------------*/
+static int last_iteration(position pos, int depth, search_data data){
+  search_limits limits = &data->limits;
+  int score = getToMove(pos)==WHITE ? getValue(pos) : -getValue(pos);
+
+  if (limits->mate && score >= MATE_IN(2*limits->mate - 1)) return 1;
+  if (depth <= limits->min_depth || data->ctl->pondering) return 0;
+  return time_soft_over(&data->ctl->time);
+}
+
+/*-------------------------------------------------------.
+ | function: first_legal_move(position pos) -> move      |
+ | returns: a legal move in pos, or NULL_MOVE.           |
+  -------------------------------------------------------*/
+static move first_legal_move(position pos){
+  move_list moves;
+  move mov;
+  int illegal;
+
+  moves = move_generator(pos);
+  while ((mov = pop(get_move_stack(pos),moves)) != NULL_MOVE) {
+    do_move(pos, mov);
+    illegal = in_check_illegal(pos);
+    undo_move(pos, mov);
+    if (!illegal) break;
+  }
+  free_move_list(get_move_stack(pos),moves);
+  return mov;
+}
+
+/*-------------------------------------------------------.
+ | function: seed_search(position pos,                   |
+ |           search_data data, pv *line) -> int          |
+ | returns: the first depth of the iterative deepening   |
+ |          of pos. If pos is on the pv kept by the last |
+ |          search of the table, one more than the depth |
+ |          that search reached in pos: the iterations   |
+ |          it already did are skipped, an interrupted   |
+ |          search goes on where it stopped. Else 1.     |
+ | effects: if seeded, line is the rest of the kept pv   |
+ |          from pos, its first move is tried first and  |
+ |          the value of pos is its score. Else line is  |
+ |          empty.                                       |
+  -------------------------------------------------------*/
+static int seed_search(position pos, search_data data, pv *line){
+  trans_table tt = data->tt;
+  U64 key = getZobristKey(pos);
+  int i, depth=0, value=0;
+
+  line->moves = 0;
+  if (!data->use_hash) return 1;
+  pthread_mutex_lock(&seed_lock);
+  for (i=0; i < tt->seed_moves && tt->seed_keys[i] != key; i++);
+  if (i < tt->seed_moves) {
+    depth = tt->seed_depth - i + 1;
+    value = (i & 1) ? -tt->seed_value : tt->seed_value;
+    line->moves = tt->seed_moves - i;
+    memcpy(line->pv, tt->seed_pv + i, sizeof(move) * line->moves);
+  }
+  pthread_mutex_unlock(&seed_lock);
+  if (depth > data->limits.max_depth) depth = data->limits.max_depth;
+  if (depth < 2 || legal_opponent_move(pos, line->pv[0]) != line->pv[0]) {
+    line->moves = 0;
+    return 1;
+  }
+  setValue(pos, getToMove(pos)==WHITE ? value : -value, 0);
+  hist_inc(get_hist_heuristic(pos), line->pv[0], depth*depth);
+  return depth;
+}
+
+/*-------------------------------------------------------.
+ | function: save_seed(position pos, int depth,          |
+ |           int score, pv *line, search_data data)      |
+ |           -> void                                     |
+ | effects: the table of data keeps line, the pv of the  |
+ |          last complete iteration (depth, with score   |
+ |          for the side to move) in pos, for the next   |
+ |          search. pos is the same after the call.      |
+  -------------------------------------------------------*/
+static void save_seed(position pos, int depth, int score, pv *line, search_data data){
+  trans_table tt = data->tt;
+  U64 keys[TT_SEED_PLIES+1];
+  int i, moves = line->moves < TT_SEED_PLIES ? line->moves : TT_SEED_PLIES;
+
+  keys[0] = getZobristKey(pos);
+  for (i=0; i < moves; i++) {
+    do_move(pos, line->pv[i]);
+    keys[i+1] = getZobristKey(pos);
+  }
+  for (i=moves-1; i >= 0; i--) undo_move(pos, line->pv[i]);
+  pthread_mutex_lock(&seed_lock);
+  memcpy(tt->seed_keys, keys, sizeof(U64) * (moves+1));
+  memcpy(tt->seed_pv, line->pv, sizeof(move) * moves);
+  tt->seed_moves = moves;
+  tt->seed_depth = depth;
+  tt->seed_value = score;
+  pthread_mutex_unlock(&seed_lock);
+}
+
+/*-------------------------------------------------------.
+ | function:  bestMove_control(position pos,             |
+ |            search_limits limits, int threads,         |
+ |            search_control ctl) -> move                |
+ | returns: the best move in pos within limits, threads  |
+ |          as bestMove_threads. The search can be       |
+ |          stopped from another thread with stop_search |
+ |          and the best move so far is kept in ctl.     |
+ | note: a search stopped during the first iteration     |
+ |       still returns a legal move, if there is one.    |
+ |       The table is kept from move to move, a search   |
+ |       in a position of the pv of the last one starts  |
+ |       deeper (see seed_search).                       |
+  -------------------------------------------------------*/
+move bestMove_control(position pos, search_limits limits, int threads, search_control ctl){
+  int depth, first_depth, done_depth=0, score=0, i, helper_count=0, tb_value;
+  move best_move=NULL_MOVE, book, mov=NULL_MOVE;
+  search_data_ main_data;
+  search_data data = &main_data;
+  smp_helper_ *helpers = NULL;
+  pv root_pv, best_pv;
+  search_info_ info;
+
+  memset(root_pv.pv, 0, sizeof(move) * MAX_PV);
+  best_pv.moves = 0;
+  init_search(pos, limits, data, ctl);
 
   /* check if pos still is book */
   if (!getOutOfBook(pos)){
-    if ((book=opening_move(pos))!=NULL_MOVE) 
+    if ((book=opening_move(pos))!=NULL_MOVE) {
+      ctl->best_move=book;
+      trans_table_leave(data->tt);
+      ctl->done=1;
       return book;
+    }
   }
 
+  /* a won or lost position in the endgame tables needs no search */
+  if (data->params.tablebases && (mov = tb_root_move(pos, &tb_value)) != NULL_MOVE &&
+      tb_value != TB_DRAW) {
+    if (getToMove(pos)==WHITE) setValue(pos, tb_score(tb_value, 0), 0);
+    else setValue(pos, -tb_score(tb_value, 0), 0);
+    ctl->best_move = mov;
+    trans_table_leave(data->tt);
+    ctl->done = 1;
+    return mov;
+  }
+  mov = NULL_MOVE;
+
   /* Iterative Deepening */
   initHistory(get_hist_heuristic(pos));
+  if (data->use_hash) {
+    trans_table_new_search(data->tt);
+    set_prefetch(pos, data->tt->buckets, data->tt->mask); /* also for the helpers */
+  }
+  first_depth = seed_search(pos, data, &best_pv);
+  ctl->stats.first_depth = first_depth;
+  if (best_pv.moves > 0) { /* kept if the search is stopped at once */
+    mov = best_pv.pv[0];
+    done_depth = first_depth-1;
+    score = getToMove(pos)==WHITE ? getValue(pos) : -getValue(pos);
+  }
+  ctl->best_move = mov;
+  ctl->ponder_move = best_pv.moves > 1 ? best_pv.pv[1] : NULL_MOVE;
+
+  /* start the helpers */
+  if (threads > MAX_THREADS) threads = MAX_THREADS;
+  if (threads > 1)
+    helpers = (smp_helper_ *) malloc(sizeof(smp_helper_) * (threads-1));
+  for (i=0; helpers && i < threads-1; i++) {
+    helpers[i].pos = copy_position(pos);
+    helpers[i].data = main_data;
+    helpers[i].first_depth = first_depth + ((i+1) & 1);
+    helpers[i].max_depth = data->limits.max_depth;
+    if (pthread_create(&helpers[i].thread, NULL, smp_helper_search, &helpers[i])) {
+      free_position(helpers[i].pos);
+      break;
+    }
+    helper_count++;
+  }
 
-  for (depth=1; depth<=max_depth; depth++) {
+  for (depth=first_depth; depth<=data->limits.max_depth; depth++) {
     root_pv.moves=0;
-    ftime(&before);
-    if (depth<=time_ply)  {
+    if (depth<=data->limits.min_depth)  {
       data->use_time=0; /* don't use out of time */
-#ifndef SEARCH_MTDF
-      best_move = bestMove_(pos, depth, &root_pv, data);
-#endif
-#ifdef SEARCH_MTDF
-      best_move =  bestMove_mtdf(pos, depth, &root_pv, data);
-#endif
+      best_move = search_root(pos, depth, &root_pv, data);
       data->use_time=1;
     }
     else {
-#ifndef SEARCH_MTDF
-      best_move = bestMove_(pos, depth, &root_pv, data);
-#endif
-#ifdef SEARCH_MTDF
-      best_move =  bestMove_mtdf(pos, depth, &root_pv, data);
-#endif
+      best_move = search_root(pos, depth, &root_pv, data);
     }
-    if (depth>time_ply && out_of_time() && depth > 1) return mov;
+    if (data->stopped && (depth > 1 || mov != NULL_MOVE || best_move == NULL_MOVE))
+      break; /* keep the last complete iteration, or the seed */
     mov = best_move;
+    done_depth = depth;
+    score = getToMove(pos)==WHITE ? getValue(pos) : -getValue(pos);
+    best_pv = root_pv;
+    ctl->best_move = mov;
+    ctl->ponder_move = root_pv.moves > 1 ? root_pv.pv[1] : NULL_MOVE;
+    ctl->cutoffs = data->cutoffs;
+    ctl->first_cutoffs = data->first_cutoffs;
+    ctl->q_nodes = data->q_nodes;
+    update_stats(data, depth);
+    time_iteration(&ctl->time, mov);
+
+    if (ctl->listener) {
+      info.depth = depth;
+      info.score = getValue(pos);
+      info.time = time_elapsed(&ctl->time);
+      info.nodes = data->nodes;
+      info.nps = info.time > 0 ? (int) (data->nodes * 1000.0 / info.time) : 0;
+      info.cutoffs = data->cutoffs;
+      info.first_cutoffs = data->first_cutoffs;
+      info.pv = root_pv;
+      ctl->listener(&info, ctl->listener_arg);
+    }
+    if (data->stopped || last_iteration(pos, depth, data)) break;
+  }
+  if (mov == NULL_MOVE) mov = first_legal_move(pos); /* stopped at once */
+  /* the score of the last complete iteration, a stopped one may leave a window bound */
+  if (done_depth > 0) setValue(pos, getToMove(pos)==WHITE ? score : -score, data->nodes);
+  else setValue(pos, getValue(pos), data->nodes); /* all the nodes, also of a stopped iteration */
+  update_stats(data, 0);
+  if (data->use_hash && done_depth > 0) save_seed(pos, done_depth, score, &best_pv, data);
+
+  /* stop and wait for the helpers */
+  ctl->stop = 1;
+  for (i=0; i < helper_count; i++) {
+    pthread_join(helpers[i].thread, NULL);
+    free_position(helpers[i].pos);
+  }
+  free(helpers);
+  set_prefetch(pos, NULL, 0);
+  ctl->stop = 0; /* only set for the helpers, ctl can start another search */
+  trans_table_leave(data->tt);
+  ctl->done = 1;
+  return mov;
+}
+
+/*-------------------------------------------------------.
+ | function: analyze_root(position pos, int depth,       |
+ |           analysis_line lines, int found,             |
+ |           int multi_pv, search_data data) -> int      |
+ | returns: the number of lines in lines after searching |
+ |          pos to depth, best first, lines has the      |
+ |          lines of the last iteration to try first.    |
+ | note: one pass over the root moves, a move only gets  |
+ |       a window when it can beat the worst line kept,  |
+ |       so the lines after the first cost little more   |
+ |       than proving they are worse than the best.      |
+  -------------------------------------------------------*/
+static int analyze_root(position pos, int depth, analysis_line lines, int found,
+			int multi_pv, search_data data){
+  move_list moves;
+  move mov;
+  int i, value=0, bound, legal, sign = getToMove(pos)==WHITE ? 1 : -1;
+  pv node_pv;
+
+  moves = search_moves(pos, data);
+  sort_move_scores(get_move_stack(pos),moves);
+  for (i=found-1; i >= 0; i--)
+    promote_move(get_move_stack(pos), moves, lines[i].pv.pv[0]);
+  found = 0;
+  mov = pop(get_move_stack(pos),moves);
+  while (mov!=NULL_MOVE){
+    bound = found < multi_pv ? -INFINITY : sign * lines[found-1].score;
+    node_pv.moves = 0;
+    do_move(pos, mov);
+    legal = !in_check_illegal(pos);
+    if (legal){
+      if (found >= multi_pv && data->algorithm == SEARCH_PVS) {
+	value = -alphabeta(pos, depth-1, -bound-1, -bound, &node_pv, data);
+	if (value > bound)
+	  value = -alphabeta(pos, depth-1, -INFINITY, -bound, &node_pv, data);
+      }
+      else
+	value = -alphabeta(pos, depth-1, -INFINITY, -bound, &node_pv, data);
+    }
+    undo_move(pos, mov);
+    if (search_aborted(data)) { /* test for out of time */
+      free_move_list(get_move_stack(pos),moves);
+      return found;
+    }
+    if (legal && (found < multi_pv || value > bound)) {
+      /* insert, the worst line falls out when there are multi_pv */
+      if (found < multi_pv) found++;
+      for (i=found-1; i > 0 && value > sign * lines[i-1].score; i--)
+	lines[i] = lines[i-1];
+      lines[i].score = sign * value;
+      lines[i].pv.pv[0] = mov;
+      memcpy(lines[i].pv.pv+1, node_pv.pv, node_pv.moves * sizeof(move));
+      lines[i].pv.moves = node_pv.moves + 1;
+    }
+    mov = pop(get_move_stack(pos),moves);
+  }
+  if (found > 0) {
+    hist_inc(get_hist_heuristic(pos), lines[0].pv.pv[0], depth*depth);
+    if (data->use_hash)
+      trans_table_insert(data->tt, pos, depth, lines[0].pv.pv[0], sign * lines[0].score, TT_EXACT);
+    setValue(pos, lines[0].score, data->nodes);
+  }
+  free_move_list(get_move_stack(pos),moves);
+  return found;
+}
+
+/*-------------------------------------------------------.
+ | function: analyze(position pos, search_limits limits, |
+ |           int multi_pv, analysis_line lines,          |
+ |           search_control ctl) -> int                  |
+ | returns: the number of lines, at most multi_pv, put   |
+ |          in lines, best first, from the last complete |
+ |          iteration within limits.                     |
+  -------------------------------------------------------*/
+int analyze(position pos, search_limits limits, int multi_pv,
+	    analysis_line lines, search_control ctl){
+  int depth, count=0, found;
+  search_data_ main_data;
+  search_data data = &main_data;
+  analysis_line_ iteration[MAX_MULTI_PV];
+
+  if (multi_pv > MAX_MULTI_PV) multi_pv = MAX_MULTI_PV;
+  init_search(pos, limits, data, ctl);
+  initHistory(get_hist_heuristic(pos));
+  if (data->use_hash) {
+    trans_table_new_search(data->tt);
+    set_prefetch(pos, data->tt->buckets, data->tt->mask);
+  }
+
+  for (depth=1; depth<=data->limits.max_depth; depth++) {
+    data->use_time = depth > data->limits.min_depth;
+    memcpy(iteration, lines, count * sizeof(analysis_line_));
+    found = analyze_root(pos, depth, iteration, count, multi_pv, data);
+    if (data->stopped && depth > 1) break; /* keep the last complete iteration */
+    memcpy(lines, iteration, found * sizeof(analysis_line_));
+    count = found;
+    if (found > 0) {
+      ctl->best_move = lines[0].pv.pv[0];
+      time_iteration(&ctl->time, ctl->best_move);
+    }
+    ctl->q_nodes = data->q_nodes;
+    update_stats(data, depth);
+    if (found == 0 || data->stopped || last_iteration(pos, depth, data)) break;
+  }
+  update_stats(data, 0);
+  set_prefetch(pos, NULL, 0);
+  trans_table_leave(data->tt);
+  ctl->done = 1;
+  return count;
+}
+
+/*-------------------------------------------------------.
+ | function: new_search_control() -> search_control      |
+ | returns: a control for a search that is not started.  |
+ | note: may be used for one search after another, each  |
+ |       search clears done and the best move, a         |
+ |       stop_search before a search starts stops it at  |
+ |       once.                                           |
+  -------------------------------------------------------*/
+search_control new_search_control(){
+  search_control ctl;
+  ctl = (search_control) malloc(sizeof(search_control_));
+  memset(ctl, 0, sizeof(search_control_));
+  return ctl;
+}
+
+/*-------------------------------------------------------.
+ | function: free_search_control(search_control ctl)     |
+ | note: the search using ctl must have returned.        |
+  -------------------------------------------------------*/
+void free_search_control(search_control ctl){
+  free(ctl);
+}
+
+/*-------------------------------------------------------.
+ | function: set_search_algorithm(search_algorithm       |
+ |                                algorithm) -> void     |
+ | note: used by searches of the default engine started  |
+ |       after the call.                                 |
+  -------------------------------------------------------*/
+void set_search_algorithm(search_algorithm algorithm){
+  default_engine()->algorithm = algorithm;
+}
+
+search_algorithm get_search_algorithm(){
+  return default_engine()->algorithm;
+}
+
+/*-------------------------------------------------------.
+ | function: set_search_params(search_params params)     |
+ | note: the pruning used by searches of the default     |
+ |       engine started after the call.                  |
+  -------------------------------------------------------*/
+void set_search_params(search_params params){
+  default_engine()->params = *params;
+}
+
+/*-------------------------------------------------------.
+ | function: get_search_params(search_params params)     |
+ | effects: copies the pruning of the default engine     |
+ |          into params.                                 |
+  -------------------------------------------------------*/
+void get_search_params(search_params params){
+  *params = default_engine()->params;
+}
 
-    ftime(&after);
-    seconds = (int) difftime(after.time, before.time);
-    ms = after.millitm-before.millitm;
-    time = seconds + ms/1000.0;
-    timecenti = time*100;
-    value = getValue(pos) / 100.0;
-    if (time>0) nps = data->nodes / time;
-    printf("%i %i %i %i ", depth, getValue(pos), timecenti, data->nodes);
-    for (i=0; i < root_pv.moves; i++) {
-      print_move(root_pv.pv[i]);
-      printf(" ");
-    }
-    printf("\n");
-  }
-  return best_move;
+/*-------------------------------------------------------.
+ | function: set_search_hash(int use_hash) -> void       |
+ | note: 0 searches without the transposition table,     |
+ |       used by searches of the default engine started  |
+ |       after the call.                                 |
+  -------------------------------------------------------*/
+void set_search_hash(int use_hash){
+  default_engine()->use_hash = use_hash;
+}
+
+/*-------------------------------------------------------.
+ | function: set_search_timing(int timing) -> void       |
+ | note: 1 times the move generation, evaluation and     |
+ |       quiescence of searches of the default engine    |
+ |       started after the call, for their stats. Costs  |
+ |       some speed.                                     |
+  -------------------------------------------------------*/
+void set_search_timing(int timing){
+  default_engine()->timing = timing;
+}
+
+/*-------------------------------------------------------.
+ | function: ponder_hit(search_control ctl) -> void      |
+ | effects: the opponent played the expected move, from  |
+ |          now on the pondering search uses the clock   |
+ |          as a normal search that started when the     |
+ |          pondering started.                           |
+ | note: may come before the search started, the time    |
+ |       is then allocated by init_search.               |
+  -------------------------------------------------------*/
+void ponder_hit(search_control ctl){
+  engine eng = ctl->eng ? ctl->eng : default_engine();
+
+  pthread_mutex_lock(&ponder_lock);
+  if (ctl->time.clock) {
+    clock_allocate(eng->clock, ctl->time.start);
+    clock_deadlines(eng->clock, &ctl->time);
+  }
+  else ctl->early_hit = 1; /* init_search allocates the time */
+  ctl->pondering = 0;
+  pthread_mutex_unlock(&ponder_lock);
+}
+
+/*-------------------------------------------------------.
+ | function: print_search_info(search_info info,         |
+ |                             void *arg) -> void        |
+ | effects: prints depth, score, time in centiseconds,   |
+ |          nodes and the pv on one line (xboard post).  |
+  -------------------------------------------------------*/
+void print_search_info(search_info info, void *arg){
+  int i;
+  printf("%i %i %i %i ", info->depth, info->score, info->time / 10, info->nodes);
+  for (i=0; i < info->pv.moves; i++) {
+    print_move(info->pv.pv[i]);
+    printf(" ");
+  }
+  printf("\n");
+}
+
+/*-------------------------------------------------------.
+ | function: stop_search(search_control ctl) -> void     |
+ | effects: the search using ctl stops within OUT_OF_TIME|
+ |          nodes and returns the best move so far.      |
+ | note: safe to call from any thread.                   |
+  -------------------------------------------------------*/
+void stop_search(search_control ctl){
+  ctl->stop = 1;
 }
@@ -1,9 +1,5 @@
 #ifndef SEARCH
 #define SEARCH
-//#define SEARCH_NO_HASH 
-//#define SEARCH_MTDF /* Use MTDF instead of "common" alphabeta */
-//#define SEARCH_FAIL_SOFT /* MTDF must have this defined */
-//#define SEARCH_PVS /* Use Principal Variation Search */
 #define SEARCH_NULL_MOVE
 #define SEARCH_NULL_MOVE_R 2
 #define SEARCH_ENDGAME 5 /* pieces (including Kings) defined as endgame (no nullmove pruning) */
@@ -12,16 +8,38 @@
 #include "eval.h"
 #include "book.h"
 #include "trans.h"
+#include "tb.h"
 #include "move.h"
 #include <time.h>
 #include "utils.h"
 #include <assert.h>
+#include <pthread.h>
 #define MAX_PLY 40 /* the search never exceeds this value */
 #define MAX_PV MAX_PLY/* the max pv */
 #define MAX_QDEPTH 32 /* max depth in the qsearch */  
 #define OUT_OF_TIME 512 /* nodes until check of out_of_time */
 #define INFINITY 99999
 #define INFINITY_PLUS_ONE 100000
+#define MAX_THREADS 64 /* max threads in the parallel search */
+#define ASPIRATION_WINDOW 50 /* half the root window around the last score (PVS) */
+#define MATE_BOUND (INFINITY-1000) /* scores beyond this are mates, don't prune */
+#define MATE_IN(plies) (INFINITY-(plies)) /* score for mating in plies */
+#define MAX_KILLER_PLY (MAX_PLY+MAX_QDEPTH) /* plies with killer moves */
+#define SQUARE64(sq) (((sq) + ((sq) & 7)) >> 1) /* 0x88 square to 0..63 */
+#define MAX_MULTI_PV 32 /* max lines in one analysis */
+#define MAX_ROOT_MOVES 256 /* more than the legal moves in any position */
+#define PERFT_HASH_SIZE (1<<18) /* entries in the perft hash, a power of 2 */
+#define PERFT_DEPTH_KEY 0x9E3779B97F4A7C15LL /* times depth, in the perft hash key */
+
+/*
+  the search used at the root, selected at runtime
+  with set_search_algorithm.
+ */
+typedef enum search_algorithm {
+  SEARCH_ALPHABETA = 0, /* alpha-beta, full window at the root */
+  SEARCH_PVS = 1, /* principal variation search, aspiration windows */
+  SEARCH_MTDF = 2 /* MTD(f) with fail-soft alpha-beta */
+} search_algorithm;
 /*
   struct to hold the principal variation of
   each node in the search.
@@ -31,6 +49,139 @@ typedef struct pv {
   move pv[MAX_PV]; /* the pv */
 } pv;
 
+/*
+  what the search knows after each complete iteration.
+ */
+typedef struct search_info_ *search_info;
+typedef struct search_info_ {
+  int depth; /* depth of the iteration */
+  int score; /* score in centipawns, from whites view */
+  int time; /* ms since the search started */
+  int nodes; /* nodes searched by this thread */
+  int nps; /* nodes per second */
+  int cutoffs; /* beta cutoffs */
+  int first_cutoffs; /* beta cutoffs by the first move tried */
+  pv pv; /* the principal variation */
+} search_info_;
+
+/*
+  one line of a multi-pv analysis.
+ */
+typedef struct analysis_line_ *analysis_line;
+typedef struct analysis_line_ {
+  int score; /* score in centipawns, from whites view */
+  pv pv; /* the line, pv.pv[0] is the root move */
+} analysis_line_;
+
+/*
+  leaves under one root move, from perft_divide.
+ */
+typedef struct perft_move_ {
+  move mov;
+  U64 nodes;
+} perft_move_;
+
+/*
+  counters of one search, by the main thread. The times
+  are only taken when set_search_timing is on, qsearch_ns
+  includes the move generation and evaluation in the
+  quiescence search.
+ */
+typedef struct search_stats_ *search_stats;
+typedef struct search_stats_ {
+  int depth; /* last complete iteration */
+  int seldepth; /* deepest ply reached, quiescence included */
+  int time; /* ms */
+  int nodes;
+  int q_nodes;
+  int tt_probes;
+  int tt_hits; /* probes that found the position */
+  int tt_cutoffs; /* hits that returned without a search */
+  int null_cutoffs;
+  int cutoffs; /* beta cutoffs in alphabeta */
+  int first_cutoffs; /* of them, by the first move tried */
+  int hashfull; /* permille of the table stored by this search */
+  int pawn_probes; /* evaluations with the pawn table */
+  int pawn_hits; /* of them, with the pawn terms found in it */
+  int eval_probes; /* evaluations with the eval cache */
+  int eval_hits; /* of them, with the value found in it */
+  int first_depth; /* the first iteration searched, deeper after a seed */
+  int iteration_nodes[MAX_PLY+1]; /* nodes up to the end of each iteration, 0 before first_depth */
+  long long movegen_ns;
+  long long eval_ns;
+  long long qsearch_ns;
+} search_stats_;
+
+/*
+  called by the search after each complete iteration,
+  arg is the listener_arg of the search_control.
+ */
+typedef void (*search_listener)(search_info info, void *arg);
+
+typedef struct engine_ *engine; /* in engine.h */
+
+/*
+  struct shared by all threads in one search, and with
+  whoever started the search (maybe from another thread).
+ */
+typedef struct search_control_ *search_control;
+typedef struct search_control_ {
+  volatile int stop; /* set to stop the search as soon as possible. */
+  volatile move best_move; /* best move of the last complete iteration. */
+  volatile int done; /* boolean: the search has returned. */
+  volatile int pondering; /* boolean: searching on the opponents time, */
+                          /* the clock is ignored until ponder_hit. */
+  int early_hit; /* boolean: ponder_hit came before the search set its clock. */
+  volatile move ponder_move; /* expected reply, 2nd move of the pv. */
+  volatile int cutoffs; /* beta cutoffs up to the last complete iteration. */
+  volatile int first_cutoffs; /* of them, by the first move tried. */
+  volatile int q_nodes; /* quiescence nodes up to the last complete iteration. */
+  time_manager_ time; /* when the search started and its deadlines. */
+  search_stats_ stats; /* up to the last complete iteration, all when done. */
+  engine eng; /* table, clock and settings, NULL for the default engine. */
+  search_listener listener; /* NULL or called after each iteration. */
+  void *listener_arg; /* passed to the listener. */
+} search_control_;
+
+/*
+  when a search stops, set with init_search_limits and then
+  the limits wanted, 0 is no limit. Without node, time or
+  mate limits the search uses the game clock.
+ */
+typedef struct search_limits_ *search_limits;
+typedef struct search_limits_ {
+  int max_depth; /* last iteration, at most MAX_PLY (also for 0) */
+  int min_depth; /* iterations searched whatever the clock or soft_time says */
+  int nodes; /* the search stops after this many nodes (by this thread) */
+  int movetime; /* ms for the move, the search stops when they are used */
+  int soft_time; /* ms after which no new iteration is started */
+  int hard_time; /* ms after which the search stops */
+  int mate; /* stop when a mate in this many moves is found */
+} search_limits_;
+
+/*
+  selectivity of alphabeta, set at runtime with
+  set_search_params. Depths and margins are in plies
+  and centipawns.
+ */
+typedef struct search_params_ *search_params;
+typedef struct search_params_ {
+  int lmr; /* boolean: reduce late quiet moves */
+  int lmr_depth; /* min depth for a reduction */
+  int lmr_moves; /* legal moves searched before reducing */
+  int lmr_reduction; /* plies reduced */
+  int futility; /* boolean: skip quiet moves that can't raise alpha */
+  int futility_depth; /* max depth for futility pruning */
+  int futility_margin; /* margin per ply */
+  int reverse_futility; /* boolean: cut when the static value is far above beta */
+  int reverse_futility_depth; /* max depth for reverse futility pruning */
+  int reverse_futility_margin; /* margin per ply */
+  int killers; /* boolean: try killer moves after the captures */
+  int countermoves; /* boolean: try the countermove after the killers */
+  int see; /* boolean: losing captures last, and not in the qsearch */
+  int tablebases; /* boolean: probe the endgame tables */
+} search_params_;
+
 /*
   struct for data in the search, like nodes
   searched, boolean variables for time management,
@@ -42,8 +193,55 @@ typedef struct search_data_ {
   int q_nodes; /* quiet nodes searched */
   int use_time; /* boolean:check for out of time/don't check for out time*/
   int time; /* it's time for checkup, every 1024 nodes. */
+  int stopped; /* boolean: the search was aborted, unwind. */
+  search_algorithm algorithm; /* the search used */
+  int use_hash; /* boolean: use the transposition table */
+  trans_table tt; /* the table of the engine */
+  pawn_table pawns; /* the pawn table of the engine */
+  eval_cache evals; /* the eval cache of the engine */
+  search_params_ params; /* pruning and reductions */
+  search_limits_ limits; /* when to stop, hard_time includes movetime */
+  int use_clock; /* boolean: stop on the game clock (no other limits) */
+  int root_ply; /* getPly of the root position */
+  move killers[MAX_KILLER_PLY][2]; /* quiet moves that caused cutoffs, per ply */
+  move countermoves[64][64]; /* quiet refutation, by src and dst of the last move */
+  int cutoffs; /* beta cutoffs in alphabeta */
+  int first_cutoffs; /* beta cutoffs by the first move tried */
+  int tt_probes; /* the counters of search_stats_ */
+  int tt_hits;
+  int tt_cutoffs;
+  int null_cutoffs;
+  int pawn_probes;
+  int pawn_hits;
+  int eval_probes;
+  int eval_hits;
+  int seldepth;
+  int timing; /* boolean: time move generation, eval and quiescence */
+  int in_qsearch; /* boolean: the quiescence search is being timed */
+  long long movegen_ns;
+  long long eval_ns;
+  long long qsearch_ns;
+  search_control ctl; /* shared by all threads in this search. */
 } search_data_;
 /* FUNCTIONS */
 move bestMove(position pos, int depth, int time_ply);
+move bestMove_threads(position pos, int max_depth, int time_ply, int threads);
+move bestMove_control(position pos, search_limits limits, int threads, search_control ctl);
+void init_search_limits(search_limits limits, int max_depth, int min_depth);
+int analyze(position pos, search_limits limits, int multi_pv,
+	    analysis_line lines, search_control ctl);
+search_control new_search_control();
+void free_search_control(search_control ctl);
+void stop_search(search_control ctl);
+void ponder_hit(search_control ctl);
+void print_search_info(search_info info, void *arg);
+void set_search_algorithm(search_algorithm algorithm);
+search_algorithm get_search_algorithm();
+void set_search_hash(int use_hash);
+void set_search_timing(int timing);
+void set_search_params(search_params params);
+void get_search_params(search_params params);
 int perft(position pos, int depth);
+U64 perft_divide(position pos, int depth, int threads, int use_hash,
+		 perft_move_ *moves, int *count);
 #endif
@@ -0,0 +1,809 @@
+#include "tb.h"
+#ifndef WIN32
+#include <sys/mman.h>
+#include <sys/stat.h>
+#include <fcntl.h>
+#include <unistd.h>
+#endif
+#include <time.h>
+/*-------------------------------------------------------.
+ | file: tb.c                                            |
+ | contains: the endgame tables for up to 4 pieces, the  |
+ |           retrograde generator and the prober. A      |
+ |           table has the distance to mate of every     |
+ |           position of one material with both sides to |
+ |           move. The prober only reads the mapped      |
+ |           files, so the search threads need no locks. |
+  -------------------------------------------------------*/
+
+#define TB_SQ64(sq) (((sq) + ((sq) & 7)) >> 1) /* 0x88 square to 0..63 */
+#define TB_SQ88(sq) ((sq) + ((sq) & ~7)) /* 0..63 to the 0x88 square */
+#define TB_DIAG(s) ((((s) & 7) << 3) | ((s) >> 3)) /* 0..63 square mirrored in a1-h8 */
+#define TB_KIND(p) (((p) & 7) - 1) /* king 0, queen 1 .. pawn 5 */
+#define TB_KINDS 6
+#define TB_PAWN 5
+#define TB_MAX_MOVES 128 /* more than the moves of any position in the tables */
+#define TB_NO_LOSS 255 /* a capture or promotion draws or wins, never lost */
+
+typedef struct tb_table_ {
+  char material[8]; /* the file name */
+  piece pc[TB_MAX_PIECES]; /* WK, BK, the white pieces, the black pieces */
+  int n; /* pieces */
+  int pawns; /* boolean: only mirror the files */
+  unsigned int size; /* positions */
+  unsigned char *data; /* the mapped file after the header, NULL if not loaded */
+  void *map; /* the mapped file */
+  size_t map_size;
+} tb_table_;
+
+/* the pieces of a position in a table (or in no order) */
+typedef struct tb_pos_ {
+  int n; /* pieces */
+  piece pc[TB_MAX_PIECES];
+  int sq[TB_MAX_PIECES]; /* 0x88 squares */
+  int stm; /* WHITE or BLACK */
+} tb_pos_;
+
+static tb_table_ tables[TB_MAX_TABLES];
+static int table_count = 0;
+static tb_table_ *table_by_key[TB_KINDS*TB_KINDS*TB_KINDS*TB_KINDS];
+static int loaded = 0; /* tables with data */
+static int triangle[64]; /* white king index of pawnless tables, -1 outside a1-d1-d4 */
+static int triangle_square[10];
+
+/*-------------------------------------------------------.
+ | function: tb_key(piece *white, int nw, piece *black,  |
+ |           int nb) -> int                              |
+ | returns: the material key of the sorted pieces        |
+ |          besides the kings.                           |
+  -------------------------------------------------------*/
+static int tb_key(piece *white, int nw, piece *black, int nb){
+  int key;
+  key = nw > 0 ? TB_KIND(white[0]) : 0;
+  key = key * TB_KINDS + (nw > 1 ? TB_KIND(white[1]) : 0);
+  key = key * TB_KINDS + (nb > 0 ? TB_KIND(black[0]) : 0);
+  return key * TB_KINDS + (nb > 1 ? TB_KIND(black[1]) : 0);
+}
+
+static void tb_add_table(piece *white, int nw, piece *black, int nb){
+  static char letters[] = "KQRBNP";
+  tb_table_ *t = tables + table_count++;
+  int i, m=0;
+
+  t->n = 0;
+  t->pawns = 0;
+  t->pc[t->n++] = WK;
+  t->pc[t->n++] = BK;
+  t->material[m++] = 'K';
+  for (i=0; i < nw; i++) {
+    t->pc[t->n++] = white[i];
+    t->material[m++] = letters[TB_KIND(white[i])];
+  }
+  t->material[m++] = 'K';
+  for (i=0; i < nb; i++) {
+    t->pc[t->n++] = black[i];
+    t->material[m++] = letters[TB_KIND(black[i])];
+  }
+  t->material[m] = '\0';
+  t->size = 2 * 64;
+  for (i=2; i < t->n; i++) {
+    if (TB_KIND(t->pc[i]) == TB_PAWN) {
+      t->pawns = 1;
+      t->size *= 48;
+    }
+    else t->size *= 64;
+  }
+  t->size *= t->pawns ? 32 : 10;
+  t->data = NULL;
+  t->map = NULL;
+  table_by_key[tb_key(white, nw, black, nb)] = t;
+}
+
+/*-------------------------------------------------------.
+ | function: tb_setup()                                  |
+ | effects: the tables in the order they are generated,  |
+ |          a table only converts to tables before it.   |
+  -------------------------------------------------------*/
+static void tb_setup(){
+  static piece kinds[] = {WQ, WR, WB, WN};
+  piece white[2], black[2];
+  int x, y, sq, k=0;
+
+  if (table_count) return;
+  for (sq=0; sq < 64; sq++) {
+    if ((sq & 7) <= 3 && (sq >> 3) <= (sq & 7)) {
+      triangle_square[k] = sq;
+      triangle[sq] = k++;
+    }
+    else triangle[sq] = -1;
+  }
+  for (x=0; x < 4; x++) {
+    white[0] = kinds[x];
+    tb_add_table(white, 1, black, 0);
+  }
+  white[0] = WP;
+  tb_add_table(white, 1, black, 0);
+  for (x=0; x < 4; x++)
+    for (y=x; y < 4; y++) {
+      white[0] = kinds[x];
+      white[1] = kinds[y];
+      tb_add_table(white, 2, black, 0);
+      black[0] = kinds[y] ^ WHITE;
+      tb_add_table(white, 1, black, 1);
+    }
+  for (x=0; x < 4; x++) {
+    white[0] = kinds[x];
+    white[1] = WP;
+    tb_add_table(white, 2, black, 0);
+    black[0] = BP;
+    tb_add_table(white, 1, black, 1);
+  }
+  white[0] = white[1] = WP;
+  tb_add_table(white, 2, black, 0);
+  black[0] = BP;
+  tb_add_table(white, 1, black, 1);
+}
+
+/*-------------------------------------------------------.
+ | function: tb_normalize(tb_pos_ *in, tb_pos_ *out)     |
+ |           -> tb_table_ *                              |
+ | returns: the table of the pieces in, NULL if there is |
+ |          none (out->n is 2 for the kings alone).      |
+ | effects: out is in with the pieces in table order,    |
+ |          the colors are swapped (and the board        |
+ |          mirrored) when black has the stronger side.  |
+  -------------------------------------------------------*/
+static tb_table_ *tb_normalize(tb_pos_ *in, tb_pos_ *out){
+  piece side[2][2]={{0, 0}, {0, 0}}, p;
+  int side_sq[2][2]={{0, 0}, {0, 0}}, count[2]={0, 0}, king_sq[2]={0, 0};
+  int i, j, c, flip=0, strong, weak, mirror;
+
+  out->n = 0;
+  for (i=0; i < in->n; i++) {
+    p = in->pc[i];
+    c = (p & WHITE) ? 0 : 1;
+    if (TB_KIND(p) == 0) {
+      king_sq[c] = in->sq[i];
+      continue;
+    }
+    if (count[c] == 2) return NULL;
+    for (j=count[c]++; j > 0 && side[c][j-1] > p; j--) { /* sorted, strongest first */
+      side[c][j] = side[c][j-1];
+      side_sq[c][j] = side_sq[c][j-1];
+    }
+    side[c][j] = p;
+    side_sq[c][j] = in->sq[i];
+  }
+  if (count[1] > count[0]) flip = 1;
+  else if (count[1] == count[0]) {
+    for (j=0; j < count[0]; j++)
+      if (TB_KIND(side[1][j]) != TB_KIND(side[0][j])) {
+	flip = TB_KIND(side[1][j]) < TB_KIND(side[0][j]);
+	break;
+      }
+  }
+  strong = flip ? 1 : 0;
+  weak = 1 - strong;
+  mirror = flip ? 0x70 : 0;
+  out->pc[0] = WK;
+  out->sq[0] = king_sq[strong] ^ mirror;
+  out->pc[1] = BK;
+  out->sq[1] = king_sq[weak] ^ mirror;
+  out->n = 2;
+  for (j=0; j < count[strong]; j++) {
+    out->pc[out->n] = side[strong][j] | WHITE;
+    out->sq[out->n++] = side_sq[strong][j] ^ mirror;
+  }
+  for (j=0; j < count[weak]; j++) {
+    out->pc[out->n] = side[weak][j] & ~WHITE;
+    out->sq[out->n++] = side_sq[weak][j] ^ mirror;
+  }
+  out->stm = flip ? in->stm ^ WHITE : in->stm;
+  if (out->n == 2) return NULL;
+  return table_by_key[tb_key(out->pc+2, count[strong], out->pc+2+count[strong], count[weak])];
+}
+
+/*-------------------------------------------------------.
+ | function: tb_raw_index(tb_table_ *t, int *s, int stm) |
+ |           -> unsigned int                             |
+ | returns: the index of the 0..63 squares s, the white  |
+ |          king already in the part of the board the    |
+ |          table stores.                                |
+  -------------------------------------------------------*/
+static unsigned int tb_raw_index(tb_table_ *t, int *s, int stm){
+  unsigned int index = stm == WHITE ? 0 : 1;
+  int i;
+
+  if (t->pawns) index = index * 32 + (s[0] >> 3) * 4 + (s[0] & 7);
+  else index = index * 10 + triangle[s[0]];
+  index = index * 64 + s[1];
+  for (i=2; i < t->n; i++) {
+    if (TB_KIND(t->pc[i]) == TB_PAWN) index = index * 48 + s[i] - 8;
+    else index = index * 64 + s[i];
+  }
+  return index;
+}
+
+/* two of the same piece are stored in square order */
+static void tb_order(tb_table_ *t, int *s){
+  int tmp;
+  if (t->n == 4 && t->pc[2] == t->pc[3] && s[2] > s[3]) {
+    tmp = s[2];
+    s[2] = s[3];
+    s[3] = tmp;
+  }
+}
+
+/*-------------------------------------------------------.
+ | function: tb_index(tb_table_ *t, tb_pos_ *p)          |
+ |           -> unsigned int                             |
+ | returns: the index of p (in table order) in t. The    |
+ |          board is mirrored so the white king is on    |
+ |          files a-d, and without pawns on a1-d1-d4;    |
+ |          all the mirror images of p get one index.    |
+  -------------------------------------------------------*/
+static unsigned int tb_index(tb_table_ *t, tb_pos_ *p){
+  int s[TB_MAX_PIECES]={0}, i;
+  unsigned int index, other;
+
+  for (i=0; i < t->n; i++) s[i] = TB_SQ64(p->sq[i]);
+  if ((s[0] & 7) > 3)
+    for (i=0; i < t->n; i++) s[i] ^= 7;
+  if (!t->pawns) {
+    if ((s[0] >> 3) > 3)
+      for (i=0; i < t->n; i++) s[i] ^= 56;
+    if ((s[0] >> 3) > (s[0] & 7))
+      for (i=0; i < t->n; i++) s[i] = TB_DIAG(s[i]);
+  }
+  tb_order(t, s);
+  index = tb_raw_index(t, s, p->stm);
+  if (!t->pawns && (s[0] >> 3) == (s[0] & 7)) { /* the king on a1-d4, the diagonal image too */
+    for (i=0; i < t->n; i++) s[i] = TB_DIAG(s[i]);
+    tb_order(t, s);
+    other = tb_raw_index(t, s, p->stm);
+    if (other < index) index = other;
+  }
+  return index;
+}
+
+/*-------------------------------------------------------.
+ | function: tb_decode(tb_table_ *t, unsigned int index, |
+ |           tb_pos_ *p)                                 |
+ | effects: p is the position of index in t.             |
+  -------------------------------------------------------*/
+static void tb_decode(tb_table_ *t, unsigned int index, tb_pos_ *p){
+  int i, s;
+
+  p->n = t->n;
+  for (i=t->n-1; i >= 2; i--) {
+    if (TB_KIND(t->pc[i]) == TB_PAWN) {
+      s = index % 48 + 8;
+      index /= 48;
+    }
+    else {
+      s = index % 64;
+      index /= 64;
+    }
+    p->pc[i] = t->pc[i];
+    p->sq[i] = TB_SQ88(s);
+  }
+  p->pc[1] = BK;
+  p->sq[1] = TB_SQ88(index % 64);
+  index /= 64;
+  if (t->pawns) {
+    s = index % 32;
+    s = (s / 4) * 8 + s % 4;
+    index /= 32;
+  }
+  else {
+    s = triangle_square[index % 10];
+    index /= 10;
+  }
+  p->pc[0] = WK;
+  p->sq[0] = TB_SQ88(s);
+  p->stm = index ? BLACK : WHITE;
+}
+
+/*-------------------------------------------------------.
+ | function: tb_set(position pos, tb_pos_ *p, int stm)   |
+ | effects: pos is p with stm to move.                   |
+  -------------------------------------------------------*/
+static void tb_set(position pos, tb_pos_ *p, int stm){
+  set_pieces(pos, p->n, p->pc, p->sq, (char) stm);
+}
+
+/*-------------------------------------------------------.
+ | function: tb_child(tb_pos_ *p, move mov, tb_pos_ *c)  |
+ | effects: c is p after mov, the pieces in the order of |
+ |          p without the captured one.                  |
+  -------------------------------------------------------*/
+static void tb_child(tb_pos_ *p, move mov, tb_pos_ *c){
+  int i, src = get_src(mov), dst = get_dst(mov);
+
+  c->n = 0;
+  for (i=0; i < p->n; i++) {
+    if (p->sq[i] == dst) continue; /* captured */
+    c->pc[c->n] = p->pc[i];
+    c->sq[c->n] = p->sq[i];
+    if (p->sq[i] == src) {
+      c->sq[c->n] = dst;
+      if (is_prom_move(mov)) c->pc[c->n] = get_prom_piece(mov);
+    }
+    c->n++;
+  }
+  c->stm = p->stm ^ WHITE;
+}
+
+/*-------------------------------------------------------.
+ | function: tb_moves(position pos, tb_pos_ *p,          |
+ |           tb_pos_ *children, int *convert) -> int     |
+ | returns: the number of legal moves in p, the children |
+ |          are the positions after them with convert 1  |
+ |          for a capture or promotion. pos is p, see    |
+ |          tb_set. No en passant.                       |
+  -------------------------------------------------------*/
+static int tb_moves(position pos, tb_pos_ *p, tb_pos_ *children, int *convert){
+  move_list moves;
+  move mov;
+  int count=0;
+
+  moves = move_generator(pos);
+  while ((mov = pop(get_move_stack(pos),moves)) != NULL_MOVE) {
+    do_move(pos, mov);
+    if (!in_check_illegal(pos)) {
+      tb_child(p, mov, children + count);
+      convert[count++] = is_capture_move(mov) || is_prom_move(mov);
+    }
+    undo_move(pos, mov);
+  }
+  free_move_list(get_move_stack(pos),moves);
+  return count;
+}
+
+/*-------------------------------------------------------.
+ | function: tb_unmoves(tb_table_ *t, position pos,      |
+ |           tb_pos_ *p, unsigned int *indexes) -> int   |
+ | returns: the number of indexes, the positions in t    |
+ |          with a move to p that is not a capture or a  |
+ |          promotion. Some may be illegal.              |
+ | effects: pos is p with the other side to move.        |
+ | note: a piece comes back along its moves to empty     |
+ |       squares, a pawn one or two squares back.        |
+  -------------------------------------------------------*/
+static int tb_unmoves(tb_table_ *t, position pos, tb_pos_ *p, unsigned int *indexes){
+  move_list moves;
+  move mov;
+  tb_pos_ q;
+  int i, from, to, back, mover=p->stm ^ WHITE, count=0;
+
+  q = *p;
+  q.stm = mover;
+  tb_set(pos, p, mover);
+  moves = move_generator(pos);
+  while ((mov = pop(get_move_stack(pos),moves)) != NULL_MOVE) {
+    if (is_capture_move(mov) || is_prom_move(mov)) continue;
+    for (i=0; p->sq[i] != get_src(mov); i++);
+    if (TB_KIND(p->pc[i]) == TB_PAWN) continue;
+    q.sq[i] = get_dst(mov);
+    indexes[count++] = tb_index(t, &q);
+    q.sq[i] = p->sq[i];
+  }
+  free_move_list(get_move_stack(pos),moves);
+
+  back = mover == WHITE ? -16 : 16;
+  for (i=0; i < p->n; i++) {
+    if (p->pc[i] != (mover == WHITE ? WP : BP)) continue;
+    from = p->sq[i];
+    to = from + back;
+    if (get_piece(getBoard(pos), to) == EMPTY && (to >> 4) != (mover == WHITE ? 0 : 7)) {
+      q.sq[i] = to;
+      indexes[count++] = tb_index(t, &q);
+      if ((from >> 4) == (mover == WHITE ? 3 : 4) && get_piece(getBoard(pos), to + back) == EMPTY) {
+	q.sq[i] = to + back;
+	indexes[count++] = tb_index(t, &q);
+      }
+    }
+    q.sq[i] = from;
+  }
+  return count;
+}
+
+static int tb_compare(const void *a, const void *b){
+  unsigned int x = *(const unsigned int *) a, y = *(const unsigned int *) b;
+  return x < y ? -1 : x > y;
+}
+
+/* sorts indexes and drops the doubles, returns the new count */
+static int tb_unique(unsigned int *indexes, int count){
+  int i, n=0;
+
+  qsort(indexes, count, sizeof(unsigned int), tb_compare);
+  for (i=0; i < count; i++)
+    if (n == 0 || indexes[n-1] != indexes[i]) indexes[n++] = indexes[i];
+  return n;
+}
+
+/*-------------------------------------------------------.
+ | function: tb_probe_pos(tb_pos_ *p) -> int             |
+ | returns: the table value of p, TB_NONE if its table   |
+ |          is not loaded.                               |
+  -------------------------------------------------------*/
+static int tb_probe_pos(tb_pos_ *p){
+  tb_pos_ n;
+  tb_table_ *t = tb_normalize(p, &n);
+
+  if (n.n == 2) return TB_DRAW; /* the kings alone */
+  if (t == NULL || t->data == NULL) return TB_NONE;
+  return t->data[tb_index(t, &n)];
+}
+
+/*-------------------------------------------------------.
+ | function: tb_load(tb_table_ *t, char *dir) -> int     |
+ | returns: 1 if the file of t in dir is mapped.         |
+  -------------------------------------------------------*/
+static int tb_load(tb_table_ *t, char *dir){
+  char name[1024];
+  tb_header_ *header;
+  size_t size = sizeof(tb_header_) + t->size;
+#ifndef WIN32
+  struct stat st;
+  int fd;
+
+  sprintf(name, "%.1000s/%s%s", dir, t->material, TB_SUFFIX);
+  if ((fd = open(name, O_RDONLY)) < 0) return 0;
+  if (fstat(fd, &st) || (size_t) st.st_size != size) {
+    close(fd);
+    return 0;
+  }
+  t->map = mmap(NULL, size, PROT_READ, MAP_SHARED, fd, 0);
+  close(fd);
+  if (t->map == MAP_FAILED) {
+    t->map = NULL;
+    return 0;
+  }
+#else
+  FILE *file;
+
+  sprintf(name, "%.1000s/%s%s", dir, t->material, TB_SUFFIX);
+  if ((file = fopen(name, "rb")) == NULL) return 0;
+  t->map = malloc(size);
+  if (fread(t->map, 1, size, file) != size) {
+    free(t->map);
+    t->map = NULL;
+  }
+  fclose(file);
+  if (t->map == NULL) return 0;
+#endif
+  t->map_size = size;
+  header = (tb_header_ *) t->map;
+  if (memcmp(header->magic, TB_MAGIC, 4) || header->version != TB_VERSION ||
+      strcmp(header->material, t->material) || header->size != t->size) {
+#ifndef WIN32
+    munmap(t->map, size);
+#else
+    free(t->map);
+#endif
+    t->map = NULL;
+    return 0;
+  }
+  t->data = (unsigned char *) t->map + sizeof(tb_header_);
+  return 1;
+}
+
+static void tb_unload(tb_table_ *t){
+  if (t->map == NULL) return;
+  t->data = NULL;
+#ifndef WIN32
+  munmap(t->map, t->map_size);
+#else
+  free(t->map);
+#endif
+  t->map = NULL;
+}
+
+/*-------------------------------------------------------.
+ | function: tb_init(char *dir) -> int                   |
+ | returns: the number of tables mapped from dir.        |
+ | note: not while searching, the tables of an earlier   |
+ |       call are unmapped.                              |
+  -------------------------------------------------------*/
+int tb_init(char *dir){
+  int i;
+
+  tb_setup();
+  loaded = 0;
+  for (i=0; i < table_count; i++) {
+    tb_unload(tables + i);
+    loaded += tb_load(tables + i, dir);
+  }
+  return loaded;
+}
+
+int tb_tables(){
+  return loaded;
+}
+
+/*-------------------------------------------------------.
+ | function: tb_probe(position pos) -> int               |
+ | returns: TB_NONE if pos has more than TB_MAX_PIECES,  |
+ |          can capture en passant or its table is not   |
+ |          loaded. Else TB_DRAW or the plies to mate    |
+ |          plus 1, see TB_IS_WIN and TB_PLIES.          |
+ | note: castling and the 50 move rule are ignored.      |
+  -------------------------------------------------------*/
+int tb_probe(position pos){
+  tb_pos_ p;
+  board b = getBoard(pos);
+  int sq;
+
+  if (!loaded || pieces(pos) > TB_MAX_PIECES) return TB_NONE;
+  if (pos->whitePassant || pos->blackPassant) return TB_NONE;
+  p.n = 0;
+  for (sq=0; sq < BOARD_SIZE; sq++) {
+    if (!on_board(sq)) {
+      sq += 7;
+      continue;
+    }
+    if (get_piece(b, sq) != EMPTY) {
+      if (p.n == TB_MAX_PIECES) return TB_NONE;
+      p.pc[p.n] = get_piece(b, sq);
+      p.sq[p.n++] = sq;
+    }
+  }
+  p.stm = getToMove(pos);
+  return tb_probe_pos(&p);
+}
+
+/* a probed value as a number, higher is better for the side to move */
+static int tb_rank(int value){
+  if (value == TB_DRAW) return 0;
+  if (TB_IS_WIN(value)) return 2 * TB_MAX_PLIES - value;
+  return value - 2 * TB_MAX_PLIES;
+}
+
+/*-------------------------------------------------------.
+ | function: tb_root_move(position pos, int *value)      |
+ |           -> move                                     |
+ | returns: the move to the fastest mate, the longest    |
+ |          defence or a draw, NULL_MOVE if pos or a     |
+ |          position after a move is not in the tables.  |
+ | effects: value is the tb_probe value of pos.          |
+  -------------------------------------------------------*/
+move tb_root_move(position pos, int *value){
+  move_list moves;
+  move mov, best=NULL_MOVE;
+  int v, best_value=TB_DRAW;
+
+  if (tb_probe(pos) == TB_NONE) return NULL_MOVE;
+  moves = move_generator(pos);
+  while ((mov = pop(get_move_stack(pos),moves)) != NULL_MOVE) {
+    do_move(pos, mov);
+    if (!in_check_illegal(pos)) {
+      if ((v = tb_probe(pos)) == TB_NONE) {
+	undo_move(pos, mov);
+	best = NULL_MOVE;
+	break;
+      }
+      if (v != TB_DRAW) v++; /* one ply more, for the other side */
+      if (best == NULL_MOVE || tb_rank(v) > tb_rank(best_value)) {
+	best = mov;
+	best_value = v;
+      }
+    }
+    undo_move(pos, mov);
+  }
+  free_move_list(get_move_stack(pos),moves);
+  *value = best_value;
+  return best;
+}
+
+/*-------------------------------------------------------.
+ | the retrograde generator. Every position is resolved  |
+ | in the order of its distance to mate: the mates and   |
+ | the captures or promotions into smaller tables are    |
+ | the start, then the positions one ply before the      |
+ | positions of each distance are found with un-moves.   |
+ | A position is lost when all its moves are, counted    |
+ | down in cnt, and won when one move is.                |
+  -------------------------------------------------------*/
+
+typedef struct tb_gen_ {
+  tb_table_ *t;
+  position pos; /* of the move generator, see tb_set */
+  unsigned char *val; /* the table */
+  unsigned char *cnt; /* moves not yet lost for the other side, or TB_NO_LOSS */
+  unsigned char *conv_loss; /* plies of the longest losing capture or promotion */
+  unsigned int *queue; /* the positions by distance */
+  unsigned int tail;
+  unsigned int *ev_index; /* positions resolved by a capture or promotion at ... */
+  int *ev_next; /* ... the plies of ev_head */
+  int ev_head[TB_MAX_PLIES+2];
+  int ev_count;
+  int ev_size;
+} tb_gen_;
+
+static void tb_event(tb_gen_ *g, unsigned int index, int plies){
+  if (g->ev_count == g->ev_size) {
+    g->ev_size = g->ev_size ? 2 * g->ev_size : 4096;
+    g->ev_index = (unsigned int *) realloc(g->ev_index, g->ev_size * sizeof(unsigned int));
+    g->ev_next = (int *) realloc(g->ev_next, g->ev_size * sizeof(int));
+  }
+  g->ev_index[g->ev_count] = index;
+  g->ev_next[g->ev_count] = g->ev_head[plies];
+  g->ev_head[plies] = g->ev_count++;
+}
+
+/*-------------------------------------------------------.
+ | function: tb_gen_init(tb_gen_ *g, unsigned int index) |
+ | effects: marks index broken, mated or stalemate, and  |
+ |          counts its moves in the table; the captures  |
+ |          and promotions are probed in the tables they |
+ |          lead to.                                     |
+  -------------------------------------------------------*/
+static void tb_gen_init(tb_gen_ *g, unsigned int index){
+  tb_pos_ p, children[TB_MAX_MOVES];
+  int convert[TB_MAX_MOVES];
+  unsigned int inside[TB_MAX_MOVES];
+  int i, j, count, v, n=0, win=0, draw=0, loss=0;
+
+  tb_decode(g->t, index, &p);
+  for (i=0; i < p.n; i++)
+    for (j=0; j < i; j++)
+      if (p.sq[i] == p.sq[j]) {
+	g->val[index] = TB_BROKEN;
+	return;
+      }
+  if (tb_index(g->t, &p) != index) {
+    g->val[index] = TB_BROKEN; /* a mirror image */
+    return;
+  }
+  tb_set(g->pos, &p, p.stm);
+  if (in_check_illegal(g->pos)) {
+    g->val[index] = TB_BROKEN; /* the king can be captured */
+    return;
+  }
+  count = tb_moves(g->pos, &p, children, convert);
+  if (count == 0) {
+    g->cnt[index] = TB_NO_LOSS;
+    if (in_check(g->pos)) {
+      g->val[index] = 1; /* mated */
+      g->queue[g->tail++] = index;
+    }
+    return;
+  }
+  for (i=0; i < count; i++) {
+    if (!convert[i]) {
+      inside[n++] = tb_index(g->t, children + i);
+      continue;
+    }
+    v = tb_probe_pos(children + i);
+    if (v == TB_DRAW) draw = 1;
+    else if (TB_IS_LOSS(v)) {
+      if (!win || TB_PLIES(v) + 1 < win) win = TB_PLIES(v) + 1;
+    }
+    else if (TB_PLIES(v) + 1 > loss) loss = TB_PLIES(v) + 1;
+  }
+  if (win) {
+    g->cnt[index] = TB_NO_LOSS;
+    tb_event(g, index, win);
+  }
+  else if (draw) g->cnt[index] = TB_NO_LOSS;
+  else {
+    g->cnt[index] = tb_unique(inside, n);
+    g->conv_loss[index] = loss;
+    if (g->cnt[index] == 0) tb_event(g, index, loss);
+  }
+}
+
+/*-------------------------------------------------------.
+ | function: tb_gen_back(tb_gen_ *g, unsigned int index, |
+ |           int plies)                                  |
+ | effects: the positions before index, which is mated   |
+ |          or mates in plies, are won in plies+1 or     |
+ |          have one move less to lose.                  |
+  -------------------------------------------------------*/
+static void tb_gen_back(tb_gen_ *g, unsigned int index, int plies){
+  tb_pos_ p;
+  unsigned int before[TB_MAX_MOVES];
+  int i, count;
+  unsigned int q;
+
+  tb_decode(g->t, index, &p);
+  count = tb_unique(before, tb_unmoves(g->t, g->pos, &p, before));
+  for (i=0; i < count; i++) {
+    q = before[i];
+    if (g->val[q] != TB_DRAW) continue; /* resolved or broken */
+    if (!(plies & 1)) { /* index is mated in plies */
+      g->val[q] = plies + 2;
+      g->queue[g->tail++] = q;
+    }
+    else if (g->cnt[q] != TB_NO_LOSS && --g->cnt[q] == 0) {
+      if (g->conv_loss[q] <= plies + 1) {
+	g->val[q] = plies + 2;
+	g->queue[g->tail++] = q;
+      }
+      else tb_event(g, q, g->conv_loss[q]);
+    }
+  }
+}
+
+/*-------------------------------------------------------.
+ | function: tb_generate_table(tb_table_ *t, char *dir)  |
+ |           -> int                                      |
+ | returns: 1 if the file of t is written to dir.        |
+  -------------------------------------------------------*/
+static int tb_generate_table(tb_table_ *t, char *dir){
+  tb_gen_ g;
+  tb_header_ header;
+  char name[1024];
+  FILE *file;
+  unsigned int index, head=0, end;
+  int plies, e, longest=0, written;
+  clock_t start = clock();
+
+  memset(&g, 0, sizeof(tb_gen_));
+  g.t = t;
+  g.pos = new_chess_position();
+  g.val = (unsigned char *) calloc(t->size, 1);
+  g.cnt = (unsigned char *) calloc(t->size, 1);
+  g.conv_loss = (unsigned char *) calloc(t->size, 1);
+  g.queue = (unsigned int *) malloc(t->size * sizeof(unsigned int));
+  for (plies=0; plies <= TB_MAX_PLIES; plies++) g.ev_head[plies] = -1;
+
+  for (index=0; index < t->size; index++) tb_gen_init(&g, index);
+  for (plies=0; plies <= TB_MAX_PLIES; plies++) {
+    for (e=g.ev_head[plies]; e != -1; e=g.ev_next[e])
+      if (g.val[g.ev_index[e]] == TB_DRAW) {
+	g.val[g.ev_index[e]] = plies + 1;
+	g.queue[g.tail++] = g.ev_index[e];
+      }
+    end = g.tail;
+    if (end > head) longest = plies;
+    if (plies == TB_MAX_PLIES) break;
+    for (; head < end; head++) tb_gen_back(&g, g.queue[head], plies);
+  }
+
+  memset(&header, 0, sizeof(tb_header_));
+  memcpy(header.magic, TB_MAGIC, 4);
+  header.version = TB_VERSION;
+  strcpy(header.material, t->material);
+  header.size = t->size;
+  sprintf(name, "%.1000s/%s%s", dir, t->material, TB_SUFFIX);
+  written = 0;
+  if ((file = fopen(name, "wb")) != NULL) {
+    written = fwrite(&header, sizeof(tb_header_), 1, file) == 1 &&
+      fwrite(g.val, 1, t->size, file) == t->size;
+    written = !fclose(file) && written;
+  }
+  printf("%-5s %10u positions, longest mate %3i plies, %.1f s%s\n", t->material, t->size,
+	 longest, (double) (clock() - start) / CLOCKS_PER_SEC, written ? "" : ", not written");
+  free(g.val);
+  free(g.cnt);
+  free(g.conv_loss);
+  free(g.queue);
+  free(g.ev_index);
+  free(g.ev_next);
+  free_position(g.pos);
+  return written;
+}
+
+/*-------------------------------------------------------.
+ | function: tb_generate(char *dir) -> int               |
+ | returns: the number of tables in dir.                 |
+ | effects: generates the tables missing in dir, the     |
+ |          tables are mapped as by tb_init.             |
+  -------------------------------------------------------*/
+int tb_generate(char *dir){
+  int i;
+
+  tb_setup();
+  loaded = 0;
+  for (i=0; i < table_count; i++) {
+    tb_unload(tables + i);
+    if (!tb_load(tables + i, dir) &&
+	!(tb_generate_table(tables + i, dir) && tb_load(tables + i, dir)))
+      continue;
+    loaded++;
+  }
+  return loaded;
+}
@@ -0,0 +1,37 @@
+#ifndef TB
+#define TB
+#include "position.h"
+
+#define TB_MAX_PIECES 4 /* kings included */
+#define TB_MAX_TABLES 64
+#define TB_NONE -1 /* from tb_probe: the position is not in the tables */
+#define TB_DRAW 0
+#define TB_BROKEN 255 /* illegal or duplicate index, never probed */
+#define TB_MAX_PLIES 253 /* longest mate a table can store */
+#define TB_IS_WIN(V) ((V) != TB_DRAW && !((V) & 1)) /* the side to move mates */
+#define TB_IS_LOSS(V) ((V) & 1) /* the side to move is mated */
+#define TB_PLIES(V) ((V) - 1) /* plies to the mate */
+#define TB_MAGIC "MMTB"
+#define TB_VERSION 1
+#define TB_SUFFIX ".mtb"
+
+/*
+  the file of one material, the header is followed by one byte for
+  each index: TB_DRAW, the plies to the mate plus 1 (even if the
+  side to move mates, odd if it is mated) or TB_BROKEN. The ints
+  are in the byte order of the machine that made the file.
+ */
+typedef struct tb_header_ {
+  char magic[4]; /* TB_MAGIC */
+  int version; /* TB_VERSION */
+  char material[8]; /* "KQKR", white has the stronger pieces */
+  unsigned int size; /* bytes after the header */
+} tb_header_;
+
+/* FUNCTIONS */
+int tb_init(char *dir);
+int tb_generate(char *dir);
+int tb_probe(position pos);
+move tb_root_move(position pos, int *value);
+int tb_tables();
+#endif
@@ -1,57 +1,508 @@
 #include "trans.h"
+#include <pthread.h>
+#ifndef WIN32
+#include <sys/mman.h>
+#include <sys/stat.h>
+#include <fcntl.h>
+#include <unistd.h>
+#endif
 
-/* The Transposition Table */
-static trans_table_entry_ trans_table[MAX_TRANS_TABLE];
+/* The Transposition Table of the default engine, allocated on the first call */
+static trans_table_ the_table;
+static pthread_once_t the_table_once = PTHREAD_ONCE_INIT;
+/* the searches counts of all tables, held while a table is replaced */
+static pthread_mutex_t searches_lock = PTHREAD_MUTEX_INITIALIZER;
 
 int trans_depth(trans_table_entry tt_entry){
-  return tt_entry->depth;
+  return TT_SIGNED(TT_FIELD(tt_entry->data, TT_DEPTH_SHIFT, TT_DEPTH_BITS), TT_DEPTH_BITS);
 }
 move trans_best_move(trans_table_entry tt_entry){
-  return tt_entry->best_move;
+  return TT_FIELD(tt_entry->data, 0, TT_MOVE_BITS);
 }
 
 int trans_value(trans_table_entry tt_entry){
-  return tt_entry->value;
+  return TT_SIGNED(TT_FIELD(tt_entry->data, TT_VALUE_SHIFT, TT_VALUE_BITS), TT_VALUE_BITS);
 }
 int trans_flag(trans_table_entry tt_entry){
-  return tt_entry->value_flag;
+  return TT_FIELD(tt_entry->data, TT_FLAG_SHIFT, 2);
 }
 
-int trans_table_hash_NOT_USED(U64 key, int i){
-  return ((key+i) % MAX_TRANS_TABLE);
+static int trans_generation(trans_table_entry tt_entry){
+  return TT_FIELD(tt_entry->data, TT_GENERATION_SHIFT, 5);
 }
 
 /*-------------------------------------------------------.
- | function: trans_table_insert(position pos, int depth, | 
- |           move bestmove, int value, int value_flag)   |
- | returns: 1 if succesful, 0 if the table is full.      |
- | effetcs: add's pos to the transposition table, if pos |
- | is already stored its updated if depth>stored depth.  |
-  -------------------------------------------------------*/
-int trans_table_insert(position pos, int depth, move best_move, int value, int value_flag){
-  U64 key;
-  trans_table_entry_ new_entry;
-  key = getZobristKey(pos);
-  
-  if (depth<trans_table[key % MAX_TRANS_TABLE].depth)
+ | function: entry_key(trans_table_entry entry) -> U64   |
+ | returns: the key of the position stored in entry, or  |
+ |          garbage if entry was read while written.     |
+  -------------------------------------------------------*/
+static U64 entry_key(trans_table_entry entry){
+  return entry->check ^ entry->data;
+}
+
+/*-------------------------------------------------------.
+ | function: entry_worth(trans_table tt,                 |
+ |           trans_table_entry entry) -> int             |
+ | returns: how much entry is worth keeping, its depth   |
+ |          and more if the current search stored it.    |
+  -------------------------------------------------------*/
+static int entry_worth(trans_table tt, trans_table_entry entry){
+  if (entry->check == 0) return -1000;
+  if (trans_generation(entry) == tt->generation % TT_AGES)
+    return trans_depth(entry) + 256;
+  return trans_depth(entry);
+}
+
+/*-------------------------------------------------------.
+ | function: trans_table_release(trans_table tt) -> void |
+ | effects: frees or unmaps the entries of tt.           |
+  -------------------------------------------------------*/
+static void trans_table_release(trans_table tt){
+#ifndef WIN32
+  if (tt->mapped) munmap(tt->memory, tt->mapped);
+  else free(tt->memory);
+#else
+  free(tt->memory);
+#endif
+  tt->memory = NULL;
+  tt->mapped = 0;
+}
+
+/*-------------------------------------------------------.
+ | function: trans_table_alloc(trans_table tt, int size) |
+ |           -> int                                      |
+ | returns: 1 if tt is now an empty table of at most     |
+ |          size entries, the largest power of two of    |
+ |          buckets. 0 if there is not enough memory or  |
+ |          size is not positive, tt is kept.            |
+  -------------------------------------------------------*/
+static int trans_table_alloc(trans_table tt, int size){
+  U64 buckets = 1;
+  void *memory;
+
+  if (size <= 0) return 0;
+  while (buckets * 2 * TT_BUCKET <= (U64) size) buckets *= 2;
+  if (buckets * sizeof(trans_table_bucket_) + CACHE_LINE > (size_t) -1)
+    return 0; /* more than the address space */
+  memory = calloc((size_t) (buckets * sizeof(trans_table_bucket_) + CACHE_LINE - 1), 1);
+  if (memory == NULL) return 0;
+  trans_table_release(tt);
+  tt->memory = memory;
+  tt->buckets = (trans_table_bucket) (((size_t) memory + CACHE_LINE - 1) &
+				      ~(size_t) (CACHE_LINE - 1));
+  tt->mask = buckets - 1;
+  tt->size = (int) (buckets * TT_BUCKET);
+  tt->generation = 0;
+  tt->seed_moves = 0;
+  return 1;
+}
+
+/*-------------------------------------------------------.
+ | function: trans_table_entries_mb(int mb) -> int       |
+ | returns: the entries that fit in mb megabytes, at     |
+ |          least 1 and at most TT_MAX_MB.               |
+  -------------------------------------------------------*/
+int trans_table_entries_mb(int mb){
+  if (mb > TT_MAX_MB) mb = TT_MAX_MB;
+  if (mb < 1) mb = 1;
+  return mb * (int) (1048576 / sizeof(trans_table_entry_));
+}
+
+/*-------------------------------------------------------.
+ | function: default_trans_table_init() -> void          |
+ | effects: allocates the table of the default engine,   |
+ |          once.                                        |
+  -------------------------------------------------------*/
+static void default_trans_table_init(){
+  int mb;
+
+  for (mb=TT_DEFAULT_MB; the_table.buckets == NULL && mb > 0; mb /= 2)
+    trans_table_alloc(&the_table, trans_table_entries_mb(mb));
+}
+
+/*-------------------------------------------------------.
+ | function: default_trans_table() -> trans_table        |
+ | returns: the table of the default engine, used by the |
+ |          searches that have no engine of their own.   |
+ |          TT_DEFAULT_MB, or less if there is not that  |
+ |          much memory.                                 |
+ | note: any thread may make the first call.             |
+  -------------------------------------------------------*/
+trans_table default_trans_table(){
+  pthread_once(&the_table_once, default_trans_table_init);
+  return &the_table;
+}
+
+/*-------------------------------------------------------.
+ | function: new_trans_table(int size) -> trans_table    |
+ | returns: an empty table of at most size entries (a    |
+ |          power of two of buckets), NULL if there is   |
+ |          not enough memory.                           |
+  -------------------------------------------------------*/
+trans_table new_trans_table(int size){
+  trans_table tt = (trans_table) calloc(1, sizeof(trans_table_));
+
+  if (tt == NULL) return NULL;
+  if (!trans_table_alloc(tt, size)) {
+    free(tt);
+    return NULL;
+  }
+  return tt;
+}
+
+/*-------------------------------------------------------.
+ | function: free_trans_table(trans_table tt) -> void    |
+ | effects: frees a table from new_trans_table.          |
+  -------------------------------------------------------*/
+void free_trans_table(trans_table tt){
+  if (tt == NULL || tt == &the_table) return;
+  trans_table_release(tt);
+  free(tt);
+}
+
+/*-------------------------------------------------------.
+ | function: trans_table_resize(trans_table tt,          |
+ |           int size) -> int                            |
+ | returns: 1 if tt now has at most size entries, 0 if   |
+ |          there is not enough memory or a search of tt |
+ |          is running, and tt is kept.                  |
+ | effects: the table is empty.                          |
+  -------------------------------------------------------*/
+int trans_table_resize(trans_table tt, int size){
+  int resized = 0;
+
+  pthread_mutex_lock(&searches_lock);
+  if (tt->searches == 0) resized = trans_table_alloc(tt, size);
+  pthread_mutex_unlock(&searches_lock);
+  return resized;
+}
+
+/*-------------------------------------------------------.
+ | function: trans_table_enter(trans_table tt) -> void   |
+ | effects: a search of tt is running until the matching |
+ |          trans_table_leave, tt is not resized or      |
+ |          loaded meanwhile.                            |
+  -------------------------------------------------------*/
+void trans_table_enter(trans_table tt){
+  pthread_mutex_lock(&searches_lock);
+  tt->searches++;
+  pthread_mutex_unlock(&searches_lock);
+}
+
+/*-------------------------------------------------------.
+ | function: trans_table_leave(trans_table tt) -> void   |
+ | effects: a search of tt from trans_table_enter is     |
+ |          done.                                        |
+  -------------------------------------------------------*/
+void trans_table_leave(trans_table tt){
+  pthread_mutex_lock(&searches_lock);
+  tt->searches--;
+  pthread_mutex_unlock(&searches_lock);
+}
+
+/*-------------------------------------------------------.
+ | function: trans_table_save(trans_table tt,            |
+ |           char *name) -> int                          |
+ | returns: 1 if tt, with the seed of its next search,   |
+ |          was written to the file name, else 0.        |
+ | note: the file is written next to name and renamed,   |
+ |       an older file is whole until then. May run      |
+ |       while tt is searched, the entries written at    |
+ |       the same time don't match their key on load.    |
+  -------------------------------------------------------*/
+int trans_table_save(trans_table tt, char *name){
+  trans_table_header_ header;
+  char page[TT_FILE_DATA], *tmp;
+  FILE *file;
+  U64 size = (tt->mask + 1) * sizeof(trans_table_bucket_);
+  int ok;
+
+  memset(&header, 0, sizeof(trans_table_header_));
+  memcpy(header.magic, TT_FILE_MAGIC, 4);
+  header.version = TT_FILE_VERSION;
+  header.entry_size = sizeof(trans_table_entry_);
+  header.bucket = TT_BUCKET;
+  header.zobrist_seed = ZOBRIST_SEED;
+  header.buckets = tt->mask + 1;
+  header.generation = tt->generation;
+  header.seed_moves = tt->seed_moves;
+  header.seed_depth = tt->seed_depth;
+  header.seed_value = tt->seed_value;
+  memcpy(header.seed_keys, tt->seed_keys, sizeof(header.seed_keys));
+  memcpy(header.seed_pv, tt->seed_pv, sizeof(header.seed_pv));
+  memset(page, 0, TT_FILE_DATA);
+  memcpy(page, &header, sizeof(trans_table_header_));
+
+  tmp = (char *) malloc(strlen(name) + 5);
+  if (tmp == NULL) return 0;
+  sprintf(tmp, "%s.tmp", name);
+  if ((file = fopen(tmp, "wb")) == NULL) {
+    free(tmp);
+    return 0;
+  }
+  ok = fwrite(page, 1, TT_FILE_DATA, file) == TT_FILE_DATA &&
+    fwrite(tt->buckets, 1, (size_t) size, file) == size;
+  if (fclose(file)) ok = 0;
+  if (ok) {
+#ifdef WIN32
+    remove(name);
+#endif
+    ok = rename(tmp, name) == 0;
+  }
+  if (!ok) remove(tmp);
+  free(tmp);
+  return ok;
+}
+
+/*-------------------------------------------------------.
+ | function: trans_table_read(trans_table tt,            |
+ |           char *name) -> int                          |
+ | returns: as trans_table_load, without the check for   |
+ |          a running search.                            |
+  -------------------------------------------------------*/
+static int trans_table_read(trans_table tt, char *name){
+  trans_table_header_ header;
+  U64 size;
+  void *memory;
+  int valid;
+#ifndef WIN32
+  struct stat st;
+  int fd;
+
+  if ((fd = open(name, O_RDONLY)) < 0) return 0;
+  if (read(fd, &header, sizeof(trans_table_header_)) != sizeof(trans_table_header_) ||
+      fstat(fd, &st)) {
+    close(fd);
+    return 0;
+  }
+#else
+  FILE *file;
+
+  if ((file = fopen(name, "rb")) == NULL) return 0;
+  if (fread(&header, 1, sizeof(trans_table_header_), file) != sizeof(trans_table_header_)) {
+    fclose(file);
+    return 0;
+  }
+#endif
+  size = header.buckets * sizeof(trans_table_bucket_);
+  valid = !memcmp(header.magic, TT_FILE_MAGIC, 4) && header.version == TT_FILE_VERSION &&
+    header.entry_size == sizeof(trans_table_entry_) && header.bucket == TT_BUCKET &&
+    header.zobrist_seed == ZOBRIST_SEED && header.buckets > 0 &&
+    (header.buckets & (header.buckets - 1)) == 0 &&
+    header.buckets * TT_BUCKET <= (U64) trans_table_entries_mb(TT_MAX_MB) &&
+    header.seed_moves >= 0 && header.seed_moves <= TT_SEED_PLIES;
+#ifndef WIN32
+  if (!valid || (U64) st.st_size != TT_FILE_DATA + size) {
+    close(fd);
     return 0;
-  new_entry.key=key;
-  new_entry.depth=depth;
-  new_entry.best_move=best_move;
-  new_entry.value=value;
-  new_entry.value_flag=value_flag;
+  }
+#else
+  if (!valid) {
+    fclose(file);
+    return 0;
+  }
+#endif
+#ifndef WIN32
+  memory = mmap(NULL, (size_t) (TT_FILE_DATA + size), PROT_READ | PROT_WRITE, MAP_PRIVATE, fd, 0);
+  close(fd);
+  if (memory == MAP_FAILED) return 0;
+  trans_table_release(tt);
+  tt->mapped = (size_t) (TT_FILE_DATA + size);
+#else
+  memory = malloc((size_t) (TT_FILE_DATA + size));
+  if (memory == NULL || fseek(file, 0, SEEK_SET) ||
+      fread(memory, 1, (size_t) (TT_FILE_DATA + size), file) != TT_FILE_DATA + size) {
+    free(memory);
+    fclose(file);
+    return 0;
+  }
+  fclose(file);
+  trans_table_release(tt);
+#endif
+  tt->memory = memory;
+  tt->buckets = (trans_table_bucket) ((char *) memory + TT_FILE_DATA);
+  tt->mask = header.buckets - 1;
+  tt->size = (int) (header.buckets * TT_BUCKET);
+  tt->generation = header.generation;
+  tt->seed_moves = header.seed_moves;
+  tt->seed_depth = header.seed_depth;
+  tt->seed_value = header.seed_value;
+  memcpy(tt->seed_keys, header.seed_keys, sizeof(header.seed_keys));
+  memcpy(tt->seed_pv, header.seed_pv, sizeof(header.seed_pv));
+  return 1;
+}
 
-  trans_table[key % MAX_TRANS_TABLE]=new_entry;
+/*-------------------------------------------------------.
+ | function: trans_table_load(trans_table tt,            |
+ |           char *name) -> int                          |
+ | returns: 1 if tt is now the table saved in the file   |
+ |          name, with its size and seed. 0 if the file  |
+ |          is missing or not a table of this version,   |
+ |          or a search of tt is running, tt is kept.    |
+ | note: the file is mapped copy on write, its pages are |
+ |       read when the search first needs them and the   |
+ |       file never changes.                             |
+  -------------------------------------------------------*/
+int trans_table_load(trans_table tt, char *name){
+  int loaded = 0;
+
+  pthread_mutex_lock(&searches_lock);
+  if (tt->searches == 0) loaded = trans_table_read(tt, name);
+  pthread_mutex_unlock(&searches_lock);
+  return loaded;
+}
+
+/*-------------------------------------------------------.
+ | function: trans_table_hashfull(trans_table tt) -> int |
+ | returns: the permille of the first 1000 entries       |
+ |          stored by the current search.                |
+  -------------------------------------------------------*/
+int trans_table_hashfull(trans_table tt){
+  int i, used=0, sample = tt->size < 1000 ? tt->size : 1000;
+  trans_table_entry entry;
+
+  for (i=0; i < sample; i++) {
+    entry = &tt->buckets[i / TT_BUCKET].entries[i % TT_BUCKET];
+    if (entry->check != 0 && trans_generation(entry) == tt->generation % TT_AGES) used++;
+  }
+  return used * 1000 / sample;
+}
+
+/*-------------------------------------------------------.
+ | function: trans_table_data(trans_table tt, int depth, |
+ |           move bestmove, int value, int value_flag)   |
+ |           -> U64                                      |
+ | returns: the data of an entry stored now in tt.       |
+  -------------------------------------------------------*/
+U64 trans_table_data(trans_table tt, int depth, move best_move, int value, int value_flag){
+  return ((U64) best_move & ((1ULL << TT_MOVE_BITS) - 1)) |
+    ((U64) (value & ((1 << TT_VALUE_BITS) - 1)) << TT_VALUE_SHIFT) |
+    ((U64) (depth & ((1 << TT_DEPTH_BITS) - 1)) << TT_DEPTH_SHIFT) |
+    ((U64) (value_flag & 3) << TT_FLAG_SHIFT) |
+    ((U64) (tt->generation % TT_AGES) << TT_GENERATION_SHIFT);
+}
+
+/*-------------------------------------------------------.
+ | function: trans_table_store(trans_table tt, U64 key,  |
+ |           int depth, move bestmove, int value,        |
+ |           int value_flag)                             |
+ | effects: stores the position of key in its bucket.    |
+ |          Of the first TT_BUCKET-1 entries, the one of |
+ |          key or else the least worth (see entry_worth)|
+ |          is replaced if the position is worth as much |
+ |          and moves to the last entry. Else the        |
+ |          position replaces the last entry. Without a  |
+ |          best move (a fail low) the move stored for   |
+ |          key is kept.                                 |
+ | note: no locks, other threads may store and probe at  |
+ |       the same time (see trans_table_entry_).         |
+  -------------------------------------------------------*/
+void trans_table_store(trans_table tt, U64 key, int depth, move best_move, int value, int value_flag){
+  trans_table_entry_ new_entry, old, victim;
+  trans_table_entry entries = tt->buckets[key & tt->mask].entries;
+  int i, worth, victim_worth=0, replace=-1, found=0;
+
+  for (i=0; i < TT_BUCKET-1; i++) {
+    old = entries[i]; /* a copy, the entry may change meanwhile */
+    if (entry_key(&old) == key && old.check != 0) {
+      replace = i;
+      victim = old;
+      victim_worth = entry_worth(tt, &old);
+      found = 1;
+      break;
+    }
+    worth = entry_worth(tt, &old);
+    if (replace == -1 || worth < victim_worth) {
+      replace = i;
+      victim = old;
+      victim_worth = worth;
+    }
+  }
+  if (best_move == NULL_MOVE) {
+    if (!found) old = entries[TT_BUCKET-1];
+    if (entry_key(&old) == key && old.check != 0) best_move = trans_best_move(&old);
+  }
+  new_entry.data = trans_table_data(tt, depth, best_move, value, value_flag);
+  new_entry.check = key ^ new_entry.data;
+
+  if (entry_worth(tt, &new_entry) >= victim_worth) {
+    if (entry_key(&victim) != key && victim.check != 0) entries[TT_BUCKET-1]=victim;
+    entries[replace]=new_entry;
+  }
+  else entries[TT_BUCKET-1]=new_entry;
+}
+
+/*-------------------------------------------------------.
+ | function: trans_table_insert(trans_table tt,          |
+ |           position pos, int depth, move bestmove,     |
+ |           int value, int value_flag)                  |
+ | returns: 1, pos is always stored.                     |
+ | effetcs: add's pos to the transposition table, see    |
+ |          trans_table_store.                           |
+  -------------------------------------------------------*/
+int trans_table_insert(trans_table tt, position pos, int depth, move best_move, int value, int value_flag){
+  trans_table_store(tt, getZobristKey(pos), depth, best_move, value, value_flag);
   return 1; 
 }
 
-trans_table_entry trans_table_search(position pos){
-  U64 key;
-  
-  key = getZobristKey(pos);
-  if (trans_table[(key % MAX_TRANS_TABLE)].key==key) 
-    return &trans_table[(key % MAX_TRANS_TABLE)];
-  else return NULL;
+/*-------------------------------------------------------.
+ | function: trans_table_reset(trans_table tt) -> void   |
+ | effects: removes all positions from tt, and the seed  |
+ |          of the next search.                          |
+  -------------------------------------------------------*/
+void trans_table_reset(trans_table tt){
+  memset(tt->buckets, 0, (tt->mask + 1) * sizeof(trans_table_bucket_));
+  tt->generation = 0;
+  tt->seed_moves = 0;
 }
 
+/*-------------------------------------------------------.
+ | function: trans_table_new_search(trans_table tt)      |
+ |           -> void                                     |
+ | effects: the entries stored so far are of an earlier  |
+ |          search. They are still found, but no longer  |
+ |          kept from shallower entries. An entry of     |
+ |          TT_AGES searches ago looks current again.    |
+  -------------------------------------------------------*/
+void trans_table_new_search(trans_table tt){
+  tt->generation++;
+}
 
+/*-------------------------------------------------------.
+ | function: trans_table_clear() -> void                 |
+ | effects: removes all positions from the table of the  |
+ |          default engine.                              |
+  -------------------------------------------------------*/
+void trans_table_clear(){
+  trans_table_reset(default_trans_table());
+}
+
+/*-------------------------------------------------------.
+ | function: trans_table_probe(trans_table tt, U64 key,  |
+ |           trans_table_entry copy) -> trans_table_entry|
+ | returns: copy, a copy of the entry of key, or NULL if |
+ |          it is not in tt. An entry read while another |
+ |          thread writes it does not match and is not   |
+ |          found.                                       |
+  -------------------------------------------------------*/
+trans_table_entry trans_table_probe(trans_table tt, U64 key, trans_table_entry copy){
+  trans_table_entry entries = tt->buckets[key & tt->mask].entries;
+  int i;
+  
+  for (i=0; i < TT_BUCKET; i++) {
+    *copy = entries[i];
+    if (entry_key(copy) == key && copy->check != 0)
+      return copy;
+  }
+  return NULL;
+}
+
+/*-------------------------------------------------------.
+ | function: trans_table_search(trans_table tt,          |
+ |           position pos, trans_table_entry copy)       |
+ |           -> trans_table_entry                        |
+ | returns: trans_table_probe of the key of pos.         |
+  -------------------------------------------------------*/
+trans_table_entry trans_table_search(trans_table tt, position pos, trans_table_entry copy){
+  return trans_table_probe(tt, getZobristKey(pos), copy);
+}
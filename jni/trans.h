@@ -6,25 +6,116 @@
 #define TT_EXACT 1
 #define TT_ALPHA 2
 #define TT_BETA  3
-#define MAX_TRANS_TABLE (1299721)
+#define TT_BUCKET 4 /* entries of a bucket, one cache line */
+#define TT_AGES 32 /* generations told apart, see trans_table_new_search */
+#define TT_DEFAULT_MB 32 /* size of the table of the default engine */
+#define TT_MAX_MB 16384 /* the entries still fit in an int */
+#define TT_SEED_PLIES 32 /* of the pv kept to seed the next search */
+#define TT_FILE_MAGIC "MMTT"
+#define TT_FILE_VERSION 3 /* 3: the keys after an en passant capture changed */
+#define TT_FILE_DATA 4096 /* offset of the buckets in the file, a page */
 
-/* Transposition Table Entry */
+/*
+  the data of an entry packed in one word, read with trans_depth,
+  trans_best_move, trans_value and trans_flag.
+ */
+#define TT_MOVE_BITS 29 /* the best move found at depth, a whole move */
+#define TT_VALUE_SHIFT 29 /* value of this position, signed */
+#define TT_VALUE_BITS 20
+#define TT_DEPTH_SHIFT 49 /* the searched depth, signed */
+#define TT_DEPTH_BITS 8
+#define TT_FLAG_SHIFT 57 /* is this value an EXACT, ALPHA or BETA value */
+#define TT_GENERATION_SHIFT 59 /* of the search that stored it, modulo TT_AGES */
+#define TT_FIELD(DATA,SHIFT,BITS) ((int) (((DATA) >> (SHIFT)) & ((1ULL << (BITS)) - 1)))
+#define TT_SIGNED(FIELD,BITS) ((FIELD) - (((FIELD) >> ((BITS) - 1)) << (BITS)))
+
+/*
+  Transposition Table Entry. The table is shared by searches on
+  other threads without locks: an entry being written by one of
+  them can be read half old and half new. The key is stored xor
+  the data, so such an entry no longer matches its key and is not
+  found. 16 bytes, a bucket of TT_BUCKET is one cache line.
+ */
 typedef struct trans_table_entry_ *trans_table_entry;
 typedef struct trans_table_entry_ {
-  U64 key; /* the position that is stored */
-  int depth; /* the searched depth */
-  move best_move; /* the best move found at depth */
-  int value; /* value of this position */
-  int value_flag; /* is this value an EXACT, ALPHA or BETA value */
+  U64 check; /* the key of the position xor data, 0 if empty */
+  U64 data; /* see TT_MOVE_BITS */
 } trans_table_entry_;
 
+/*
+  the entries a key can be stored in: entries 0 to TT_BUCKET-2
+  keep the deepest entries of the current search, the last entry
+  the last one stored.
+ */
+typedef struct trans_table_bucket_ *trans_table_bucket;
+typedef struct trans_table_bucket_ {
+  trans_table_entry_ entries[TT_BUCKET];
+} trans_table_bucket_;
+
+/*
+  a transposition table, the one of the default engine or
+  one made by new_trans_table for another engine.
+ */
+typedef struct trans_table_ *trans_table;
+typedef struct trans_table_ {
+  trans_table_bucket buckets;
+  void *memory; /* as allocated, buckets is aligned on a cache line */
+  size_t mapped; /* bytes of memory mapped from a file, 0 if allocated */
+  U64 mask; /* buckets-1, the buckets are a power of two */
+  int size; /* entries */
+  int generation; /* of the current search, see trans_table_new_search */
+  int searches; /* running, see trans_table_enter */
+  /* where the last search of the table stopped, to seed the next one */
+  U64 seed_keys[TT_SEED_PLIES+1]; /* [i] is the position after i moves of seed_pv */
+  move seed_pv[TT_SEED_PLIES];
+  int seed_moves; /* moves in seed_pv, 0 if there is no seed */
+  int seed_depth; /* the last complete iteration, at seed_keys[0] */
+  int seed_value; /* its score, for the side to move at seed_keys[0] */
+} trans_table_;
+
+/*
+  the header of a table saved by trans_table_save, the buckets
+  follow at TT_FILE_DATA. The file is in the byte order and the
+  entry layout of the machine that saved it.
+ */
+typedef struct trans_table_header_ {
+  char magic[4]; /* TT_FILE_MAGIC */
+  int version; /* TT_FILE_VERSION */
+  int entry_size; /* sizeof(trans_table_entry_) */
+  int bucket; /* TT_BUCKET */
+  U64 zobrist_seed; /* the keys were made from ZOBRIST_SEED */
+  U64 buckets;
+  int generation;
+  int seed_moves;
+  int seed_depth;
+  int seed_value;
+  U64 seed_keys[TT_SEED_PLIES+1];
+  move seed_pv[TT_SEED_PLIES];
+} trans_table_header_;
+
 /* FUNCTIONS */
-int trans_table_insert(position pos, int depth, move best_move, int value, int value_flag);
-trans_table_entry trans_table_search(position pos);
+trans_table default_trans_table();
+trans_table new_trans_table(int size);
+void free_trans_table(trans_table tt);
+int trans_table_resize(trans_table tt, int size);
+int trans_table_entries_mb(int mb);
+int trans_table_hashfull(trans_table tt);
+int trans_table_save(trans_table tt, char *name);
+int trans_table_load(trans_table tt, char *name);
+int trans_table_insert(trans_table tt, position pos, int depth, move best_move, int value, int value_flag);
+trans_table_entry trans_table_search(trans_table tt, position pos, trans_table_entry copy);
+U64 trans_table_data(trans_table tt, int depth, move best_move, int value, int value_flag);
+void trans_table_store(trans_table tt, U64 key, int depth, move best_move, int value, int value_flag);
+trans_table_entry trans_table_probe(trans_table tt, U64 key, trans_table_entry copy);
+void trans_table_reset(trans_table tt);
+void trans_table_new_search(trans_table tt);
+void trans_table_enter(trans_table tt);
+void trans_table_leave(trans_table tt);
 int trans_depth(trans_table_entry tt_entry);
 move trans_best_move(trans_table_entry tt_entry);
 int trans_value(trans_table_entry tt_entry);
 int trans_flag(trans_table_entry tt_entry);
+void trans_table_clear();
 
 void push_key(U64 key);
 U64 pop_key();
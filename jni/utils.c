@@ -1,18 +1,213 @@
 #include "utils.h"
+#ifdef _WIN32
+#include <windows.h>
+#endif
 
 /* the chess clock */
 static chess_clock the_clock;
 
+/*-------------------------------------------------------.
+ | function: monotonic_ms() -> long long                 |
+ | returns: milliseconds from an arbitrary point, never  |
+ |          going back when the system time is set.      |
+  -------------------------------------------------------*/
+long long monotonic_ms(){
+#ifdef _WIN32
+  return (long long) GetTickCount64();
+#else
+  struct timespec now;
+  clock_gettime(CLOCK_MONOTONIC, &now);
+  return (long long) now.tv_sec * 1000 + now.tv_nsec / 1000000;
+#endif
+}
+
+/*-------------------------------------------------------.
+ | function: monotonic_ns() -> long long                 |
+ | returns: nanoseconds on the clock of monotonic_ms,    |
+ |          to time short calls.                         |
+  -------------------------------------------------------*/
+long long monotonic_ns(){
+#ifdef _WIN32
+  LARGE_INTEGER now, frequency;
+  QueryPerformanceCounter(&now);
+  QueryPerformanceFrequency(&frequency);
+  return (long long) (now.QuadPart * (1000000000.0 / frequency.QuadPart));
+#else
+  struct timespec now;
+  clock_gettime(CLOCK_MONOTONIC, &now);
+  return (long long) now.tv_sec * 1000000000 + now.tv_nsec;
+#endif
+}
+
+/*-------------------------------------------------------.
+ | function: time_start(time_manager tm, int soft,       |
+ |           int hard) -> void                           |
+ | effects: tm has the deadlines soft and hard, in ms    |
+ |          from now, 0 is none.                         |
+  -------------------------------------------------------*/
+void time_start(time_manager tm, int soft, int hard){
+  tm->start = monotonic_ms();
+  tm->soft = soft;
+  tm->hard = hard;
+  tm->clock = 0;
+  tm->scale = 100;
+  tm->stable = 0;
+  tm->best = 0;
+}
+
+/*-------------------------------------------------------.
+ | function: time_elapsed(time_manager tm) -> int        |
+ | returns: milliseconds since the search started.       |
+  -------------------------------------------------------*/
+int time_elapsed(time_manager tm){
+  return (int) (monotonic_ms() - tm->start);
+}
+
+/*-------------------------------------------------------.
+ | function: time_soft_over(time_manager tm) -> int      |
+ | returns: 1 if no iteration should be started, the     |
+ |          scaled soft deadline (at most the hard one)  |
+ |          is past. Else 0.                             |
+  -------------------------------------------------------*/
+int time_soft_over(time_manager tm){
+  int soft = tm->soft;
+  int hard = tm->hard;
+
+  if (!soft) return 0;
+  soft = (int) ((long long) soft * tm->scale / 100);
+  if (hard && soft > hard) soft = hard;
+  return time_elapsed(tm) >= soft;
+}
+
+/*-------------------------------------------------------.
+ | function: time_hard_over(time_manager tm) -> int      |
+ | returns: 1 if the search must stop now, TIME_OVERHEAD |
+ |          ms before the hard deadline to unwind and    |
+ |          join the helpers in time. Else 0.            |
+  -------------------------------------------------------*/
+int time_hard_over(time_manager tm){
+  int hard = tm->hard;
+
+  if (hard > 2 * TIME_OVERHEAD) hard -= TIME_OVERHEAD;
+  return hard && time_elapsed(tm) >= hard;
+}
+
+/*-------------------------------------------------------.
+ | function: time_iteration(time_manager tm, int best)   |
+ | effects: the soft deadline is scaled after an         |
+ |          iteration with the best move best: up when   |
+ |          it changed, down when it is stable.          |
+  -------------------------------------------------------*/
+void time_iteration(time_manager tm, int best){
+  if (tm->best && best != tm->best) {
+    tm->stable = 0;
+    tm->scale = tm->scale < TIME_UNSTABLE ? TIME_UNSTABLE : tm->scale + 50;
+    if (tm->scale > TIME_MAX_SCALE) tm->scale = TIME_MAX_SCALE;
+  }
+  else if (tm->best) {
+    tm->stable++;
+    if (tm->stable >= TIME_STABLE_ITERATIONS) tm->scale = TIME_STABLE;
+    else if (tm->scale > 100) tm->scale = 100;
+  }
+  tm->best = best;
+}
+
+/*-------------------------------------------------------.
+ | function: game_clock() -> chess_clock*                |
+ | returns: the clock set by the xboard and Utils calls. |
+  -------------------------------------------------------*/
+chess_clock *game_clock(){
+  return &the_clock;
+}
+
+/*-------------------------------------------------------.
+ | function: clock_set_time_control(chess_clock *clock,  |
+ |           int base, int increment) -> int             |
+ | note: sets the time control of clock, only ICS        |
+ |       controls.                                       |
+  -------------------------------------------------------*/
+int clock_set_time_control(chess_clock *clock, int base, int increment){
+  clock->base = base*100;
+  clock->increment = increment*100;
+  clock->speed = 35;
+  return 1;
+}
+
+/*-------------------------------------------------------.
+ | function: clock_set_comp_time(chess_clock *clock,     |
+ |           int time) -> int                            |
+ | note: sets the computers time on clock, centi sec.    |
+  -------------------------------------------------------*/
+int clock_set_comp_time(chess_clock *clock, int time){
+  clock->comp_time = time;
+  return 1;
+}
+
+/*-------------------------------------------------------.
+ | function: clock_set_opp_time(chess_clock *clock,      |
+ |           int time) -> int                            |
+ | note: sets the opponents time on clock, centi sec.    |
+  -------------------------------------------------------*/
+int clock_set_opp_time(chess_clock *clock, int time){
+  clock->opp_time = time;
+  return 1;
+}
+
+/*-------------------------------------------------------.
+ | function: clock_allocate(chess_clock *clock,          |
+ |           long long start) -> int                     |
+ | note: allocates time on clock for a move that started |
+ |       at start (monotonic_ms), in centi sec.          |
+  -------------------------------------------------------*/
+int clock_allocate(chess_clock *clock, long long start){
+  int time = 0, speed = 0;
+  
+  speed = clock->speed;
+  if ((clock->opp_time < clock->comp_time) && 
+      (speed > 10))
+    speed -= 2;
+  else if (speed < 50) speed += 5;
+  clock->speed = speed;
+  if (clock->increment > 0)
+    time = (clock->increment-1) + (clock->comp_time/speed);
+  else time = clock->comp_time/speed;
+  clock->allocated = start;
+  clock->alloc_time = time*10;  
+  return time;
+}
+
+/*-------------------------------------------------------.
+ | function: clock_deadlines(chess_clock *clock,         |
+ |           time_manager tm) -> void                    |
+ | effects: the deadlines of tm are from the last        |
+ |          allocation of clock: soft is the allocated   |
+ |          time, hard TIME_HARD_FACTOR times it, at     |
+ |          most 1/TIME_HARD_SHARE of the time left.     |
+ |          Both less the time from the allocation to    |
+ |          the start of tm, at least 1 ms.              |
+  -------------------------------------------------------*/
+void clock_deadlines(chess_clock *clock, time_manager tm){
+  long long used = tm->start - clock->allocated;
+  long long soft = clock->alloc_time;
+  long long hard = soft * TIME_HARD_FACTOR;
+  long long left = clock->comp_time * 10 / TIME_HARD_SHARE;
+
+  if (hard > left) hard = left;
+  if (hard < soft) hard = soft;
+  soft -= used;
+  hard -= used;
+  tm->soft = soft > 0 ? (int) soft : 1;
+  tm->hard = hard > tm->soft ? (int) hard : tm->soft;
+  tm->clock = 1;
+}
+
 /*-------------------------------------------------------.
  | function: set_time_control(int base, int increment)   |
  | note: sets the time control, only ICS controls.       |
  | note: for standard, default 2 sec for every move.     |
   -------------------------------------------------------*/
 int set_time_control(int base, int increment){
-  the_clock.base = base*100;
-  the_clock.increment = increment*100;
-  the_clock.speed = 35;
-  return 1;
+  return clock_set_time_control(&the_clock, base, increment);
 }
 
 /*-------------------------------------------------------.
@@ -20,8 +215,7 @@ int set_time_control(int base, int increment){
  | note: sets the computers clock to time.               |
   -------------------------------------------------------*/
 int set_comp_time(int time){
-  the_clock.comp_time = time;
-  return 1;
+  return clock_set_comp_time(&the_clock, time);
 }
 
 /*-------------------------------------------------------.
@@ -29,8 +223,7 @@ int set_comp_time(int time){
  | note: sets the opponents clock to time.               |
   -------------------------------------------------------*/
 int set_opp_time(int time){
-  the_clock.opp_time = time;
-  return 1;
+  return clock_set_opp_time(&the_clock, time);
 }
 
 /*-------------------------------------------------------.
@@ -39,14 +232,7 @@ int set_opp_time(int time){
  |          the allocated time for this move. Else 0.    |
   -------------------------------------------------------*/
 int out_of_time(){
-  struct timeb current;
-  int time, second, ms;
-  ftime(&current);
-
-  second = (int) difftime(current.time, the_clock.allocated.time);
-  ms = current.millitm-the_clock.allocated.millitm;
-  time = second*1000 + ms;
-  if (time < the_clock.alloc_time)
+  if (monotonic_ms() - the_clock.allocated < the_clock.alloc_time)
     return 0;
   return 1;
 }
@@ -56,20 +242,22 @@ int out_of_time(){
  | note: allocates time for a move.                      |
   -------------------------------------------------------*/
 int allocate_time(){
-  int time = 0, speed = 0;
-  struct timeb current;
-  
-  ftime(&current);
-  speed = the_clock.speed;
-  if ((the_clock.opp_time < the_clock.comp_time) && 
-      (speed > 10))
-    speed -= 2;
-  else if (speed < 50) speed += 5;
-  the_clock.speed = speed;
-  if (the_clock.increment > 0)
-    time = (the_clock.increment-1) + (the_clock.comp_time/speed);
-  else time = the_clock.comp_time/speed;
-  the_clock.allocated = current;
-  the_clock.alloc_time = time*10;  
-  return time;
+  return allocate_time_from(monotonic_ms());
+}
+
+/*-------------------------------------------------------.
+ | function: allocate_time_from(long long start)         |
+ | note: allocates time for a move, that started at      |
+ |       start (pondering, the move is already searched).|
+  -------------------------------------------------------*/
+int allocate_time_from(long long start){
+  return clock_allocate(&the_clock, start);
+}
+
+/*-------------------------------------------------------.
+ | function: elapsed_ms(long long start) -> int          |
+ | returns: milliseconds since start (monotonic_ms).     |
+  -------------------------------------------------------*/
+int elapsed_ms(long long start){
+  return (int) (monotonic_ms() - start);
 }
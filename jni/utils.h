@@ -1,6 +1,5 @@
 #ifndef UTILS
 #define UTILS
-#include <sys/timeb.h>
 #include <stdio.h>
 #include <time.h>
 
@@ -11,13 +10,55 @@ typedef struct chess_clock {
   int comp_time; /* centi sec */
   int opp_time; 
   int speed;
-  int alloc_time;
-  struct timeb allocated; /* in milli sec */
+  int alloc_time; /* milli sec */
+  long long allocated; /* monotonic_ms when the time was allocated */
 } chess_clock;
 
+#define TIME_HARD_FACTOR 3 /* on the clock, the hard deadline is 3 allocations */
+#define TIME_HARD_SHARE 4 /* but never more than a quarter of the time left */
+#define TIME_UNSTABLE 150 /* percent of the soft deadline after a new best move */
+#define TIME_MAX_SCALE 250 /* percent, when the best move keeps changing */
+#define TIME_STABLE 60 /* percent once the best move is stable */
+#define TIME_STABLE_ITERATIONS 4 /* iterations with the same best move */
+#define TIME_OVERHEAD 2 /* ms before the hard deadline the search stops, to unwind */
+
+/*
+  the deadlines of one search, in ms from start. The soft
+  deadline is scaled by the stability of the best move: a
+  new best move gives the search more time, a best move that
+  holds for TIME_STABLE_ITERATIONS less. The hard deadline
+  is never moved.
+ */
+typedef struct time_manager_ *time_manager;
+typedef struct time_manager_ {
+  long long start; /* monotonic_ms when the search started */
+  volatile int soft; /* no iteration is started after it, 0 is none */
+  volatile int hard; /* the search stops, 0 is none */
+  volatile int clock; /* boolean: the deadlines are from the game clock */
+  int scale; /* percent of soft, from the stability of the best move */
+  int stable; /* iterations the best move did not change */
+  int best; /* best move of the last iteration, 0 before the first */
+} time_manager_;
+
+long long monotonic_ms();
+long long monotonic_ns();
+void time_start(time_manager tm, int soft, int hard);
+int time_elapsed(time_manager tm);
+int time_soft_over(time_manager tm);
+int time_hard_over(time_manager tm);
+void time_iteration(time_manager tm, int best);
+
+chess_clock *game_clock();
+int clock_set_time_control(chess_clock *clock, int base, int increment);
+int clock_set_comp_time(chess_clock *clock, int time);
+int clock_set_opp_time(chess_clock *clock, int time);
+int clock_allocate(chess_clock *clock, long long start);
+void clock_deadlines(chess_clock *clock, time_manager tm);
 int set_time_control(int base, int increment);
 int set_comp_time(int time);
 int set_opp_time(int time);
 int out_of_time();
 int allocate_time();
+int allocate_time_from(long long start);
+int elapsed_ms(long long start);
 #endif
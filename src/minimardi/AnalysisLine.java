@@ -0,0 +1,34 @@
+package minimardi;
+
+/**
+ * One of the best moves found by Search.analyze.
+ */
+public class AnalysisLine {
+
+	private int m_score;
+
+	private int[] m_pv;
+
+	public AnalysisLine(int score,int[] pv){
+		m_score = score;
+		m_pv = pv;
+	}
+
+	public int getMove(){
+		return m_pv[0];
+	}
+
+	/**
+	 * @return centipawns from whites view.
+	 */
+	public int getScore(){
+		return m_score;
+	}
+
+	/**
+	 * @return the line, starting with getMove.
+	 */
+	public int[] getPv(){
+		return m_pv;
+	}
+}
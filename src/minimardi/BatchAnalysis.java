@@ -0,0 +1,159 @@
+package minimardi;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The results of Search.analyzeBatch, in the order the positions
+ * are done. A worker only reads the next fen when it is free, and
+ * waits while the results are not taken, so the input is never read
+ * far ahead of the caller and can be very large.
+ * Dispose it to stop the workers before all results are taken.
+ */
+public class BatchAnalysis implements Iterator<BatchResult>, Disposable {
+
+	/**
+	 * Results waiting per worker before the workers wait.
+	 */
+	private static final int RESULTS_PER_WORKER = 2;
+
+	/**
+	 * Put by the last worker, in case hasNext waits.
+	 */
+	private static final BatchResult END = new BatchResult(-1, null, 0, 0, 0);
+
+	static class Input {
+		int index;
+		String fen;
+	}
+
+	private Iterator<String> m_fens;
+
+	private int m_index;
+
+	private BlockingQueue<BatchResult> m_results;
+
+	private BatchWorker[] m_workers;
+
+	private int m_running;
+
+	private BatchResult m_next;
+
+	private boolean m_disposed;
+
+	BatchAnalysis(Iterable<String> fens,SearchLimits limits,int workers){
+		if(workers < 1){
+			workers = 1;
+		}
+		m_fens = fens.iterator();
+		m_index = 0;
+		m_results = new ArrayBlockingQueue<BatchResult>(RESULTS_PER_WORKER * workers);
+		m_workers = new BatchWorker[workers];
+		m_running = workers;
+		for(int i = 0; i < workers; i++){
+			m_workers[i] = new BatchWorker(this, limits, i);
+		}
+		for(int i = 0; i < workers; i++){
+			m_workers[i].start();
+		}
+	}
+
+	/**
+	 * Wait for the next result.
+	 * @return false when all positions are done.
+	 */
+	public boolean hasNext(){
+		if(m_next != null){
+			return true;
+		}
+		boolean interrupted = false;
+		try{
+			while(true){
+				synchronized(this){
+					if(m_results.isEmpty() && (m_running == 0 || m_disposed)){
+						return false;
+					}
+				}
+				try{
+					BatchResult result = m_results.take();
+					if(result != END){
+						m_next = result;
+						return true;
+					}
+				}catch(InterruptedException e){
+					interrupted = true;
+				}
+			}
+		}finally{
+			if(interrupted){
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	public BatchResult next(){
+		if(!hasNext()){
+			throw new NoSuchElementException();
+		}
+		BatchResult result = m_next;
+		m_next = null;
+		return result;
+	}
+
+	public void remove(){
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @return the next fen for a worker, or null if there are no more.
+	 */
+	synchronized Input nextInput(){
+		if(m_disposed || !m_fens.hasNext()){
+			return null;
+		}
+		Input input = new Input();
+		input.index = m_index++;
+		input.fen = m_fens.next();
+		return input;
+	}
+
+	void put(BatchResult result) throws InterruptedException {
+		m_results.put(result);
+	}
+
+	/**
+	 * A worker has no more results, wakes hasNext when it was the last.
+	 */
+	void workerDone(){
+		boolean last;
+		synchronized(this){
+			m_running--;
+			last = m_running == 0;
+		}
+		if(last){
+			m_results.offer(END);
+		}
+	}
+
+	/**
+	 * Stops the workers, waits for them and frees their searches.
+	 */
+	public void dispose(){
+		synchronized(this){
+			if(m_disposed){
+				return;
+			}
+			m_disposed = true;
+		}
+		for(int i = 0; i < m_workers.length; i++){
+			m_workers[i].stop();
+		}
+		for(int i = 0; i < m_workers.length; i++){
+			m_workers[i].join();
+			m_workers[i].dispose();
+		}
+		m_results.clear();
+	}
+}
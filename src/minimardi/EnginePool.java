@@ -0,0 +1,235 @@
+package minimardi;
+
+import java.util.LinkedList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Searches for many games on a fixed set of workers, one per core by
+ * default, each with its own Engine and searching on one thread, so the
+ * cores are busy without running more searches than there are cores.
+ * Any number of threads (virtual threads on a server JVM) can submit
+ * requests and block on them cheaply.
+ * The waiting requests are taken round robin by game: a game with many
+ * requests waiting does not delay the first request of another game.
+ * Dispose it to stop the workers.
+ */
+public class EnginePool implements Disposable {
+
+	/**
+	 * The table of each worker, 4 MB.
+	 */
+	public static final int DEFAULT_HASH_ENTRIES = 262144;
+
+	/**
+	 * The waiting requests of each game, the games in the order
+	 * they are served.
+	 */
+	private LinkedHashMap<Object,LinkedList<PoolRequest>> m_games;
+
+	private PoolWorker[] m_workers;
+
+	private boolean m_disposed;
+
+	private int m_queueDepth;
+
+	private int m_maxQueueDepth;
+
+	private int m_busyWorkers;
+
+	private long m_submitted;
+
+	private long m_completed;
+
+	private long m_cancelled;
+
+	private long m_queueTime;
+
+	private long m_searchTime;
+
+	public EnginePool(){
+		this(Runtime.getRuntime().availableProcessors(), DEFAULT_HASH_ENTRIES);
+	}
+
+	/**
+	 * @param workers the searches run at the same time.
+	 * @param hashEntries the size of the table of each worker.
+	 */
+	public EnginePool(int workers,int hashEntries){
+		if(workers < 1){
+			workers = 1;
+		}
+		m_games = new LinkedHashMap<Object,LinkedList<PoolRequest>>();
+		m_workers = new PoolWorker[workers];
+		for(int i = 0; i < workers; i++){
+			m_workers[i] = new PoolWorker(this, new Engine(hashEntries), i);
+		}
+		for(int i = 0; i < workers; i++){
+			m_workers[i].start();
+		}
+	}
+
+	/**
+	 * Queue a search of position for game. The position must not be
+	 * changed or disposed until the request is done.
+	 * @param game the key of the game (or player) for the fair scheduling.
+	 * @param budgetMs 0, or the milliseconds from now to the move, the
+	 * time in the queue included. When it is used up the search stops,
+	 * if it is already used up when a worker takes the request a move is
+	 * still searched for at most 1 ms.
+	 */
+	public PoolRequest submit(Object game,Position position,SearchLimits limits,int budgetMs){
+		PoolRequest request = new PoolRequest(this, game, position, limits, budgetMs);
+		synchronized(this){
+			if(m_disposed){
+				throw new IllegalStateException("pool disposed");
+			}
+			LinkedList<PoolRequest> queue = m_games.get(game);
+			if(queue == null){
+				queue = new LinkedList<PoolRequest>();
+				m_games.put(game, queue);
+			}
+			queue.add(request);
+			m_submitted++;
+			m_queueDepth++;
+			if(m_queueDepth > m_maxQueueDepth){
+				m_maxQueueDepth = m_queueDepth;
+			}
+			notify();
+		}
+		return request;
+	}
+
+	/**
+	 * Wait for a request, the first of the game served longest ago.
+	 * @return null when the pool is disposed.
+	 */
+	synchronized PoolRequest take(PoolWorker worker) throws InterruptedException {
+		while(m_games.isEmpty() && !m_disposed){
+			wait();
+		}
+		if(m_disposed){
+			return null;
+		}
+		Iterator<Map.Entry<Object,LinkedList<PoolRequest>>> games = m_games.entrySet().iterator();
+		Map.Entry<Object,LinkedList<PoolRequest>> first = games.next();
+		PoolRequest request = first.getValue().poll();
+		games.remove();
+		if(!first.getValue().isEmpty()){
+			m_games.put(first.getKey(), first.getValue());
+		}
+		m_queueDepth--;
+		m_busyWorkers++;
+		m_queueTime += request.started(worker);
+		return request;
+	}
+
+	/**
+	 * A worker has searched request.
+	 */
+	synchronized void done(PoolRequest request,long searchTime){
+		m_busyWorkers--;
+		m_completed++;
+		m_searchTime += searchTime;
+	}
+
+	/**
+	 * @return true if request was waiting and is removed.
+	 */
+	synchronized boolean remove(PoolRequest request){
+		LinkedList<PoolRequest> queue = m_games.get(request.getGame());
+		if(queue == null || !queue.remove(request)){
+			return false;
+		}
+		if(queue.isEmpty()){
+			m_games.remove(request.getGame());
+		}
+		m_queueDepth--;
+		m_cancelled++;
+		return true;
+	}
+
+	public int getWorkers(){
+		return m_workers.length;
+	}
+
+	/**
+	 * @return the requests waiting for a worker.
+	 */
+	public synchronized int getQueueDepth(){
+		return m_queueDepth;
+	}
+
+	public synchronized int getMaxQueueDepth(){
+		return m_maxQueueDepth;
+	}
+
+	/**
+	 * @return the workers searching now.
+	 */
+	public synchronized int getBusyWorkers(){
+		return m_busyWorkers;
+	}
+
+	public synchronized long getSubmitted(){
+		return m_submitted;
+	}
+
+	/**
+	 * @return the requests searched, stopped ones included.
+	 */
+	public synchronized long getCompleted(){
+		return m_completed;
+	}
+
+	/**
+	 * @return the requests cancelled before a worker took them.
+	 */
+	public synchronized long getCancelled(){
+		return m_cancelled;
+	}
+
+	/**
+	 * @return the mean milliseconds from submit to a worker.
+	 */
+	public synchronized double getAverageQueueTime(){
+		long taken = m_completed + m_busyWorkers;
+		return taken > 0 ? (double) m_queueTime / taken : 0;
+	}
+
+	/**
+	 * @return the mean milliseconds of a search.
+	 */
+	public synchronized double getAverageSearchTime(){
+		return m_completed > 0 ? (double) m_searchTime / m_completed : 0;
+	}
+
+	/**
+	 * Stops the workers, waits for them and frees their engines.
+	 * The waiting requests are cancelled.
+	 */
+	public void dispose(){
+		LinkedList<PoolRequest> waiting = new LinkedList<PoolRequest>();
+		synchronized(this){
+			if(m_disposed){
+				return;
+			}
+			m_disposed = true;
+			for(LinkedList<PoolRequest> queue : m_games.values()){
+				waiting.addAll(queue);
+			}
+			notifyAll();
+		}
+		for(PoolRequest request : waiting){
+			request.cancel(false);
+		}
+		for(int i = 0; i < m_workers.length; i++){
+			m_workers[i].stop();
+		}
+		for(int i = 0; i < m_workers.length; i++){
+			m_workers[i].join();
+			m_workers[i].dispose();
+		}
+	}
+}
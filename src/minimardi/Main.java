@@ -5,6 +5,10 @@ public class Main {
 	 * @param args
 	 */
 	public static void main(String[] args) {
+		if (args.length > 0 && args[0].equals("batch")) {
+			batch();
+			return;
+		}
 		Position p = new Position();
 		while (!p.isGameOver()) {
 			int bestMove = Search.bestMove(p, 3, 100);
@@ -15,4 +19,29 @@ public class Main {
 			p.printPosition();
 		}	
 	}
+
+	/**
+	 * Searches a few positions in a batch, one with an en passant
+	 * square and one bad fen that must fail without stopping the rest.
+	 */
+	private static void batch() {
+		String[] fens = {
+			"rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+			"rnbqkbnr/pppp1ppp/8/8/3Pp3/8/PPP1PPPP/RNBQKBNR b KQkq d3 0 2",
+			"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQ1BNR w KQkq - 0 1",
+			"8/8/8/8/8/8/8/8 w - -",
+		};
+		SearchLimits limits = new SearchLimits(4, 1);
+		BatchAnalysis batch = Search.analyzeBatch(java.util.Arrays.asList(fens), limits, 2);
+		while (batch.hasNext()) {
+			BatchResult r = batch.next();
+			if (r.isFailed()) {
+				System.out.println(r.getIndex() + " " + r.getError());
+			}
+			else {
+				System.out.println(r.getIndex() + " " + Move.moveToAlg(r.getMove()).trim() + " " + r.getScore() + " " + r.getNodes());
+			}
+		}
+		batch.dispose();
+	}
 }
@@ -0,0 +1,194 @@
+package minimardi;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A search queued in an EnginePool, get waits for the best move.
+ */
+public class PoolRequest implements Future<Integer> {
+
+	private EnginePool m_pool;
+
+	private Object m_game;
+
+	private Position m_position;
+
+	private SearchLimits m_limits;
+
+	private long m_submitted;
+
+	private long m_deadline;
+
+	private PoolWorker m_worker;
+
+	private long m_queueTime;
+
+	private boolean m_done;
+
+	private boolean m_cancelled;
+
+	private int m_move;
+
+	private int m_score;
+
+	private int m_nodes;
+
+	PoolRequest(EnginePool pool,Object game,Position position,SearchLimits limits,int budgetMs){
+		m_pool = pool;
+		m_game = game;
+		m_position = position;
+		m_limits = limits;
+		m_submitted = System.currentTimeMillis();
+		m_deadline = budgetMs > 0 ? m_submitted + budgetMs : 0;
+	}
+
+	/**
+	 * A worker takes the request.
+	 * @return the milliseconds it waited.
+	 */
+	synchronized long started(PoolWorker worker){
+		m_worker = worker;
+		m_queueTime = System.currentTimeMillis() - m_submitted;
+		return m_queueTime;
+	}
+
+	/**
+	 * @return the limits with a movetime of what is left of the budget.
+	 */
+	SearchLimits limitsNow(){
+		if(m_deadline == 0){
+			return m_limits;
+		}
+		int left = (int) Math.max(1, m_deadline - System.currentTimeMillis());
+		if(m_limits.getMoveTime() != 0 && m_limits.getMoveTime() <= left){
+			return m_limits;
+		}
+		return m_limits.withMoveTime(left);
+	}
+
+	Position getPosition(){
+		return m_position;
+	}
+
+	synchronized void finish(int move,int score,int nodes){
+		m_move = move;
+		m_score = score;
+		m_nodes = nodes;
+		m_done = true;
+		m_worker = null;
+		notifyAll();
+	}
+
+	/**
+	 * The request is cancelled or the pool disposed after a worker
+	 * took the request, before its search: it is cancelled.
+	 */
+	synchronized void drop(){
+		m_cancelled = true;
+		finish(0, 0, 0);
+	}
+
+	public Object getGame(){
+		return m_game;
+	}
+
+	/**
+	 * Removes a waiting request, or stops its search and waits for it
+	 * (a few thousand nodes), so the position is free on return.
+	 * get throws CancellationException.
+	 * @return false if the request was already done.
+	 */
+	public boolean cancel(boolean mayInterruptIfRunning){
+		PoolWorker worker;
+		synchronized(this){
+			if(m_done){
+				return false;
+			}
+			m_cancelled = true;
+			worker = m_worker;
+		}
+		if(worker == null && m_pool.remove(this)){
+			finish(0, 0, 0);
+			return true;
+		}
+		synchronized(this){
+			worker = m_worker; /* taken by a worker after the first look */
+		}
+		if(worker != null){
+			worker.stopSearch(this);
+		}
+		boolean interrupted = false;
+		synchronized(this){
+			while(!m_done){
+				try{
+					wait();
+				}catch(InterruptedException e){
+					interrupted = true;
+				}
+			}
+		}
+		if(interrupted){
+			Thread.currentThread().interrupt();
+		}
+		return true;
+	}
+
+	public synchronized boolean isCancelled(){
+		return m_cancelled;
+	}
+
+	public synchronized boolean isDone(){
+		return m_done || m_cancelled;
+	}
+
+	/**
+	 * Wait for the search.
+	 * @return the best move, 0 if the game is over.
+	 */
+	public synchronized Integer get() throws InterruptedException {
+		while(!m_done && !m_cancelled){
+			wait();
+		}
+		if(m_cancelled){
+			throw new CancellationException();
+		}
+		return m_move;
+	}
+
+	public synchronized Integer get(long timeout,TimeUnit unit) throws InterruptedException, TimeoutException {
+		long end = System.currentTimeMillis() + unit.toMillis(timeout);
+		long left = unit.toMillis(timeout);
+		while(!m_done && !m_cancelled && left > 0){
+			wait(left);
+			left = end - System.currentTimeMillis();
+		}
+		if(m_cancelled){
+			throw new CancellationException();
+		}
+		if(!m_done){
+			throw new TimeoutException();
+		}
+		return m_move;
+	}
+
+	/**
+	 * @return centipawns from whites view, when done.
+	 */
+	public synchronized int getScore(){
+		return m_score;
+	}
+
+	public synchronized int getNodes(){
+		return m_nodes;
+	}
+
+	/**
+	 * @return milliseconds from submit to a worker, when started.
+	 */
+	public synchronized long getQueueTime(){
+		return m_queueTime;
+	}
+}
@@ -0,0 +1,68 @@
+package minimardi;
+
+/**
+ * A thread of an EnginePool, it owns an Engine and searches the
+ * requests of the pool with it.
+ */
+class PoolWorker extends SearchWorker {
+
+	private EnginePool m_pool;
+
+	private Engine m_engine;
+
+	private PoolRequest m_request;
+
+	PoolWorker(EnginePool pool,Engine engine,int number){
+		super("minimardi-pool-" + number);
+		m_pool = pool;
+		m_engine = engine;
+	}
+
+	public void run(){
+		try{
+			PoolRequest request;
+			while((request = m_pool.take(this)) != null){
+				synchronized(this){
+					if(request.isCancelled() || !reset()){
+						request.drop(); // cancelled before m_request was set
+						m_pool.done(request, 0);
+						if(isStopped()){
+							break;
+						}
+						continue;
+					}
+					m_request = request;
+				}
+				long start = System.currentTimeMillis();
+				Position position = request.getPosition();
+				int move = search(position, request.limitsNow().toArray(), m_engine.pointer());
+				synchronized(this){
+					m_request = null;
+				}
+				request.finish(move, position.getValue(), position.getNodes());
+				m_pool.done(request, System.currentTimeMillis() - start);
+			}
+		}catch(InterruptedException e){
+			// disposed while waiting
+		}
+	}
+
+	/**
+	 * Stop the search of request, if this worker still searches it.
+	 */
+	synchronized void stopSearch(PoolRequest request){
+		if(m_request == request){
+			stopSearch();
+		}
+	}
+
+	/**
+	 * Frees the search control and the engine, after join.
+	 */
+	protected void cleanup(){
+		if(!m_disposed){
+			m_engine.dispose();
+		}
+		super.cleanup();
+	}
+}
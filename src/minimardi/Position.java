@@ -7,11 +7,37 @@ public class Position extends MiniMardiNativeObject {
 		
 	}
 	
+	/**
+	 * @throws IllegalArgumentException if fen is not a position
+	 * with one king of each color.
+	 */
 	public Position(String fen){
-		m_CPtr = nativeNewChessPositionFen(fen);
+		long cptr = nativeNewChessPositionFen(fen);
+		if(cptr == 0){
+			throw new IllegalArgumentException("bad FEN: " + fen);
+		}
+		nativeFree(m_CPtr); // the start position of the super constructor
+		m_CPtr = cptr;
 		m_disposed = false;
 	}
 
+	protected Position(long cptr){
+		super(cptr);
+	}
+
+	/**
+	 * @return a position of its own, equal to this one but
+	 * without the opening book.
+	 */
+	public Position copy(){
+		if(!m_disposed){
+			return new Position(copyNative(m_CPtr));
+		}
+		else{
+			throw new RuntimeException("already disposed");
+		}
+	}
+
 	public int moveGenerator(){
 		if(!m_disposed){
 			return moveGeneratorNative(m_CPtr);
@@ -68,6 +94,16 @@ public class Position extends MiniMardiNativeObject {
 		return legalOpponentMoveNative(move,m_CPtr);
 	}
 	
+	/**
+	 * Static exchange evaluation of a capture, the material the side
+	 * to move wins (or loses, if negative) when both sides keep
+	 * recapturing on the destination square with their least
+	 * valuable piece.
+	 */
+	public int see(int move){
+		return seeNative(move,m_CPtr);
+	}
+	
 	public int drawOrCheckmate(){
 		return drawOrCheckmateNative(m_CPtr);
 	}
@@ -163,6 +199,8 @@ public class Position extends MiniMardiNativeObject {
 	
 	protected native long nativeNewChessPositionFen(String fen);
 	
+	protected static native long copyNative(long cptr);
+	
 	protected static native int moveGeneratorNative(long cptr);
 	
 	protected static native long getZobristKeyNative(long cptr);
@@ -186,6 +224,8 @@ public class Position extends MiniMardiNativeObject {
 	protected static native void printPositionNative(long cptr);	
 	
 	protected static native int legalOpponentMoveNative(int move,long cptr);
+
+	protected static native int seeNative(int move,long cptr);
 	
 	protected static native int drawOrCheckmateNative(long cptr);
 	
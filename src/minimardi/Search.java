@@ -1,11 +1,264 @@
 package minimardi;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class Search {
 
+	static{
+		System.loadLibrary("minimardi-jni");
+	}
+
 	private Search(){
-		
+
+	}
+
+	/**
+	 * Lazy smp search, threads-1 helpers search private copies of
+	 * the position and share the transposition table.
+	 */
+	public static int bestMove(Position position,SearchLimits limits,int threads){
+		return bestMoveLimitsNative(position, limits.toArray(), threads);
+	}
+
+	/**
+	 * Start a search on its own thread, it can be stopped with
+	 * SearchHandle.stop and the move read with SearchHandle.await.
+	 */
+	public static SearchHandle start(Position position,SearchLimits limits){
+		return start(position, limits, 1, null);
+	}
+
+	public static SearchHandle start(Position position,SearchLimits limits,SearchListener listener){
+		return start(position, limits, 1, listener);
+	}
+
+	/**
+	 * @param listener null, or gets the result of each iteration.
+	 */
+	public static SearchHandle start(Position position,SearchLimits limits,int threads,SearchListener listener){
+		return new SearchHandle(null, position, limits, threads, listener, 0);
+	}
+
+	/**
+	 * Search on the opponents time, in the position after the
+	 * expected reply (see SearchHandle.ponderMove). The clock is not
+	 * used until SearchHandle.ponderHit, if the opponent plays another
+	 * move SearchHandle.ponderMiss drops the search.
+	 * @return the pondering search, or null if reply is not legal.
+	 */
+	public static SearchHandle ponder(Position position,int reply,SearchLimits limits){
+		return ponder(position, reply, limits, 1, null);
+	}
+
+	public static SearchHandle ponder(Position position,int reply,SearchLimits limits,int threads,SearchListener listener){
+		return ponder(null, position, reply, limits, threads, listener);
+	}
+
+	/**
+	 * @param engine null for the default engine.
+	 */
+	static SearchHandle ponder(Engine engine,Position position,int reply,SearchLimits limits,int threads,SearchListener listener){
+		Position copy = position.copy();
+		int move = copy.legalOpponentMove(reply);
+		if(move == 0){
+			copy.dispose();
+			return null;
+		}
+		copy.doMove(move);
+		return new SearchHandle(engine, copy, limits, threads, listener, move);
+	}
+
+	/**
+	 * The multiPv best moves in position, best first, each with its
+	 * score and line. The lines after the first are searched without
+	 * the moves already found and reuse the transposition table, so
+	 * they cost much less than a search each. Searches with alpha-beta,
+	 * or PVS when selected, and ignores the opening book.
+	 * @return at most multiPv lines, fewer if there are fewer legal moves.
+	 */
+	public static AnalysisLine[] analyze(Position position,SearchLimits limits,int multiPv){
+		int[] lines = analyzeNative(position, limits.toArray(), multiPv);
+		int count = 0;
+		for(int i = 0; i < lines.length; i += 2 + lines[i + 1])
+			count++;
+		AnalysisLine[] result = new AnalysisLine[count];
+		int i = 0;
+		for(int line = 0; line < count; line++){
+			int[] pv = new int[lines[i + 1]];
+			System.arraycopy(lines, i + 2, pv, 0, pv.length);
+			result[line] = new AnalysisLine(lines[i], pv);
+			i += 2 + pv.length;
+		}
+		return result;
+	}
+
+	/**
+	 * Search many positions, each with limits, on workers threads.
+	 * Each worker searches one position at a time with its own native
+	 * position and search control, they share the transposition table.
+	 * @return the results as the positions are done.
+	 */
+	public static BatchAnalysis analyzeBatch(Iterable<String> fens,SearchLimits limits,int workers){
+		return new BatchAnalysis(fens, limits, workers);
+	}
+
+	/**
+	 * The number of legal move sequences of depth plies from position
+	 * (the leaves of the move tree). The root moves are shared by the
+	 * threads, the last ply is counted without playing it and subtrees
+	 * are cached by zobrist key.
+	 */
+	public static long perft(Position position,int depth,int threads){
+		return perftNative(position, depth, threads);
+	}
+
+	/**
+	 * @return perft of depth-1 after each legal move in position,
+	 * by move. The values add up to perft(position, depth, threads).
+	 */
+	public static Map<Integer,Long> perftDivide(Position position,int depth,int threads){
+		long[] counts = perftDivideNative(position, depth, threads);
+		Map<Integer,Long> divide = new LinkedHashMap<Integer,Long>();
+		for(int i = 0; i < counts.length; i += 2){
+			divide.put((int) counts[i], counts[i + 1]);
+		}
+		return divide;
+	}
+
+	/**
+	 * Proof-number search for a mate by the side to move within
+	 * maxPlies plies (2n-1 for a mate in n), whatever the other side
+	 * plays. The search keeps its tree in memory, nodeBudget nodes at
+	 * most, and is much faster than alpha-beta on mate problems.
+	 * @return the mating line, with the longest defence found, or null
+	 * if no mate was found within maxPlies and nodeBudget.
+	 */
+	public static int[] solveMate(Position position,int maxPlies,int nodeBudget){
+		return solveMateNative(position, maxPlies, nodeBudget);
+	}
+
+	/**
+	 * Used by searches started after the call.
+	 */
+	public static void setAlgorithm(SearchAlgorithm algorithm){
+		setAlgorithmNative(algorithm.ordinal());
+	}
+
+	public static SearchAlgorithm getAlgorithm(){
+		return SearchAlgorithm.values()[getAlgorithmNative()];
 	}
+
+	/**
+	 * Map the endgame tables in dir, made by the tbgen command of the
+	 * engine. Searches started after the call probe them in positions
+	 * of up to 4 pieces, and play a won or lost root position from the
+	 * tables. Not while searching.
+	 * @return the number of tables found.
+	 */
+	public static native int setTablebasePath(String dir);
+
+	/**
+	 * Search without the transposition table if false,
+	 * used by searches started after the call.
+	 */
+	public static native void setHashEnabled(boolean enabled);
+
+	/**
+	 * Resize the table of the default engine to mb megabytes, see
+	 * Engine.setHashSizeMb.
+	 */
+	public static void setHashSizeMb(int mb){
+		Engine.resizeHash(0, mb);
+	}
+
+	public static int getHashSizeMb(){
+		return Engine.getHashSizeMbNative(0);
+	}
+
+	/**
+	 * @return permille of the table of the default engine stored by
+	 * its last search.
+	 */
+	public static int getHashfull(){
+		return Engine.getHashfullNative(0);
+	}
+
+	/**
+	 * Resize the pawn table of the default engine to kb kilobytes,
+	 * see Engine.setPawnHashSizeKb. Not while searching.
+	 */
+	public static void setPawnHashSizeKb(int kb){
+		Engine.resizePawnHash(0, kb);
+	}
+
+	public static int getPawnHashSizeKb(){
+		return Engine.getPawnHashSizeKbNative(0);
+	}
+
+	/**
+	 * Resize the eval cache of the default engine to kb kilobytes,
+	 * see Engine.setEvalCacheSizeKb. Not while searching.
+	 */
+	public static void setEvalCacheSizeKb(int kb){
+		Engine.resizeEvalCache(0, kb);
+	}
+
+	public static int getEvalCacheSizeKb(){
+		return Engine.getEvalCacheSizeKbNative(0);
+	}
+
+	/**
+	 * Save the table of the default engine, see Engine.saveHash.
+	 */
+	public static boolean saveHash(String path){
+		return Engine.saveHashNative(0, path);
+	}
+
+	/**
+	 * Load the table of the default engine, see Engine.loadHash.
+	 */
+	public static boolean loadHash(String path){
+		return Engine.loadHashNative(0, path);
+	}
+
+	/**
+	 * Time the move generation, evaluation and quiescence in the
+	 * SearchStats of searches started after the call. Costs some
+	 * nodes per second, off by default.
+	 */
+	public static native void setTimingEnabled(boolean enabled);
+
 	public static native int bestMove(Position position,int depth,int time_ply);
-	
+
+	public static native int bestMoveThreads(Position position,int depth,int time_ply,int threads);
+
+	/**
+	 * Counts all the nodes to depth, not just the leaves, in
+	 * Position.getNodes. Returns 1.
+	 */
 	public static native int perft(Position position,int depth);
+
+	protected static native long perftNative(Position position,int depth,int threads);
+
+	/**
+	 * @return for each root move the move and its count.
+	 */
+	protected static native long[] perftDivideNative(Position position,int depth,int threads);
+
+	/**
+	 * @return for each line its score, pv length and pv.
+	 */
+	protected static native int[] analyzeNative(Position position,int[] limits,int multiPv);
+
+	/**
+	 * @return the mating line, null if there is none.
+	 */
+	protected static native int[] solveMateNative(Position position,int maxPlies,int nodeBudget);
+
+	protected static native int bestMoveLimitsNative(Position position,int[] limits,int threads);
+
+	protected static native void setAlgorithmNative(int algorithm);
+
+	protected static native int getAlgorithmNative();
 }
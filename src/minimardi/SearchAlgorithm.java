@@ -0,0 +1,17 @@
+package minimardi;
+
+/**
+ * The search used at the root, see Search.setAlgorithm.
+ * The order matches search_algorithm in search.h.
+ */
+public enum SearchAlgorithm {
+
+	/** alpha-beta with a full window at the root. */
+	ALPHA_BETA,
+
+	/** principal variation search with aspiration windows around the last score. */
+	PVS,
+
+	/** MTD(f) with fail-soft alpha-beta. */
+	MTDF
+}
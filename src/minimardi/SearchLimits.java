@@ -0,0 +1,123 @@
+package minimardi;
+
+/**
+ * When a search stops. A limit of 0 is no limit. Without node,
+ * time or mate limits the search uses the game clock after minDepth.
+ */
+public class SearchLimits {
+
+	private int m_maxDepth;
+
+	private int m_minDepth;
+
+	private int m_nodes;
+
+	private int m_moveTime;
+
+	private int m_softTime;
+
+	private int m_hardTime;
+
+	private int m_mate;
+
+	/**
+	 * @param maxDepth the search never goes deeper than this,
+	 * 0 for no limit.
+	 * @param minDepth the search always reaches this depth,
+	 * the clock is only checked after it.
+	 */
+	public SearchLimits(int maxDepth,int minDepth){
+		m_maxDepth = maxDepth;
+		m_minDepth = minDepth;
+	}
+
+	private SearchLimits(SearchLimits limits){
+		m_maxDepth = limits.m_maxDepth;
+		m_minDepth = limits.m_minDepth;
+		m_nodes = limits.m_nodes;
+		m_moveTime = limits.m_moveTime;
+		m_softTime = limits.m_softTime;
+		m_hardTime = limits.m_hardTime;
+		m_mate = limits.m_mate;
+	}
+
+	/**
+	 * @return these limits, stopping after nodes nodes (searched by
+	 * the main thread). The same nodes give the same move every time
+	 * on one thread.
+	 */
+	public SearchLimits withNodes(int nodes){
+		SearchLimits limits = new SearchLimits(this);
+		limits.m_nodes = nodes;
+		return limits;
+	}
+
+	/**
+	 * @return these limits, the move is returned within ms milliseconds,
+	 * even in the middle of an iteration or before minDepth.
+	 */
+	public SearchLimits withMoveTime(int ms){
+		SearchLimits limits = new SearchLimits(this);
+		limits.m_moveTime = ms;
+		return limits;
+	}
+
+	/**
+	 * @param softMs no iteration after minDepth is started after it. It is
+	 * moved up to 2.5 times later while the best move changes, and to 60%
+	 * once the best move held for 4 iterations, never past hardMs.
+	 * @param hardMs the search stops, even in the middle of an iteration.
+	 * @return these limits with the deadlines.
+	 */
+	public SearchLimits withDeadlines(int softMs,int hardMs){
+		SearchLimits limits = new SearchLimits(this);
+		limits.m_softTime = softMs;
+		limits.m_hardTime = hardMs;
+		return limits;
+	}
+
+	/**
+	 * @return these limits, stopping when a mate in at most
+	 * moves moves is found.
+	 */
+	public SearchLimits withMate(int moves){
+		SearchLimits limits = new SearchLimits(this);
+		limits.m_mate = moves;
+		return limits;
+	}
+
+	public int getMaxDepth(){
+		return m_maxDepth;
+	}
+
+	public int getMinDepth(){
+		return m_minDepth;
+	}
+
+	public int getNodes(){
+		return m_nodes;
+	}
+
+	public int getMoveTime(){
+		return m_moveTime;
+	}
+
+	public int getSoftTime(){
+		return m_softTime;
+	}
+
+	public int getHardTime(){
+		return m_hardTime;
+	}
+
+	public int getMate(){
+		return m_mate;
+	}
+
+	/**
+	 * @return the limits in the order of search_limits_ in search.h.
+	 */
+	int[] toArray(){
+		return new int[] { m_maxDepth, m_minDepth, m_nodes, m_moveTime, m_softTime, m_hardTime, m_mate };
+	}
+}
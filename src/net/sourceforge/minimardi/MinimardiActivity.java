@@ -4,6 +4,7 @@
  */
 package net.sourceforge.minimardi;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Hashtable;
 
@@ -14,7 +15,8 @@ import minimardi.Move;
 import minimardi.Piece;
 import minimardi.Position;
 import minimardi.Search;
-import minimardi.Utils;
+import minimardi.SearchHandle;
+import minimardi.SearchLimits;
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.content.DialogInterface;
@@ -47,6 +49,7 @@ public class MinimardiActivity extends Activity implements OnTouchListener{
     /** Settings **/
     private boolean mPlayBothSides;
     private int mLevel;
+    private boolean mPonder;
     
     /** GUI board is a table with each square being a frame. 
      * Each frame contains 2 ImageViews. One for the piece and one for the bg.
@@ -73,10 +76,18 @@ public class MinimardiActivity extends Activity implements OnTouchListener{
     private static final int ACTION_SETTINGS_CHANGED=3;
     private static final int ACTION_SWITCH_SIDES=4;
     
+    /** Megabytes of the transposition table, saved in HASH_FILE when paused **/
+    private static final int HASH_MB=8;
+    private static final String HASH_FILE="hash.mmtt";
+    
     private int mPromotionMove;
     private ArrayList<TakebackMove> mMoves;
     private ComputerMoveTask mCompTask=null;
     
+    /** Search on the players time, for the reply mPonderMove **/
+    private SearchHandle mPonderSearch=null;
+    private int mPonderMove=0;
+    
     /** Debug - play engine vs engine **/
     private static final int DEBUG_MAX_MOVES=150;
     private boolean mDebug=false;
@@ -100,6 +111,15 @@ public class MinimardiActivity extends Activity implements OnTouchListener{
     public void onCreate(Bundle savedInstanceState) {
         Log.i(TAG, "onCreate");
         super.onCreate(savedInstanceState);        
+        if (Search.getHashSizeMb() != HASH_MB) { // only once, the table outlives the activity
+            Search.loadHash(getHashFile());
+            try {
+                if (Search.getHashSizeMb() != HASH_MB)
+                    Search.setHashSizeMb(HASH_MB);
+            } catch (IllegalStateException e) { // a search of an earlier activity, keep its table
+                Log.i(TAG, "hash table in use");
+            }
+        }
         setupStartPosition();         
 //        mCompTask = (ComputerMoveTask) getLastNonConfigurationInstance();               
         restorePosition();
@@ -200,6 +220,7 @@ public class MinimardiActivity extends Activity implements OnTouchListener{
         SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
         mPlayBothSides = !sharedPrefs.getBoolean("engine_on", !mPlayBothSides);
         mLevel = Integer.parseInt( sharedPrefs.getString("engine_strength", "2") ); 
+        mPonder = sharedPrefs.getBoolean("engine_ponder", true);
     }
 
     @Override
@@ -219,6 +240,8 @@ public class MinimardiActivity extends Activity implements OnTouchListener{
         Log.i(TAG, "onPause");
         super.onPause();
         cancelComputerMove();
+        if (!Search.saveHash(getHashFile()))
+            Log.w(TAG, "Hash table not saved");
         SharedPreferences.Editor editor = getPreferences(0).edit();
         editor.putInt("STATE", mState);
         editor.putInt("PLAYERSIDE", mPlayerSide);
@@ -227,8 +250,17 @@ public class MinimardiActivity extends Activity implements OnTouchListener{
         editor.commit();
     }
     
+    /**
+     * @return the file of the transposition table, kept when the process is killed.
+     */
+    private String getHashFile() {
+        return new File(getFilesDir(), HASH_FILE).getPath();
+    }
+    
     private void cancelComputerMove() {
+        stopPondering();
         if (mCompTask != null) {
+            mCompTask.stopSearch();
             if (!mCompTask.cancel(false)) {
                 Log.w(TAG, "Computer task not cancelled");               
             }
@@ -236,6 +268,65 @@ public class MinimardiActivity extends Activity implements OnTouchListener{
         }        
     }
     
+    /**
+     * Start searching the expected reply while the player thinks.
+     */
+    private void startPondering() {
+        stopPondering();
+        if (!mPonder || mPlayBothSides || mDebug || mLevel <= 1 || mPonderMove == 0)
+            return;
+        if (isComputerToMove() || mPosition.isGameOver() || mPosition.getOutOfBook() == 0)
+            return;
+        synchronized (mPosition) {
+            mPonderSearch = Search.ponder(mPosition, mPonderMove, setupLevel(mLevel));
+        }
+        if (mPonderSearch != null)
+            Log.v(TAG, "Pondering on " + Move.moveToAlg(mPonderMove));
+    }
+    
+    /**
+     * Drop the pondering search, if any.
+     */
+    private void stopPondering() {
+        if (mPonderSearch != null) {
+            mPonderSearch.ponderMiss();
+            mPonderSearch = null;
+        }
+    }
+    
+    /**
+     * @return the pondering search if the player made the expected move, else null.
+     */
+    private SearchHandle takePonderSearch() {
+        SearchHandle search = mPonderSearch;
+        mPonderSearch = null;
+        if (search == null)
+            return null;
+        if (mMoves.size() == 0 || mMoves.get(mMoves.size() - 1).getMove() != search.getPonderedMove()) {
+            search.ponderMiss();
+            return null;
+        }
+        return search;
+    }
+    
+    /**
+     * @return the limits of a search at the level, the deadlines
+     * are about the time the game clock used to give a move.
+     */
+    private static SearchLimits setupLevel(int level) {
+        switch (level)
+        {
+        case 1: //Easy
+            return new SearchLimits(1, 1);
+        case 2: //Medium
+            return new SearchLimits(4, 3).withDeadlines(20, 60);
+        case 3: //Hard
+            return new SearchLimits(20, 4).withDeadlines(50, 150);
+        default: //Expert
+            return new SearchLimits(20, 5).withDeadlines(80, 250);
+        }
+    }
+    
     /**
      * Get minimardi internal move from two squares (algebraic notation). 
      * @param srcSquare
@@ -290,7 +381,7 @@ public class MinimardiActivity extends Activity implements OnTouchListener{
                 mState=STATE_COMPUTER_THINKING;
                 if (mCompTask == null) { 
                     mCompTask = new ComputerMoveTask();
-                    mCompTask.execute(mPosition, mLevel);
+                    mCompTask.execute(mPosition, mLevel, takePonderSearch());
                 }
             } else if (gameOver) {
                 mState=STATE_GAME_OVER;
@@ -315,11 +406,12 @@ public class MinimardiActivity extends Activity implements OnTouchListener{
                 mState=STATE_COMPUTER_THINKING;
                 if (mCompTask == null) {                
                     mCompTask = new ComputerMoveTask();
-                    mCompTask.execute(mPosition, mLevel);
+                    mCompTask.execute(mPosition, mLevel, takePonderSearch());
                 }
             }                                
             break;
         case ACTION_UNDO_MOVE:
+            stopPondering();
             mState=STATE_WAITING_PLAYER_MOVE;
             break;
         }        
@@ -874,40 +966,65 @@ public class MinimardiActivity extends Activity implements OnTouchListener{
     }  
 
     private class ComputerMoveTask extends AsyncTask<Object, Void, Integer>  {        
+        private SearchHandle mSearch = null;
+        private boolean mStopped = false;
+        private int mNextPonderMove = 0;
+        
         @Override
         protected Integer doInBackground(Object... vargs) {
             synchronized (mPosition) {                            
-                int depth = (Integer) vargs[1];
-                int maxDepth = 20;
-                Utils.setTimeControl(120, 0);
-                switch (depth)
-                {
-                case 1: //Easy
-                    depth = 1;   
-                    maxDepth = 1;
-                    Utils.setCompTime(0);
-                    Utils.setOppTime(100);
-                    break;
-                case 2: //Medium
-                    depth = 3;
-                    maxDepth = 4;
-                    Utils.setCompTime(60);
-                    Utils.setOppTime(60);                                
-                    break;
-                case 3: //Hard
-                    depth = 4;
-                    Utils.setCompTime(60*3);
-                    Utils.setOppTime(60*3);                
-                    break;
-                case 4: //Expert 
-                    Utils.setCompTime(60*5);
-                    Utils.setOppTime(60*5);
-                    depth = 5;
-                }
-                int allocTime = Utils.allocateTime();
-                Log.v(TAG, "Computer started thinking ("+allocTime+")");
+                SearchLimits limits = setupLevel((Integer) vargs[1]);
+                SearchHandle ponder = (SearchHandle) vargs[2];
                 
-                return new Integer(Search.bestMove((Position)vargs[0], maxDepth, depth));
+                SearchHandle search;
+                synchronized (this) {
+                    if (mStopped) {
+                        if (ponder != null)
+                            ponder.ponderMiss();
+                        return new Integer(0);
+                    }
+                    if (ponder != null) {
+                        Log.v(TAG, "Ponder hit");
+                        ponder.ponderHit();
+                        mSearch = ponder;
+                    } else {
+                        Log.v(TAG, "Computer started thinking ("+limits.getSoftTime()+" ms)");
+                        mSearch = Search.start((Position)vargs[0], limits);
+                    }
+                    search = mSearch;
+                }
+                int move = 0;
+                boolean interrupted = false;
+                while (true) {
+                    try {
+                        move = search.await();
+                        break;
+                    } catch (InterruptedException e) {
+                        // the position is locked until the search is done
+                        search.stop();
+                        interrupted = true;
+                    }
+                }
+                synchronized (this) {
+                    mSearch = null;
+                }
+                mNextPonderMove = search.ponderMove();
+                search.dispose();
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                return new Integer(move);
+            }
+        }
+        
+        /**
+         * Stop the native search, so the position lock is released
+         * within a few thousand nodes instead of after the full search.
+         */
+        public synchronized void stopSearch() {
+            mStopped = true;
+            if (mSearch != null) {
+                mSearch.stop();
             }
         }
 
@@ -923,6 +1040,8 @@ public class MinimardiActivity extends Activity implements OnTouchListener{
             }
             
             doComputerMove(move);    		
+            mPonderMove = mNextPonderMove;
+            startPondering();
         }
     }    
 }
\ No newline at end of file